@@ -0,0 +1,74 @@
+package com.google.code.maven_replacer_plugin.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.code.maven_replacer_plugin.CompiledReplacement;
+import com.google.code.maven_replacer_plugin.Replacement;
+import com.google.code.maven_replacer_plugin.ReplacerFactory;
+
+/**
+ * Generated content and replacements shared by the benchmarks.
+ */
+final class BenchmarkContent {
+	static final String ENCODING = "UTF-8";
+	static final int NO_FLAGS = -1;
+
+	private BenchmarkContent() {
+	}
+
+	static String token(int index) {
+		return "@token-" + index + "@";
+	}
+
+	/**
+	 * Lines of filler text where every fourth line holds one of the given number of tokens.
+	 */
+	static String text(int size, int tokenCount) {
+		StringBuilder text = new StringBuilder(size + 64);
+		int line = 0;
+		while (text.length() < size) {
+			text.append("line ").append(line).append(" of some configuration text ");
+			if (line % 4 == 0) {
+				text.append(token(line % tokenCount));
+			}
+			text.append('\n');
+			line++;
+		}
+		return text.toString();
+	}
+
+	static List<Replacement> replacements(int count) {
+		List<Replacement> replacements = new ArrayList<Replacement>();
+		for (int i = 0; i < count; i++) {
+			replacements.add(replacement(token(i), "value-" + i, null));
+		}
+		return replacements;
+	}
+
+	static Replacement replacement(String token, String value, String xpath) {
+		Replacement replacement = new Replacement();
+		replacement.setToken(token);
+		replacement.setValue(value);
+		replacement.setXpath(xpath);
+		return replacement;
+	}
+
+	static CompiledReplacement compile(Replacement replacement, boolean regex) {
+		return new CompiledReplacement(replacement, new ReplacerFactory().create(replacement), regex, NO_FLAGS);
+	}
+
+	static void delete(File file) throws IOException {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		if (!file.delete() && file.exists()) {
+			throw new IOException("Unable to delete " + file);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.google.code.maven_replacer_plugin.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.code.maven_replacer_plugin.include.FileSelector;
+
+/**
+ * Selecting files with Ant patterns from a deep directory tree.
+ * Each directory holds three matching files, one excluded file and fanOut subdirectories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileSelectorBenchmark {
+	private static final List<String> INCLUDES = Arrays.asList("**/*.properties");
+	private static final List<String> EXCLUDES = Arrays.asList("**/excluded-*");
+
+	@Param({ "3", "6" })
+	private int depth;
+
+	@Param({ "4" })
+	private int fanOut;
+
+	private File root;
+	private FileSelector fileSelector;
+
+	@Setup
+	public void setUp() throws IOException {
+		root = File.createTempFile("replacer-tree", "");
+		root.delete();
+		createTree(root, depth);
+		fileSelector = new FileSelector();
+	}
+
+	private void createTree(File directory, int remaining) throws IOException {
+		if (!directory.mkdirs()) {
+			throw new IOException("Unable to create " + directory);
+		}
+		for (int i = 0; i < 3; i++) {
+			new File(directory, "file-" + i + ".properties").createNewFile();
+		}
+		new File(directory, "excluded-file.properties").createNewFile();
+		if (remaining > 0) {
+			for (int i = 0; i < fanOut; i++) {
+				createTree(new File(directory, "dir-" + i), remaining - 1);
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		BenchmarkContent.delete(root);
+	}
+
+	@Benchmark
+	public List<String> listIncludes() {
+		return fileSelector.listIncludes(root.getPath(), INCLUDES, EXCLUDES);
+	}
+}
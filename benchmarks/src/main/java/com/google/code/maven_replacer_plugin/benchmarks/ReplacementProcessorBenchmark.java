@@ -0,0 +1,77 @@
+package com.google.code.maven_replacer_plugin.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.code.maven_replacer_plugin.ReplacementEngine;
+import com.google.code.maven_replacer_plugin.ReplacementPlan;
+import com.google.code.maven_replacer_plugin.ReplacementProcessor;
+import com.google.code.maven_replacer_plugin.ReplacerFactory;
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+/**
+ * One file read, replaced with many literal or regex tokens and written to another file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplacementProcessorBenchmark {
+	@Param({ "1", "100", "10000" })
+	private int replacementCount;
+
+	@Param({ "65536", "1048576" })
+	private int contentSize;
+
+	@Param({ "false", "true" })
+	private boolean regex;
+
+	@Param({ "sequential", "single-pass" })
+	private String engine;
+
+	private File directory;
+	private String inputFile;
+	private String outputFile;
+	private ReplacementProcessor processor;
+	private ReplacementPlan plan;
+
+	@Setup
+	public void setUp() throws IOException {
+		FileUtils fileUtils = new FileUtils();
+		directory = File.createTempFile("replacer-processor", "");
+		directory.delete();
+		inputFile = new File(directory, "input.txt").getPath();
+		outputFile = new File(directory, "output.txt").getPath();
+		fileUtils.writeToFile(inputFile, BenchmarkContent.text(contentSize, replacementCount), BenchmarkContent.ENCODING);
+
+		processor = new ReplacementProcessor(fileUtils, new ReplacerFactory());
+		plan = processor.prepare(BenchmarkContent.replacements(replacementCount), regex, BenchmarkContent.NO_FLAGS,
+				ReplacementEngine.from(engine));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		BenchmarkContent.delete(directory);
+	}
+
+	@Benchmark
+	public boolean replaceFile() throws IOException {
+		return processor.replace(plan, inputFile, outputFile, BenchmarkContent.ENCODING);
+	}
+}
@@ -0,0 +1,53 @@
+package com.google.code.maven_replacer_plugin.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.code.maven_replacer_plugin.CompiledReplacement;
+import com.google.code.maven_replacer_plugin.TokenReplacer;
+
+/**
+ * A single token replaced through {@link TokenReplacer} in literal and regex mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenReplacerBenchmark {
+	@Param({ "1024", "65536", "1048576" })
+	private int contentSize;
+
+	private String content;
+	private CompiledReplacement literal;
+	private CompiledReplacement regex;
+
+	@Setup
+	public void setUp() {
+		content = BenchmarkContent.text(contentSize, 10);
+		literal = BenchmarkContent.compile(BenchmarkContent.replacement("@token-1@", "value", null), false);
+		regex = BenchmarkContent.compile(BenchmarkContent.replacement("@token-(\\d)@", "value-$1", null), true);
+	}
+
+	@Benchmark
+	public String literal() {
+		return literal.apply(content);
+	}
+
+	@Benchmark
+	public String regex() {
+		return regex.apply(content);
+	}
+}
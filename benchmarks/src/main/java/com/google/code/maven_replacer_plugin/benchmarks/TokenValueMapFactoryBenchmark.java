@@ -0,0 +1,65 @@
+package com.google.code.maven_replacer_plugin.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.code.maven_replacer_plugin.Replacement;
+import com.google.code.maven_replacer_plugin.TokenValueMapFactory;
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+/**
+ * Loading a large token value map file with comments and escaped separators.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenValueMapFactoryBenchmark {
+	@Param({ "1000", "100000" })
+	private int entryCount;
+
+	private File mapFile;
+	private TokenValueMapFactory factory;
+
+	@Setup
+	public void setUp() throws IOException {
+		FileUtils fileUtils = new FileUtils();
+		StringBuilder map = new StringBuilder();
+		for (int i = 0; i < entryCount; i++) {
+			if (i % 10 == 0) {
+				map.append("# section ").append(i).append('\n');
+			}
+			map.append("token\\=").append(i).append('=').append("value ").append(i).append('\n');
+		}
+		mapFile = File.createTempFile("replacer-map", ".properties");
+		fileUtils.writeToFile(mapFile.getPath(), map.toString(), BenchmarkContent.ENCODING);
+		factory = new TokenValueMapFactory(fileUtils);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		BenchmarkContent.delete(mapFile);
+	}
+
+	@Benchmark
+	public List<Replacement> replacementsForFile() throws IOException {
+		return factory.replacementsForFile(mapFile.getPath(), true, false, BenchmarkContent.ENCODING);
+	}
+}
@@ -0,0 +1,63 @@
+package com.google.code.maven_replacer_plugin.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.code.maven_replacer_plugin.CompiledReplacement;
+import com.google.code.maven_replacer_plugin.ReplacementPlan;
+
+/**
+ * XPath replacements on a document of property elements, run through a plan so that
+ * consecutive XPath replacements share one parse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XPathReplacerBenchmark {
+	@Param({ "100", "10000" })
+	private int elementCount;
+
+	@Param({ "1", "10" })
+	private int xpathCount;
+
+	private String content;
+	private ReplacementPlan plan;
+
+	@Setup
+	public void setUp() {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><properties>");
+		for (int i = 0; i < elementCount; i++) {
+			xml.append("<property name=\"p").append(i).append("\">").append(BenchmarkContent.token(i)).append("</property>");
+		}
+		content = xml.append("</properties>").toString();
+
+		List<CompiledReplacement> replacements = new ArrayList<CompiledReplacement>();
+		for (int i = 0; i < xpathCount; i++) {
+			String xpath = "/properties/property[@name='p" + i + "']/text()";
+			replacements.add(BenchmarkContent.compile(
+					BenchmarkContent.replacement(BenchmarkContent.token(i), "value-" + i, xpath), false));
+		}
+		plan = new ReplacementPlan(replacements, false, BenchmarkContent.NO_FLAGS);
+	}
+
+	@Benchmark
+	public String replace() {
+		return plan.apply(content);
+	}
+}
@@ -0,0 +1,219 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides when a plan can be applied to the raw bytes of a file, viewed as {@link ByteText},
+ * instead of to its decoded content. This requires literal ASCII tokens and values, and an
+ * encoding in which ASCII characters are single bytes which never appear within the encoding of
+ * another character: UTF-8, or a single byte encoding such as ISO-8859-1 or windows-1252.
+ * The content must also decode and encode back to the same bytes, as malformed or unmappable
+ * bytes would otherwise be replaced when the content is decoded.
+ */
+public final class AsciiBytes {
+	private static final String UTF_8 = "UTF-8";
+	private static final boolean[] INCOMPATIBLE = new boolean[0];
+	private static final ConcurrentMap<Charset, boolean[]> SAFE_BYTES = new ConcurrentHashMap<Charset, boolean[]>();
+
+	private AsciiBytes() {
+	}
+
+	/**
+	 * Whether every step replaces literal ASCII tokens by ASCII values without XPath.
+	 */
+	public static boolean isAsciiLiteral(List<ReplacementStep> steps) {
+		for (ReplacementStep step : steps) {
+			if (!isAsciiLiteral(step)) {
+				return false;
+			}
+		}
+		return !steps.isEmpty();
+	}
+
+	private static boolean isAsciiLiteral(ReplacementStep step) {
+		if (step instanceof CompiledReplacement) {
+			return isAsciiLiteral((CompiledReplacement) step);
+		}
+		if (step instanceof IndexedSequence) {
+			return areAsciiLiteral(((IndexedSequence) step).getReplacements());
+		}
+		if (step instanceof LiteralAutomaton) {
+			return areAsciiLiteral(((LiteralAutomaton) step).getReplacements());
+		}
+		if (step instanceof DelimitedLookup) {
+			return areAsciiLiteral(((DelimitedLookup) step).getReplacements());
+		}
+		return false;
+	}
+
+	private static boolean areAsciiLiteral(List<CompiledReplacement> replacements) {
+		for (CompiledReplacement replacement : replacements) {
+			if (!isAsciiLiteral(replacement)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isAsciiLiteral(CompiledReplacement replacement) {
+		return !replacement.isRegex() && isEmpty(replacement.getXpath())
+				&& replacement.getReplacer() instanceof TokenReplacer
+				&& isAscii(replacement.getToken()) && isAscii(replacement.getValue());
+	}
+
+	static boolean isAscii(String text) {
+		for (int i=0; i < text.length(); i++) {
+			if (text.charAt(i) >= 0x80) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Whether ASCII characters decode from their own bytes alone in the given encoding (or the
+	 * platform's when null), so that an ASCII literal absent from the bytes is absent from the content.
+	 */
+	public static boolean isAsciiCompatible(String encoding) {
+		Charset charset = charset(encoding);
+		if (charset == null) {
+			return false;
+		}
+		return UTF_8.equals(charset.name()) || safeBytes(charset) != INCOMPATIBLE;
+	}
+
+	private static Charset charset(String encoding) {
+		try {
+			return encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Whether the content decodes in the given encoding (or the platform's when null) and encodes
+	 * back to the same bytes, with ASCII characters as their own bytes.
+	 */
+	public static boolean roundTrips(ByteText content, String encoding) {
+		return roundTripLength(content, encoding) == content.length();
+	}
+
+	/**
+	 * The length of the start of the content which round trips, leaving out an incomplete UTF-8
+	 * sequence at its end which the bytes read after it may complete, or -1 when the content
+	 * cannot round trip whatever follows it. Lets a file be checked a chunk at a time.
+	 */
+	public static int roundTripLength(ByteText content, String encoding) {
+		Charset charset = charset(encoding);
+		if (charset == null) {
+			return -1;
+		}
+
+		if (UTF_8.equals(charset.name())) {
+			return utf8Length(content);
+		}
+		boolean[] safe = safeBytes(charset);
+		if (safe == INCOMPATIBLE) {
+			return -1;
+		}
+		for (int i=0; i < content.length(); i++) {
+			if (!safe[content.charAt(i)]) {
+				return -1;
+			}
+		}
+		return content.length();
+	}
+
+	/**
+	 * Well formed UTF-8 as Java decodes it: shortest forms only, no surrogates, nothing above U+10FFFF.
+	 */
+	static boolean isUtf8(ByteText content) {
+		return utf8Length(content) == content.length();
+	}
+
+	/**
+	 * The length of the well formed UTF-8 at the start of the content, which is followed by at
+	 * most the start of a sequence cut off by the end of the content, or -1 when it is malformed.
+	 */
+	static int utf8Length(ByteText content) {
+		int i = 0;
+		while (i < content.length()) {
+			int b = content.charAt(i);
+			if (b < 0x80) {
+				i++;
+				continue;
+			}
+
+			int continuations;
+			int min = 0x80;
+			int max = 0xBF;
+			if (b >= 0xC2 && b <= 0xDF) {
+				continuations = 1;
+			} else if (b >= 0xE0 && b <= 0xEF) {
+				continuations = 2;
+				min = b == 0xE0 ? 0xA0 : min;
+				max = b == 0xED ? 0x9F : max;
+			} else if (b >= 0xF0 && b <= 0xF4) {
+				continuations = 3;
+				min = b == 0xF0 ? 0x90 : min;
+				max = b == 0xF4 ? 0x8F : max;
+			} else {
+				return -1;
+			}
+
+			int available = Math.min(continuations, content.length() - i - 1);
+			if (available > 0) {
+				int second = content.charAt(i + 1);
+				if (second < min || second > max) {
+					return -1;
+				}
+			}
+			for (int j=2; j <= available; j++) {
+				if ((content.charAt(i + j) & 0xC0) != 0x80) {
+					return -1;
+				}
+			}
+			if (available < continuations) {
+				return i;
+			}
+			i += continuations + 1;
+		}
+		return i;
+	}
+
+	/**
+	 * The bytes of a single byte encoding which decode to a character encoding back to the same
+	 * byte, or {@link #INCOMPATIBLE} when the encoding is not single byte or not ASCII compatible:
+	 * ASCII bytes must decode to themselves and no other byte to an ASCII character.
+	 */
+	private static boolean[] safeBytes(Charset charset) {
+		boolean[] safe = SAFE_BYTES.get(charset);
+		if (safe != null) {
+			return safe;
+		}
+
+		safe = INCOMPATIBLE;
+		if (charset.canEncode() && charset.newEncoder().maxBytesPerChar() == 1.0f
+				&& charset.newDecoder().maxCharsPerByte() == 1.0f) {
+			safe = new boolean[256];
+			for (int b=0; b < 256; b++) {
+				byte[] single = {(byte) b};
+				String decoded = new String(single, charset);
+				safe[b] = decoded.length() == 1 && Arrays.equals(decoded.getBytes(charset), single);
+				boolean ascii = decoded.length() == 1 && decoded.charAt(0) < 0x80;
+				if (b < 0x80 ? !safe[b] || decoded.charAt(0) != b : ascii) {
+					safe = INCOMPATIBLE;
+					break;
+				}
+			}
+		}
+		SAFE_BYTES.putIfAbsent(charset, safe);
+		return safe;
+	}
+}
@@ -0,0 +1,85 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The bytes of a file, read or mapped, as ISO-8859-1 text, one character per byte, without copying them.
+ * Literal ASCII tokens are found at the same places as in the decoded text whenever
+ * {@link AsciiBytes#roundTrips(ByteText, String)} holds, and writing the replaced text back as
+ * ISO-8859-1 gives the original bytes around the replaced values.
+ */
+public class ByteText implements CharSequence {
+	private final ByteBuffer bytes;
+	private final int offset;
+	private final int length;
+
+	public ByteText(byte[] bytes) {
+		this(bytes, 0, bytes.length);
+	}
+
+	public ByteText(byte[] bytes, int offset, int length) {
+		this(ByteBuffer.wrap(bytes), offset, length);
+	}
+
+	public ByteText(ByteBuffer bytes) {
+		this(bytes, bytes.position(), bytes.remaining());
+	}
+
+	private ByteText(ByteBuffer bytes, int offset, int length) {
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public char charAt(int index) {
+		return (char) (bytes.get(offset + index) & 0xFF);
+	}
+
+	public CharSequence subSequence(int start, int end) {
+		return new ByteText(bytes, offset + start, end - start);
+	}
+
+	/**
+	 * The first index of the token at or after the given index, as {@link String#indexOf(String, int)}.
+	 */
+	public int indexOf(String token, int from) {
+		int start = Math.max(0, from);
+		if (token.length() == 0) {
+			return start <= length ? start : -1;
+		}
+		for (int i=0; i < token.length(); i++) {
+			if (token.charAt(i) > 0xFF) {
+				return -1;
+			}
+		}
+
+		byte first = (byte) token.charAt(0);
+		int last = length - token.length();
+		for (int i=start; i <= last; i++) {
+			if (bytes.get(offset + i) != first) {
+				continue;
+			}
+			int matched = 1;
+			while (matched < token.length() && bytes.get(offset + i + matched) == (byte) token.charAt(matched)) {
+				matched++;
+			}
+			if (matched == token.length()) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		char[] chars = new char[length];
+		for (int i=0; i < length; i++) {
+			chars[i] = (char) (bytes.get(offset + i) & 0xFF);
+		}
+		return new String(chars);
+	}
+}
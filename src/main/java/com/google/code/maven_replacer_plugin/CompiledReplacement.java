@@ -0,0 +1,131 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.defaultString;
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+import java.util.regex.Pattern;
+
+/**
+ * A replacement resolved once per execution: token and value are looked up,
+ * the regex pattern is compiled and the value parsed into a template, so that
+ * every file processed reuses the same state.
+ */
+public class CompiledReplacement implements ReplacementStep {
+	private final Replacement replacement;
+	private final Replacer replacer;
+	private final boolean regex;
+	private final int regexFlags;
+	private final String token;
+	private final String undelimitedToken;
+	private final DelimiterBuilder delimiter;
+	private final String value;
+	private final String xpath;
+	private final Pattern pattern;
+	private final ReplacementTemplate template;
+	private final String requiredLiteral;
+
+	public CompiledReplacement(Replacement replacement, Replacer replacer, boolean regex, int regexFlags) {
+		this.replacement = replacement;
+		this.replacer = replacer;
+		this.regex = regex;
+		this.regexFlags = regexFlags;
+		this.token = replacement.getToken();
+		if (isEmpty(token)) {
+			throw new IllegalArgumentException("Token or token file required");
+		}
+		this.delimiter = replacement.getDelimiter();
+		this.undelimitedToken = delimiter == null ? token : replacement.getUndelimitedToken();
+		this.value = defaultString(replacement.getValue());
+		this.xpath = replacement.getXpath();
+
+		if (regex) {
+			this.pattern = compile(token, regexFlags);
+			this.template = new ReplacementTemplate(value, pattern.matcher("").groupCount());
+			this.requiredLiteral = RequiredLiteral.find(token, regexFlags);
+		} else {
+			this.pattern = null;
+			this.template = null;
+			this.requiredLiteral = token;
+		}
+	}
+
+	private static Pattern compile(String token, int flags) {
+		if (flags == PatternFlagsFactory.NO_FLAGS) {
+			return Pattern.compile(token);
+		}
+		return Pattern.compile(token, flags);
+	}
+
+	public String apply(String content) {
+		return replacer.replace(content, this);
+	}
+
+	public boolean apply(CharSequence content, StringBuilder output) {
+		if (replacer instanceof TokenReplacer) {
+			return ((TokenReplacer) replacer).replace(content, this, output);
+		}
+		output.append(replacer.replace(content.toString(), this));
+		return true;
+	}
+
+	public Replacement getReplacement() {
+		return replacement;
+	}
+
+	public Replacer getReplacer() {
+		return replacer;
+	}
+
+	public boolean isRegex() {
+		return regex;
+	}
+
+	public int getRegexFlags() {
+		return regexFlags;
+	}
+
+	public String getToken() {
+		return token;
+	}
+
+	/**
+	 * The token without any delimiter applied.
+	 */
+	public String getUndelimitedToken() {
+		return undelimitedToken;
+	}
+
+	public DelimiterBuilder getDelimiter() {
+		return delimiter;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	public String getXpath() {
+		return xpath;
+	}
+
+	/**
+	 * Text every match must contain, or null when it is not known.
+	 */
+	public String getRequiredLiteral() {
+		return requiredLiteral;
+	}
+
+	/**
+	 * Whether the content cannot contain a match, judging by the required literal.
+	 */
+	public boolean cannotMatch(CharSequence content) {
+		return requiredLiteral != null && ReplacementBuffers.indexOf(content, requiredLiteral, 0) < 0;
+	}
+
+	public Pattern getPattern() {
+		return pattern;
+	}
+
+	public ReplacementTemplate getTemplate() {
+		return template;
+	}
+}
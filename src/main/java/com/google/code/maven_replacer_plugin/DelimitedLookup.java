@@ -0,0 +1,163 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces delimited tokens by scanning for the delimiters rather than for every token.
+ * Each time a delimiter's start is found, the text up to its end is looked up in a map of
+ * token names to values, so the cost depends on the length of the content and not on the
+ * number of tokens. Names which are not tokens are left as they are and the scan carries on
+ * from the next character. Replaced values are never rescanned.
+ */
+public class DelimitedLookup implements ReplacementStep {
+	private final List<Section> sections;
+
+	private DelimitedLookup(List<Section> sections) {
+		this.sections = sections;
+	}
+
+	/**
+	 * Builds the lookup for the replacements which have a usable delimiter, followed by a
+	 * single pass over any others (no delimiter, or a name containing its own end marker).
+	 */
+	public static List<ReplacementStep> build(List<CompiledReplacement> replacements) {
+		Map<String, Section> sections = new LinkedHashMap<String, Section>();
+		List<CompiledReplacement> others = new ArrayList<CompiledReplacement>();
+		for (CompiledReplacement compiled : replacements) {
+			DelimiterBuilder delimiter = compiled.getDelimiter();
+			String name = compiled.getUndelimitedToken();
+			if (delimiter == null || isEmpty(delimiter.getStart()) || isEmpty(delimiter.getEnd())
+					|| isEmpty(name) || name.contains(delimiter.getEnd())) {
+				others.add(compiled);
+				continue;
+			}
+
+			String key = delimiter.getStart() + '\0' + delimiter.getEnd();
+			Section section = sections.get(key);
+			if (section == null) {
+				section = new Section(delimiter.getStart(), delimiter.getEnd());
+				sections.put(key, section);
+			}
+			if (!section.values.containsKey(name)) {
+				section.values.put(name, compiled);
+			}
+		}
+
+		List<ReplacementStep> steps = new ArrayList<ReplacementStep>();
+		if (!sections.isEmpty()) {
+			steps.add(new DelimitedLookup(new ArrayList<Section>(sections.values())));
+		}
+		ReplacementPlan.addLiterals(steps, others);
+		return steps;
+	}
+
+	public String apply(String content) {
+		if (isEmpty(content)) {
+			return content;
+		}
+		return ReplacementBuffers.apply(this, content);
+	}
+
+	public boolean apply(CharSequence content, StringBuilder output) {
+		int allowed = MatchLimit.allowed();
+		if (content.length() == 0 || allowed <= 0) {
+			return false;
+		}
+
+		FileMetrics metrics = FileMetrics.current();
+		int[] nextStarts = new int[sections.size()];
+		int matches = 0;
+		int copied = 0;
+		int position = 0;
+		while (matches < allowed) {
+			int start = nextStart(content, position, nextStarts);
+			if (start == Integer.MAX_VALUE) {
+				break;
+			}
+
+			int matchedEnd = -1;
+			CompiledReplacement value = null;
+			for (int i=0; i < sections.size() && value == null; i++) {
+				if (nextStarts[i] != start) {
+					continue;
+				}
+				Section section = sections.get(i);
+				int nameStart = start + section.start.length();
+				int end = ReplacementBuffers.indexOf(content, section.end, nameStart);
+				if (end < 0) {
+					nextStarts[i] = Integer.MAX_VALUE;
+					continue;
+				}
+				value = section.values.get(content.subSequence(nameStart, end).toString());
+				matchedEnd = end + section.end.length();
+			}
+
+			if (value == null) {
+				position = start + 1;
+				continue;
+			}
+			output.append(content, copied, start).append(value.getValue());
+			if (metrics != null) {
+				metrics.matched(value, 1);
+			}
+			matches++;
+			copied = matchedEnd;
+			position = matchedEnd;
+		}
+
+		if (matches == 0) {
+			return false;
+		}
+		MatchLimit.used(matches);
+		output.append(content, copied, content.length());
+		return true;
+	}
+
+	private int nextStart(CharSequence content, int position, int[] nextStarts) {
+		int earliest = Integer.MAX_VALUE;
+		for (int i=0; i < nextStarts.length; i++) {
+			if (nextStarts[i] != Integer.MAX_VALUE && nextStarts[i] < position) {
+				int found = ReplacementBuffers.indexOf(content, sections.get(i).start, position);
+				nextStarts[i] = found < 0 ? Integer.MAX_VALUE : found;
+			}
+			earliest = Math.min(earliest, nextStarts[i]);
+		}
+		return earliest;
+	}
+
+	/**
+	 * The replacements looked up, leaving out those whose token repeats an earlier one.
+	 */
+	public List<CompiledReplacement> getReplacements() {
+		List<CompiledReplacement> replacements = new ArrayList<CompiledReplacement>();
+		for (Section section : sections) {
+			replacements.addAll(section.values.values());
+		}
+		return replacements;
+	}
+
+	public int getTokenCount() {
+		int count = 0;
+		for (Section section : sections) {
+			count += section.values.size();
+		}
+		return count;
+	}
+
+	private static class Section {
+		private final String start;
+		private final String end;
+		private final Map<String, CompiledReplacement> values = new HashMap<String, CompiledReplacement>();
+
+		private Section(String start, String end) {
+			this.start = start;
+			this.end = end;
+		}
+	}
+}
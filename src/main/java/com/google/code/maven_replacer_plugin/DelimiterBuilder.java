@@ -4,8 +4,6 @@ import static org.apache.commons.lang.StringUtils.defaultString;
 
 
 public class DelimiterBuilder {
-	private static final String FORMAT = "%s%s%s";
-	
 	private final String start;
 	private final String end;
 	
@@ -42,6 +40,15 @@ public class DelimiterBuilder {
 			return token;
 		}
 
-		return String.format(FORMAT, start, token, end);
+		return new StringBuilder(start.length() + token.length() + end.length())
+			.append(start).append(token).append(end).toString();
+	}
+
+	public String getStart() {
+		return start;
+	}
+
+	public String getEnd() {
+		return end;
 	}
 }
@@ -0,0 +1,149 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Timings, sizes and match counts for one file, collected for a {@link PerformanceReport}.
+ * While a file is being replaced its metrics are bound to the replacing thread, so that the
+ * steps of a plan can count their matches without the metrics being passed through them.
+ * When no report is wanted nothing is bound and the steps skip counting.
+ */
+public class FileMetrics {
+	private static final ThreadLocal<FileMetrics> CURRENT = new ThreadLocal<FileMetrics>();
+
+	private final String inputFile;
+	private final String outputFile;
+	private final String encoding;
+	private final long[] stepNanos;
+	private final long[] stepMatches;
+	private final Map<CompiledReplacement, Long> matches;
+	private int currentStep = -1;
+	private long bytesIn;
+	private long bytesOut;
+	private long readNanos;
+	private long replaceNanos;
+	private long writeNanos;
+	private boolean streamed;
+	private boolean modified;
+
+	public FileMetrics(String inputFile, String outputFile, String encoding, int steps) {
+		this.inputFile = inputFile;
+		this.outputFile = outputFile;
+		this.encoding = encoding;
+		this.stepNanos = new long[steps];
+		this.stepMatches = new long[steps];
+		this.matches = new IdentityHashMap<CompiledReplacement, Long>();
+	}
+
+	/**
+	 * The metrics of the file being replaced by this thread, or null when not reporting.
+	 */
+	public static FileMetrics current() {
+		return CURRENT.get();
+	}
+
+	public void bind() {
+		CURRENT.set(this);
+	}
+
+	public static void unbind() {
+		CURRENT.remove();
+	}
+
+	public void matched(CompiledReplacement replacement, long count) {
+		if (count == 0) {
+			return;
+		}
+		Long previous = matches.get(replacement);
+		matches.put(replacement, previous == null ? count : previous + count);
+		if (currentStep >= 0) {
+			stepMatches[currentStep] += count;
+		}
+	}
+
+	void startStep(int step) {
+		currentStep = step;
+	}
+
+	void endStep(int step, long nanos) {
+		stepNanos[step] += nanos;
+		currentStep = -1;
+	}
+
+	public void timed(long readNanos, long replaceNanos, long writeNanos) {
+		this.readNanos = readNanos;
+		this.replaceNanos = replaceNanos;
+		this.writeNanos = writeNanos;
+	}
+
+	public void streamed(long nanos) {
+		this.streamed = true;
+		this.replaceNanos = nanos;
+	}
+
+	public void sized(long bytesIn, long bytesOut) {
+		this.bytesIn = bytesIn;
+		this.bytesOut = bytesOut;
+	}
+
+	public void setModified(boolean modified) {
+		this.modified = modified;
+	}
+
+	public String getInputFile() {
+		return inputFile;
+	}
+
+	public String getOutputFile() {
+		return outputFile;
+	}
+
+	public String getEncoding() {
+		return encoding;
+	}
+
+	public long getBytesIn() {
+		return bytesIn;
+	}
+
+	public long getBytesOut() {
+		return bytesOut;
+	}
+
+	public long getReadNanos() {
+		return readNanos;
+	}
+
+	public long getReplaceNanos() {
+		return replaceNanos;
+	}
+
+	public long getWriteNanos() {
+		return writeNanos;
+	}
+
+	public long getTotalNanos() {
+		return readNanos + replaceNanos + writeNanos;
+	}
+
+	public boolean isStreamed() {
+		return streamed;
+	}
+
+	public boolean isModified() {
+		return modified;
+	}
+
+	public long[] getStepNanos() {
+		return stepNanos;
+	}
+
+	public long[] getStepMatches() {
+		return stepMatches;
+	}
+
+	public Map<CompiledReplacement, Long> getMatches() {
+		return matches;
+	}
+}
@@ -0,0 +1,165 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.defaultString;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Remembers the files replaced by earlier builds so that unchanged files can be skipped.
+ *
+ * One state file is kept per execution, holding a hash of the plan's tokens, values and
+ * settings, so any change to the replacements (including token files and maps, which are
+ * resolved into the plan) starts from an empty state which replaces the old one when saved. For each input and output pair the size,
+ * modification time and content hash of both files are recorded. A file is up to date when
+ * both still match. The hash is only computed when the size matches but the time does not, or
+ * when the file was modified so close to being recorded that a later edit could share its time.
+ */
+public class IncrementalState {
+	private static final String HASH_ALGORITHM = "MD5";
+	private static final String PLAN_KEY = "plan";
+	private static final String PAIR_SEPARATOR = " -> ";
+	private static final String STATE_SEPARATOR = ";";
+	private static final String FIELD_SEPARATOR = ",";
+	private static final long TIMESTAMP_GRANULARITY = 2000;
+
+	private final File stateFile;
+	private final Properties entries;
+
+	public IncrementalState(File stateFile) throws IOException {
+		this.stateFile = stateFile;
+		this.entries = new Properties();
+		if (stateFile.exists()) {
+			InputStream input = new FileInputStream(stateFile);
+			try {
+				entries.load(input);
+			} finally {
+				input.close();
+			}
+		}
+	}
+
+	/**
+	 * Loads the state of the named execution, which is empty when it was recorded for another plan.
+	 */
+	public static IncrementalState load(String directory, String name, ReplacementPlan plan, String encoding)
+			throws IOException {
+		IncrementalState state = new IncrementalState(new File(directory, name + ".properties"));
+		String hash = hashPlan(plan, encoding);
+		if (!hash.equals(state.entries.getProperty(PLAN_KEY))) {
+			state.entries.clear();
+			state.entries.setProperty(PLAN_KEY, hash);
+		}
+		return state;
+	}
+
+	static String hashPlan(ReplacementPlan plan, String encoding) {
+		StringBuilder description = new StringBuilder();
+		description.append(plan.isRegex()).append('\0').append(plan.getRegexFlags()).append('\0')
+			.append(plan.getEngine()).append('\0').append(defaultString(encoding))
+			.append('\0').append(plan.getMaxMatches()).append('\0').append(plan.getScanLimit())
+			.append('\0').append(plan.getStreamThreshold()).append('\0').append(plan.getMaxMatchLength());
+		for (CompiledReplacement replacement : plan.getReplacements()) {
+			description.append('\0').append(replacement.getToken())
+				.append('\0').append(replacement.getValue())
+				.append('\0').append(defaultString(replacement.getXpath()));
+		}
+
+		try {
+			return toHex(digest().digest(description.toString().getBytes("UTF-8")));
+		} catch (IOException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	public boolean isUpToDate(String inputFile, String outputFile) throws IOException {
+		String recorded = entries.getProperty(inputFile + PAIR_SEPARATOR + outputFile);
+		if (recorded == null) {
+			return false;
+		}
+
+		String[] states = recorded.split(STATE_SEPARATOR);
+		return states.length == 2 && matches(states[0], new File(inputFile)) && matches(states[1], new File(outputFile));
+	}
+
+	/**
+	 * Records both files as they are now, after replacement. When replacing in place this is
+	 * the replaced content, which is what the next build will read.
+	 */
+	public void record(String inputFile, String outputFile) throws IOException {
+		entries.setProperty(inputFile + PAIR_SEPARATOR + outputFile,
+				describe(new File(inputFile)) + STATE_SEPARATOR + describe(new File(outputFile)));
+	}
+
+	public void save() throws IOException {
+		File directory = stateFile.getParentFile();
+		if (directory != null && !directory.exists() && !directory.mkdirs()) {
+			throw new IllegalStateException("Error creating directory: " + directory);
+		}
+
+		OutputStream output = new FileOutputStream(stateFile);
+		try {
+			entries.store(output, "maven-replacer-plugin incremental state");
+		} finally {
+			output.close();
+		}
+	}
+
+	public File getStateFile() {
+		return stateFile;
+	}
+
+	private boolean matches(String recorded, File file) throws IOException {
+		String[] fields = recorded.split(FIELD_SEPARATOR);
+		if (fields.length != 4 || !file.isFile() || file.length() != Long.parseLong(fields[0])) {
+			return false;
+		}
+
+		long lastModified = Long.parseLong(fields[1]);
+		boolean settled = lastModified < Long.parseLong(fields[3]) - TIMESTAMP_GRANULARITY;
+		return (settled && file.lastModified() == lastModified) || hash(file).equals(fields[2]);
+	}
+
+	private String describe(File file) throws IOException {
+		return file.length() + FIELD_SEPARATOR + file.lastModified() + FIELD_SEPARATOR + hash(file)
+				+ FIELD_SEPARATOR + System.currentTimeMillis();
+	}
+
+	private String hash(File file) throws IOException {
+		MessageDigest digest = digest();
+		InputStream input = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		} finally {
+			input.close();
+		}
+		return toHex(digest.digest());
+	}
+
+	private static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(HASH_ALGORITHM + " not available", e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,132 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Applies literal replacements one after another with the same result as
+ * {@link ReplacementEngine#SEQUENTIAL}, but skips tokens which cannot be in the content.
+ *
+ * A {@link LiteralAutomaton} built from every token finds the tokens present in one scan.
+ * After each replacement only the text around the inserted values is scanned again, as any
+ * token appearing from then on must overlap one of them. A large token map then costs one
+ * scan plus one pass per token found, rather than one pass per token.
+ */
+public class IndexedSequence implements ReplacementStep {
+	private final List<CompiledReplacement> replacements;
+	private final LiteralAutomaton index;
+	private final int longestToken;
+
+	public IndexedSequence(List<CompiledReplacement> replacements) {
+		this.replacements = Collections.unmodifiableList(new ArrayList<CompiledReplacement>(replacements));
+		this.index = new LiteralAutomaton(replacements);
+		int longest = 0;
+		for (CompiledReplacement replacement : replacements) {
+			longest = Math.max(longest, replacement.getToken().length());
+		}
+		this.longestToken = longest;
+	}
+
+	/**
+	 * Whether the replacements are all non-empty literal tokens applied by a {@link TokenReplacer}.
+	 */
+	public static boolean canIndex(List<CompiledReplacement> replacements) {
+		for (CompiledReplacement replacement : replacements) {
+			if (replacement.isRegex() || isEmpty(replacement.getToken())
+					|| !(replacement.getReplacer() instanceof TokenReplacer)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public String apply(String content) {
+		if (isEmpty(content)) {
+			return content;
+		}
+		return ReplacementBuffers.apply(this, content);
+	}
+
+	/**
+	 * Each replacement writes into whichever of the output and a borrowed buffer does not hold
+	 * the current content, so only the last result may need copying into the output.
+	 */
+	public boolean apply(CharSequence content, StringBuilder output) {
+		if (content.length() == 0 || MatchLimit.allowed() <= 0) {
+			return false;
+		}
+
+		BitSet found = new BitSet();
+		index.findTokens(content, 0, content.length(), found);
+		StringBuilder spare = ReplacementBuffers.borrow();
+		try {
+			CharSequence current = content;
+			StringBuilder target = output;
+			for (int i=0; i < replacements.size() && MatchLimit.allowed() > 0; i++) {
+				if (found.get(index.getTokenId(i)) && replace(current, replacements.get(i), found, target)) {
+					current = target;
+					target = target == output ? spare : output;
+				}
+			}
+
+			if (current == content) {
+				return false;
+			}
+			if (current != output) {
+				output.setLength(0);
+				output.append(current);
+			}
+			return true;
+		} finally {
+			ReplacementBuffers.release(spare);
+		}
+	}
+
+	private boolean replace(CharSequence content, CompiledReplacement replacement, BitSet found,
+			StringBuilder replaced) {
+		String token = replacement.getToken();
+		int allowed = MatchLimit.allowed();
+		int position = ReplacementBuffers.indexOf(content, token, 0);
+		if (position < 0) {
+			return false;
+		}
+
+		replaced.setLength(0);
+		List<int[]> changed = new ArrayList<int[]>();
+		int matches = 0;
+		int last = 0;
+		do {
+			matches++;
+			replaced.append(content, last, position);
+			int from = Math.max(0, replaced.length() - longestToken + 1);
+			replaced.append(replacement.getValue());
+			int to = replaced.length() + longestToken - 1;
+			if (!changed.isEmpty() && from <= changed.get(changed.size() - 1)[1]) {
+				changed.get(changed.size() - 1)[1] = to;
+			} else {
+				changed.add(new int[] {from, to});
+			}
+			last = position + token.length();
+			position = matches < allowed ? ReplacementBuffers.indexOf(content, token, last) : -1;
+		} while (position >= 0);
+		replaced.append(content, last, content.length());
+		MatchLimit.used(matches);
+		FileMetrics metrics = FileMetrics.current();
+		if (metrics != null) {
+			metrics.matched(replacement, matches);
+		}
+
+		for (int[] range : changed) {
+			index.findTokens(replaced, range[0], Math.min(range[1], replaced.length()), found);
+		}
+		return true;
+	}
+
+	public List<CompiledReplacement> getReplacements() {
+		return replacements;
+	}
+}
@@ -0,0 +1,219 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton replacing many literal tokens in one scan of the content.
+ *
+ * Matches are chosen leftmost first and then longest, so with tokens "@A" and "@AB"
+ * the text "@AB" is replaced by the value of "@AB". When the same token is given
+ * more than once the first replacement wins. Replaced values are never rescanned,
+ * unlike {@link ReplacementEngine#SEQUENTIAL} where a later token may match the
+ * value written by an earlier one.
+ */
+public class LiteralAutomaton implements ReplacementStep {
+	private final List<CompiledReplacement> replacements;
+	private final Node root;
+	private final List<String> values;
+	private final List<CompiledReplacement> owners;
+	private final int[] tokenIds;
+
+	public LiteralAutomaton(List<CompiledReplacement> replacements) {
+		this.replacements = Collections.unmodifiableList(new ArrayList<CompiledReplacement>(replacements));
+		this.root = new Node(0);
+		this.values = new ArrayList<String>();
+		this.owners = new ArrayList<CompiledReplacement>();
+		this.tokenIds = new int[replacements.size()];
+		for (int i=0; i < tokenIds.length; i++) {
+			tokenIds[i] = add(replacements.get(i));
+		}
+		buildFailureLinks();
+	}
+
+	private int add(CompiledReplacement replacement) {
+		String token = replacement.getToken();
+		Node node = root;
+		for (int i=0; i < token.length(); i++) {
+			char c = token.charAt(i);
+			Node child = node.children.get(c);
+			if (child == null) {
+				child = new Node(node.depth + 1);
+				node.children.put(c, child);
+			}
+			node = child;
+		}
+
+		if (!node.isTerminal()) {
+			node.value = values.size();
+			values.add(replacement.getValue());
+			owners.add(replacement);
+		}
+		return node.value;
+	}
+
+	private void buildFailureLinks() {
+		LinkedList<Node> queue = new LinkedList<Node>();
+		for (Node child : root.children.values()) {
+			child.fail = root;
+			queue.add(child);
+		}
+
+		while (!queue.isEmpty()) {
+			Node node = queue.removeFirst();
+			for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+				Node child = entry.getValue();
+				child.fail = next(node.fail, entry.getKey());
+				child.output = child.fail.isTerminal() ? child.fail : child.fail.output;
+				queue.add(child);
+			}
+		}
+	}
+
+	private Node next(Node state, char c) {
+		Node current = state;
+		while (true) {
+			Node child = current.children.get(c);
+			if (child != null) {
+				return child;
+			}
+			if (current == root) {
+				return root;
+			}
+			current = current.fail;
+		}
+	}
+
+	public String apply(String content) {
+		if (isEmpty(content)) {
+			return content;
+		}
+		return ReplacementBuffers.apply(this, content);
+	}
+
+	public boolean apply(CharSequence content, StringBuilder output) {
+		SpliceBuffer splices = new SpliceBuffer(content, output);
+		if (!splice(content, splices)) {
+			return false;
+		}
+		splices.finish();
+		return true;
+	}
+
+	/**
+	 * Hands each match to the splices, returning false when there is none.
+	 */
+	public boolean splice(CharSequence content, Splices splices) {
+		return splice(content, 0, content.length(), splices) > 0;
+	}
+
+	/**
+	 * Hands each match starting from the first index and before the second to the splices,
+	 * returning the number of matches. A match may end after the second index, so the content
+	 * must extend beyond it by the length of the longest token less one for the matches to be
+	 * those of the whole content.
+	 */
+	public int splice(CharSequence content, int from, int before, Splices splices) {
+		int allowed = MatchLimit.allowed();
+		if (from >= before || values.isEmpty() || allowed <= 0) {
+			return 0;
+		}
+
+		FileMetrics metrics = FileMetrics.current();
+		int matches = 0;
+		int length = content.length();
+		int position = from;
+		Node state = root;
+		Node best = null;
+		int bestStart = -1;
+
+		while (position < length || best != null) {
+			int earliestPending = Integer.MAX_VALUE;
+			if (position < length) {
+				state = next(state, content.charAt(position++));
+				Node match = state.isTerminal() ? state : state.output;
+				if (match != null) {
+					int start = position - match.depth;
+					if (best == null || start < bestStart || (start == bestStart && match.depth > best.depth)) {
+						best = match;
+						bestStart = start;
+					}
+				}
+				earliestPending = position - state.depth;
+			}
+
+			if (best == null) {
+				if (earliestPending >= before) {
+					break;
+				}
+			} else if (earliestPending > bestStart) {
+				if (bestStart >= before) {
+					break;
+				}
+				splices.splice(bestStart, bestStart + best.depth, values.get(best.value));
+				if (metrics != null) {
+					metrics.matched(owners.get(best.value), 1);
+				}
+				position = bestStart + best.depth;
+				state = root;
+				best = null;
+				if (++matches == allowed) {
+					break;
+				}
+			}
+		}
+
+		if (matches > 0) {
+			MatchLimit.used(matches);
+		}
+		return matches;
+	}
+
+	/**
+	 * Marks every token lying wholly within the given range of the content, including tokens
+	 * overlapping one another, by the id returned from {@link #getTokenId(int)}.
+	 */
+	public void findTokens(CharSequence content, int from, int to, BitSet found) {
+		Node state = root;
+		for (int i=from; i < to; i++) {
+			state = next(state, content.charAt(i));
+			for (Node match = state.isTerminal() ? state : state.output; match != null; match = match.output) {
+				found.set(match.value);
+			}
+		}
+	}
+
+	/**
+	 * The id of the token of the replacement at the given index. Replacements sharing a token share an id.
+	 */
+	public int getTokenId(int replacementIndex) {
+		return tokenIds[replacementIndex];
+	}
+
+	public List<CompiledReplacement> getReplacements() {
+		return replacements;
+	}
+
+	private static class Node {
+		private final Map<Character, Node> children = new HashMap<Character, Node>();
+		private final int depth;
+		private Node fail;
+		private Node output;
+		private int value = -1;
+
+		private Node(int depth) {
+			this.depth = depth;
+		}
+
+		private boolean isTerminal() {
+			return value >= 0;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the bytes of a file for the ASCII literals every match of a plan must contain, before
+ * anything is decoded. When none of them occurs no replacement can match, as the first cannot
+ * change the content for the later ones, so the file can be copied as it is. The check only
+ * holds in encodings accepted by {@link AsciiBytes#isAsciiCompatible(String)}.
+ */
+public class LiteralPresence {
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private final byte[][] literals;
+	private final boolean[] firstBytes = new boolean[256];
+	private final int longest;
+
+	private LiteralPresence(List<String> literals) {
+		this.literals = new byte[literals.size()][];
+		int max = 0;
+		for (int i=0; i < literals.size(); i++) {
+			String literal = literals.get(i);
+			this.literals[i] = new byte[literal.length()];
+			for (int j=0; j < literal.length(); j++) {
+				this.literals[i][j] = (byte) literal.charAt(j);
+			}
+			firstBytes[literal.charAt(0)] = true;
+			max = Math.max(max, literal.length());
+		}
+		this.longest = max;
+	}
+
+	/**
+	 * Returns the check for the replacements, or null when one of them has no required ASCII
+	 * literal, uses XPath or a replacer other than {@link TokenReplacer}.
+	 */
+	public static LiteralPresence of(List<CompiledReplacement> replacements) {
+		List<String> literals = new ArrayList<String>();
+		for (CompiledReplacement replacement : replacements) {
+			String literal = replacement.getRequiredLiteral();
+			if (isEmpty(literal) || !AsciiBytes.isAscii(literal) || !isEmpty(replacement.getXpath())
+					|| !(replacement.getReplacer() instanceof TokenReplacer)) {
+				return null;
+			}
+			literals.add(literal);
+		}
+		return literals.isEmpty() ? null : new LiteralPresence(literals);
+	}
+
+	/**
+	 * Whether any literal occurs in the input, reading it only as far as the first occurrence.
+	 */
+	public boolean occursIn(InputStream input) throws IOException {
+		byte[] buffer = new byte[CHUNK_SIZE + longest];
+		int kept = 0;
+		int read;
+		while ((read = input.read(buffer, kept, CHUNK_SIZE)) != -1) {
+			int length = kept + read;
+			if (occursIn(buffer, length)) {
+				return true;
+			}
+			kept = Math.min(longest - 1, length);
+			System.arraycopy(buffer, length - kept, buffer, 0, kept);
+		}
+		return false;
+	}
+
+	private boolean occursIn(byte[] buffer, int length) {
+		for (int i=0; i < length; i++) {
+			if (!firstBytes[buffer[i] & 0xFF]) {
+				continue;
+			}
+			for (byte[] literal : literals) {
+				if (startsWith(buffer, length, i, literal)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean startsWith(byte[] buffer, int length, int start, byte[] literal) {
+		if (start + literal.length > length) {
+			return false;
+		}
+		for (int j=0; j < literal.length; j++) {
+			if (buffer[start + j] != literal[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
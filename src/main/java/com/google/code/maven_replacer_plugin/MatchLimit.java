@@ -0,0 +1,55 @@
+package com.google.code.maven_replacer_plugin;
+
+/**
+ * The number of matches still allowed in the content being replaced, when a plan caps them.
+ * Bound to the replacing thread for the duration of {@link ReplacementPlan#apply(String)} so
+ * that every step draws on the same allowance. Each step stops scanning once none is left and
+ * copies the rest of its content as it is. When nothing is bound matches are not limited.
+ */
+public class MatchLimit {
+	private static final ThreadLocal<MatchLimit> CURRENT = new ThreadLocal<MatchLimit>();
+
+	private int remaining;
+
+	public MatchLimit(int remaining) {
+		this.remaining = remaining;
+	}
+
+	public static MatchLimit current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * The number of matches the current step may replace, which is unlimited when no limit is bound.
+	 */
+	public static int allowed() {
+		MatchLimit limit = CURRENT.get();
+		return limit == null ? Integer.MAX_VALUE : limit.remaining;
+	}
+
+	/**
+	 * Takes the matches replaced by the current step from the limit bound, if any.
+	 */
+	public static void used(int matches) {
+		MatchLimit limit = CURRENT.get();
+		if (limit != null) {
+			limit.remaining -= matches;
+		}
+	}
+
+	public void bind() {
+		CURRENT.set(this);
+	}
+
+	public static void unbind() {
+		CURRENT.remove();
+	}
+
+	public int getRemaining() {
+		return remaining;
+	}
+
+	public boolean isExhausted() {
+		return remaining <= 0;
+	}
+}
@@ -0,0 +1,319 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Light-weight syntactic analysis of a regex token.
+ * Finds the literal text every match must start with, whether the whole pattern is literal
+ * and whether the pattern depends on text outside of its own match (back references,
+ * anchors, boundaries and look-around) which makes it unsafe to combine with other patterns.
+ * Anything not understood is treated conservatively.
+ */
+public class PatternAnalysis {
+	private final int flags;
+	private final StringBuilder literalPrefix;
+	private final List<Pattern> remainder;
+	private final LinkedList<Integer> groupStarts;
+	private boolean contextFree;
+	private boolean literal;
+	private boolean caseInsensitive;
+	private boolean prefixOpen;
+	private boolean matchesAnything;
+	private int lastGroupStart = -1;
+
+	public PatternAnalysis(String regex, int flags) {
+		this.flags = flags == PatternFlagsFactory.NO_FLAGS ? 0 : flags;
+		this.literalPrefix = new StringBuilder();
+		this.remainder = new ArrayList<Pattern>();
+		this.groupStarts = new LinkedList<Integer>();
+		this.contextFree = (this.flags & (Pattern.COMMENTS | Pattern.LITERAL)) == 0;
+		this.literal = true;
+		this.caseInsensitive = (this.flags & Pattern.CASE_INSENSITIVE) != 0;
+		this.prefixOpen = regex.indexOf('|') < 0;
+		if (contextFree) {
+			parse(regex);
+		}
+	}
+
+	private void parse(String regex) {
+		int i = 0;
+		boolean atStart = true;
+		while (i < regex.length() && contextFree) {
+			char c = regex.charAt(i);
+			int next;
+			if (c == '\\') {
+				next = parseEscape(regex, i);
+			} else if (c == '[') {
+				next = parseClass(regex, i);
+			} else if (c == '(') {
+				next = parseGroup(regex, i, atStart);
+			} else if (c == ')') {
+				lastGroupStart = groupStarts.isEmpty() ? 0 : groupStarts.removeLast();
+				next = i + 1;
+			} else if (c == '.') {
+				addAny();
+				next = i + 1;
+			} else if (c == '^' || c == '$') {
+				contextFree = false;
+				next = i + 1;
+			} else if (c == '|') {
+				literal = false;
+				next = i + 1;
+			} else if (c == '*' || c == '+' || c == '?' || c == '{') {
+				next = parseQuantifier(regex, i);
+			} else {
+				addLiteral(c);
+				next = i + 1;
+			}
+			if (c != ')') {
+				lastGroupStart = -1;
+			}
+			atStart = atStart && c == '(';
+			i = next;
+		}
+	}
+
+	private int parseEscape(String regex, int start) {
+		if (start + 1 >= regex.length()) {
+			contextFree = false;
+			return regex.length();
+		}
+
+		char n = regex.charAt(start + 1);
+		if (n >= '1' && n <= '9' || n == 'k' || n == 'G' || n == 'b' || n == 'B') {
+			contextFree = false;
+			return start + 2;
+		}
+		if (n == 'A' || n == 'z' || n == 'Z') {
+			literal = false;
+			return start + 2;
+		}
+		if (n == 'Q') {
+			int end = regex.indexOf("\\E", start + 2);
+			if (end < 0) {
+				contextFree = false;
+				return regex.length();
+			}
+			for (int i=start + 2; i < end; i++) {
+				addLiteral(regex.charAt(i));
+			}
+			return end + 2;
+		}
+		if (!Character.isLetterOrDigit(n)) {
+			addLiteral(n);
+			return start + 2;
+		}
+
+		int end = start + 2;
+		if ((n == 'p' || n == 'P' || n == 'x') && end < regex.length() && regex.charAt(end) == '{') {
+			end = regex.indexOf('}', end) + 1;
+		} else if (n == 'p' || n == 'P' || n == 'c') {
+			end++;
+		} else if (n == 'x') {
+			end += 2;
+		} else if (n == 'u') {
+			end += 4;
+		} else if (n == '0') {
+			while (end < regex.length() && end < start + 5 && regex.charAt(end) >= '0' && regex.charAt(end) <= '7') {
+				end++;
+			}
+		}
+		if (end <= start || end > regex.length()) {
+			contextFree = false;
+			return regex.length();
+		}
+		addClass(regex.substring(start, end));
+		return end;
+	}
+
+	private int parseClass(String regex, int start) {
+		int depth = 0;
+		int i = start;
+		while (i < regex.length()) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i += 2;
+				continue;
+			}
+			if (c == '[') {
+				depth++;
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+					i++;
+				}
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+					i++;
+				}
+			} else if (c == ']') {
+				depth--;
+				if (depth == 0) {
+					addClass(regex.substring(start, i + 1));
+					return i + 1;
+				}
+			}
+			i++;
+		}
+		contextFree = false;
+		return regex.length();
+	}
+
+	private int parseGroup(String regex, int start, boolean atStart) {
+		if (start + 1 >= regex.length() || regex.charAt(start + 1) != '?') {
+			groupStarts.add(literalPrefix.length());
+			return start + 1;
+		}
+		if (start + 2 >= regex.length()) {
+			contextFree = false;
+			return regex.length();
+		}
+
+		char kind = regex.charAt(start + 2);
+		if (kind == ':' || kind == '>') {
+			groupStarts.add(literalPrefix.length());
+			return start + 3;
+		}
+		if (kind == '=' || kind == '!' || kind == '<') {
+			// look-around and named groups
+			contextFree = false;
+			return start + 3;
+		}
+
+		int i = start + 2;
+		while (i < regex.length() && regex.charAt(i) != ')' && regex.charAt(i) != ':') {
+			char flag = regex.charAt(i);
+			if (flag == 'x') {
+				contextFree = false;
+			} else if (flag == 'i') {
+				caseInsensitive = true;
+				if (!atStart) {
+					prefixOpen = false;
+				}
+			}
+			i++;
+		}
+		if (i < regex.length() && regex.charAt(i) == ':') {
+			groupStarts.add(literalPrefix.length());
+		}
+		return i + 1;
+	}
+
+	private int parseQuantifier(String regex, int start) {
+		literal = false;
+		if (prefixOpen) {
+			int optionalFrom = lastGroupStart >= 0 ? lastGroupStart : literalPrefix.length() - 1;
+			for (int i=Math.max(optionalFrom, 0); i < literalPrefix.length(); i++) {
+				remainder.add(Pattern.compile(Pattern.quote(String.valueOf(literalPrefix.charAt(i))), flags));
+			}
+			literalPrefix.setLength(Math.max(optionalFrom, 0));
+		}
+		prefixOpen = false;
+
+		int i = start + 1;
+		if (regex.charAt(start) == '{') {
+			int end = regex.indexOf('}', start);
+			if (end < 0) {
+				contextFree = false;
+				return regex.length();
+			}
+			i = end + 1;
+		}
+		if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+			i++;
+		}
+		return i;
+	}
+
+	private void addLiteral(char c) {
+		if (prefixOpen) {
+			literalPrefix.append(c);
+		} else {
+			remainder.add(Pattern.compile(Pattern.quote(String.valueOf(c)), flags));
+		}
+	}
+
+	private void addClass(String clazz) {
+		literal = false;
+		prefixOpen = false;
+		try {
+			remainder.add(Pattern.compile(clazz, flags));
+		} catch (RuntimeException e) {
+			matchesAnything = true;
+		}
+	}
+
+	private void addAny() {
+		literal = false;
+		prefixOpen = false;
+		matchesAnything = true;
+	}
+
+	public boolean isContextFree() {
+		return contextFree;
+	}
+
+	public boolean isLiteral() {
+		return contextFree && literal && remainder.isEmpty() && !matchesAnything;
+	}
+
+	public String getLiteralPrefix() {
+		return contextFree ? literalPrefix.toString() : "";
+	}
+
+	public boolean isCaseInsensitive() {
+		return caseInsensitive;
+	}
+
+	/**
+	 * Whether a match of either pattern may start within a match of the other, counting
+	 * overlaps of one literal prefix with the other's suffix. Every match starts with its
+	 * literal prefix, so the matches cannot overlap when neither pattern can contain the
+	 * first character of the other's prefix.
+	 */
+	public boolean mayOverlap(PatternAnalysis other) {
+		String prefix = getLiteralPrefix();
+		String otherPrefix = other.getLiteralPrefix();
+		if (prefix.length() == 0 || otherPrefix.length() == 0) {
+			return true;
+		}
+		return mayContain(otherPrefix.charAt(0)) || other.mayContain(prefix.charAt(0));
+	}
+
+	/**
+	 * Whether any match of the pattern may contain the character.
+	 */
+	public boolean mayContain(char c) {
+		if (!contextFree || matchesAnything) {
+			return true;
+		}
+		if (contains(literalPrefix, c)) {
+			return true;
+		}
+		for (Pattern token : remainder) {
+			if (matches(token, c)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean contains(CharSequence text, char c) {
+		for (int i=0; i < text.length(); i++) {
+			char t = text.charAt(i);
+			if (t == c || caseInsensitive && (Character.toLowerCase(t) == Character.toLowerCase(c)
+					|| Character.toUpperCase(t) == Character.toUpperCase(c))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean matches(Pattern token, char c) {
+		if (token.matcher(String.valueOf(c)).matches()) {
+			return true;
+		}
+		return caseInsensitive && (token.matcher(String.valueOf(Character.toLowerCase(c))).matches()
+				|| token.matcher(String.valueOf(Character.toUpperCase(c))).matches());
+	}
+}
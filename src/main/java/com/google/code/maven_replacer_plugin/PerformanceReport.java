@@ -0,0 +1,378 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects the {@link FileMetrics} of every file replaced with a plan and writes them as JSON,
+ * together with totals, the slowest files, the slowest steps of the plan and the number of
+ * matches of each replacement. Files may be added from several threads at once.
+ *
+ * Streamed files are timed as a whole and their matches are not counted. Matches of XPath
+ * replacements are those found within the selected nodes.
+ */
+public class PerformanceReport {
+	private static final int MAX_LABEL_LENGTH = 200;
+	private static final int LABEL_TOKENS = 5;
+
+	private final List<ReplacementStep> steps;
+	private final List<CompiledReplacement> replacements;
+	private final Map<CompiledReplacement, Integer> replacementIndexes;
+	private final List<FileMetrics> files = new ArrayList<FileMetrics>();
+	private final long[] stepNanos;
+	private final long[] stepMatches;
+	private final long[] replacementMatches;
+
+	public PerformanceReport(ReplacementPlan plan) {
+		this.steps = plan.getSteps();
+		this.replacements = plan.getReplacements();
+		this.replacementIndexes = new IdentityHashMap<CompiledReplacement, Integer>();
+		for (int i=0; i < replacements.size(); i++) {
+			replacementIndexes.put(replacements.get(i), i);
+		}
+		this.stepNanos = new long[steps.size()];
+		this.stepMatches = new long[steps.size()];
+		this.replacementMatches = new long[replacements.size()];
+	}
+
+	public FileMetrics start(String inputFile, String outputFile, String encoding) {
+		return new FileMetrics(inputFile, outputFile, encoding, steps.size());
+	}
+
+	public synchronized void add(FileMetrics metrics) {
+		files.add(metrics);
+		for (int i=0; i < steps.size(); i++) {
+			stepNanos[i] += metrics.getStepNanos()[i];
+			stepMatches[i] += metrics.getStepMatches()[i];
+		}
+		for (Map.Entry<CompiledReplacement, Long> matches : metrics.getMatches().entrySet()) {
+			replacementMatches[replacementIndexes.get(matches.getKey())] += matches.getValue();
+		}
+	}
+
+	public synchronized List<FileMetrics> getFiles() {
+		return new ArrayList<FileMetrics>(files);
+	}
+
+	/**
+	 * Writes the report as JSON, listing the given number of slowest files and steps.
+	 */
+	public synchronized String toJson(int slowest) {
+		List<FileMetrics> sorted = new ArrayList<FileMetrics>(files);
+		Collections.sort(sorted, new Comparator<FileMetrics>() {
+			public int compare(FileMetrics a, FileMetrics b) {
+				return a.getInputFile().compareTo(b.getInputFile());
+			}
+		});
+
+		Json json = new Json();
+		json.open('{');
+		json.name("totals");
+		writeTotals(json);
+		json.name("slowestFiles").open('[');
+		for (FileMetrics file : slowestFiles(slowest)) {
+			writeFile(json, file);
+		}
+		json.close(']');
+		json.name("slowestPatterns").open('[');
+		for (int step : slowestSteps(slowest)) {
+			writeStep(json, step);
+		}
+		json.close(']');
+		json.name("replacements").open('[');
+		for (int i=0; i < replacements.size(); i++) {
+			if (replacementMatches[i] > 0) {
+				json.open('{');
+				writeReplacement(json, replacements.get(i));
+				json.name("matches").value(replacementMatches[i]);
+				json.close('}');
+			}
+		}
+		json.close(']');
+		json.name("files").open('[');
+		for (FileMetrics file : sorted) {
+			writeFile(json, file);
+		}
+		json.close(']');
+		json.close('}');
+		return json.toString();
+	}
+
+	private void writeTotals(Json json) {
+		long modified = 0;
+		long streamed = 0;
+		long bytesIn = 0;
+		long bytesOut = 0;
+		long readNanos = 0;
+		long replaceNanos = 0;
+		long writeNanos = 0;
+		for (FileMetrics file : files) {
+			modified += file.isModified() ? 1 : 0;
+			streamed += file.isStreamed() ? 1 : 0;
+			bytesIn += file.getBytesIn();
+			bytesOut += file.getBytesOut();
+			readNanos += file.getReadNanos();
+			replaceNanos += file.getReplaceNanos();
+			writeNanos += file.getWriteNanos();
+		}
+		long matches = 0;
+		for (long replacementMatch : replacementMatches) {
+			matches += replacementMatch;
+		}
+
+		json.open('{');
+		json.name("files").value(files.size());
+		json.name("modified").value(modified);
+		json.name("streamed").value(streamed);
+		json.name("bytesIn").value(bytesIn);
+		json.name("bytesOut").value(bytesOut);
+		json.name("readMillis").millis(readNanos);
+		json.name("replaceMillis").millis(replaceNanos);
+		json.name("writeMillis").millis(writeNanos);
+		json.name("totalMillis").millis(readNanos + replaceNanos + writeNanos);
+		json.name("matches").value(matches);
+		json.close('}');
+	}
+
+	private List<FileMetrics> slowestFiles(int slowest) {
+		List<FileMetrics> slowestFiles = new ArrayList<FileMetrics>(files);
+		Collections.sort(slowestFiles, new Comparator<FileMetrics>() {
+			public int compare(FileMetrics a, FileMetrics b) {
+				long difference = b.getTotalNanos() - a.getTotalNanos();
+				return difference > 0 ? 1 : difference < 0 ? -1 : 0;
+			}
+		});
+		return slowestFiles.subList(0, Math.min(slowest, slowestFiles.size()));
+	}
+
+	private List<Integer> slowestSteps(int slowest) {
+		List<Integer> indexes = new ArrayList<Integer>();
+		for (int i=0; i < steps.size(); i++) {
+			indexes.add(i);
+		}
+		Collections.sort(indexes, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				long difference = stepNanos[b] - stepNanos[a];
+				return difference > 0 ? 1 : difference < 0 ? -1 : 0;
+			}
+		});
+		return indexes.subList(0, Math.min(slowest, indexes.size()));
+	}
+
+	private void writeFile(Json json, FileMetrics file) {
+		json.open('{');
+		json.name("file").value(file.getInputFile());
+		json.name("outputFile").value(file.getOutputFile());
+		json.name("encoding").value(file.getEncoding());
+		json.name("bytesIn").value(file.getBytesIn());
+		json.name("bytesOut").value(file.getBytesOut());
+		json.name("readMillis").millis(file.getReadNanos());
+		json.name("replaceMillis").millis(file.getReplaceNanos());
+		json.name("writeMillis").millis(file.getWriteNanos());
+		json.name("totalMillis").millis(file.getTotalNanos());
+		json.name("streamed").value(file.isStreamed());
+		json.name("modified").value(file.isModified());
+		json.name("matches").open('[');
+		long[] counts = new long[replacements.size()];
+		for (Map.Entry<CompiledReplacement, Long> matches : file.getMatches().entrySet()) {
+			counts[replacementIndexes.get(matches.getKey())] = matches.getValue();
+		}
+		for (int i=0; i < counts.length; i++) {
+			if (counts[i] > 0) {
+				json.open('{');
+				writeReplacement(json, replacements.get(i));
+				json.name("matches").value(counts[i]);
+				json.close('}');
+			}
+		}
+		json.close(']');
+		json.close('}');
+	}
+
+	private void writeStep(Json json, int step) {
+		json.open('{');
+		json.name("step").value(step + 1);
+		json.name("pattern").value(describe(steps.get(step)));
+		json.name("millis").millis(stepNanos[step]);
+		json.name("matches").value(stepMatches[step]);
+		json.close('}');
+	}
+
+	private static void writeReplacement(Json json, CompiledReplacement replacement) {
+		if (!isEmpty(replacement.getXpath())) {
+			json.name("xpath").value(replacement.getXpath());
+		}
+		json.name("token").value(replacement.getToken());
+	}
+
+	/**
+	 * A short description of a step: its token, or the first few tokens when it replaces many.
+	 */
+	static String describe(ReplacementStep step) {
+		if (step instanceof CompiledReplacement) {
+			CompiledReplacement replacement = (CompiledReplacement) step;
+			return shorten(isEmpty(replacement.getXpath()) ? replacement.getToken()
+					: replacement.getXpath() + " " + replacement.getToken());
+		}
+		if (step instanceof RegexAlternation) {
+			return describe("fused patterns", ((RegexAlternation) step).getReplacements(), " | ");
+		}
+		if (step instanceof LiteralAutomaton) {
+			return describe("literal tokens", ((LiteralAutomaton) step).getReplacements(), ", ");
+		}
+		if (step instanceof IndexedSequence) {
+			return describe("indexed tokens", ((IndexedSequence) step).getReplacements(), ", ");
+		}
+		if (step instanceof XPathBatch) {
+			List<CompiledReplacement> batch = ((XPathBatch) step).getReplacements();
+			return shorten(batch.size() + " XPath replacements: " + batch.get(0).getXpath());
+		}
+		if (step instanceof DelimitedLookup) {
+			return "delimited lookup of " + ((DelimitedLookup) step).getTokenCount() + " tokens";
+		}
+		return shorten(String.valueOf(step));
+	}
+
+	private static String describe(String kind, List<CompiledReplacement> replacements, String separator) {
+		StringBuilder description = new StringBuilder();
+		description.append(replacements.size()).append(' ').append(kind).append(": ");
+		for (int i=0; i < Math.min(LABEL_TOKENS, replacements.size()); i++) {
+			if (i > 0) {
+				description.append(separator);
+			}
+			description.append(replacements.get(i).getToken());
+		}
+		if (replacements.size() > LABEL_TOKENS) {
+			description.append(separator).append("...");
+		}
+		return shorten(description.toString());
+	}
+
+	private static String shorten(String label) {
+		return label.length() > MAX_LABEL_LENGTH ? label.substring(0, MAX_LABEL_LENGTH) + "..." : label;
+	}
+
+	/**
+	 * Writes indented JSON, adding the commas between values.
+	 */
+	private static class Json {
+		private final StringBuilder output = new StringBuilder();
+		private int depth;
+		private boolean first = true;
+		private boolean named;
+
+		private Json open(char bracket) {
+			separate();
+			output.append(bracket);
+			depth++;
+			first = true;
+			return this;
+		}
+
+		private Json close(char bracket) {
+			depth--;
+			if (!first) {
+				newLine();
+			}
+			output.append(bracket);
+			first = false;
+			return this;
+		}
+
+		private Json name(String name) {
+			separate();
+			quote(name);
+			output.append(": ");
+			named = true;
+			return this;
+		}
+
+		private void value(String value) {
+			separate();
+			if (value == null) {
+				output.append("null");
+			} else {
+				quote(value);
+			}
+		}
+
+		private void value(long value) {
+			separate();
+			output.append(value);
+		}
+
+		private void value(boolean value) {
+			separate();
+			output.append(value);
+		}
+
+		private void millis(long nanos) {
+			separate();
+			output.append(String.format(Locale.ENGLISH, "%.3f", nanos / 1000000.0));
+		}
+
+		private void separate() {
+			if (named) {
+				named = false;
+				return;
+			}
+			if (!first) {
+				output.append(',');
+			}
+			if (depth > 0) {
+				newLine();
+			}
+			first = false;
+		}
+
+		private void newLine() {
+			output.append('\n');
+			for (int i=0; i < depth; i++) {
+				output.append("  ");
+			}
+		}
+
+		private void quote(String value) {
+			output.append('"');
+			for (int i=0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				switch (c) {
+				case '"':
+					output.append("\\\"");
+					break;
+				case '\\':
+					output.append("\\\\");
+					break;
+				case '\n':
+					output.append("\\n");
+					break;
+				case '\r':
+					output.append("\\r");
+					break;
+				case '\t':
+					output.append("\\t");
+					break;
+				default:
+					if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+						output.append(String.format("\\u%04x", (int) c));
+					} else {
+						output.append(c);
+					}
+				}
+			}
+			output.append('"');
+		}
+
+		@Override
+		public String toString() {
+			return output.toString();
+		}
+	}
+}
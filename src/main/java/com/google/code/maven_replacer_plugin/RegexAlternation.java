@@ -0,0 +1,185 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Several regex replacements fused into one alternation, with a capturing group around
+ * each pattern, so that the content is searched with a single matcher.
+ * Where matches of different patterns overlap the leftmost wins, and when several
+ * patterns match at the same position the first configured wins.
+ */
+public class RegexAlternation implements ReplacementStep {
+	private final List<CompiledReplacement> replacements;
+	private final int[] groupOffsets;
+	private final Pattern pattern;
+
+	public RegexAlternation(List<CompiledReplacement> replacements, int regexFlags) {
+		this.replacements = Collections.unmodifiableList(new ArrayList<CompiledReplacement>(replacements));
+		this.groupOffsets = new int[replacements.size()];
+
+		StringBuilder alternation = new StringBuilder();
+		int group = 1;
+		for (int i=0; i < replacements.size(); i++) {
+			CompiledReplacement replacement = replacements.get(i);
+			if (i > 0) {
+				alternation.append('|');
+			}
+			alternation.append('(').append(replacement.getToken()).append(')');
+			groupOffsets[i] = group;
+			group += replacement.getPattern().matcher("").groupCount() + 1;
+		}
+
+		if (regexFlags == PatternFlagsFactory.NO_FLAGS) {
+			this.pattern = Pattern.compile(alternation.toString());
+		} else {
+			this.pattern = Pattern.compile(alternation.toString(), regexFlags);
+		}
+	}
+
+	/**
+	 * Splits the replacements into steps, fusing neighbouring patterns only where the result is
+	 * the same as applying them in turn. Patterns which depend on their surroundings, whose
+	 * matches may overlap, or which could match within or across the value written by an
+	 * earlier pattern in the same step are applied in a later step instead, keeping the
+	 * configured order.
+	 */
+	public static List<ReplacementStep> fuse(List<CompiledReplacement> replacements, int regexFlags) {
+		List<ReplacementStep> steps = new ArrayList<ReplacementStep>();
+		List<CompiledReplacement> group = new ArrayList<CompiledReplacement>();
+		List<PatternAnalysis> analyses = new ArrayList<PatternAnalysis>();
+
+		for (CompiledReplacement replacement : replacements) {
+			PatternAnalysis analysis = new PatternAnalysis(replacement.getToken(), regexFlags);
+			if (!isFusable(replacement, analysis)) {
+				addGroup(steps, group, analyses, regexFlags);
+				steps.add(replacement);
+				continue;
+			}
+
+			if (conflicts(replacement, analysis, group, analyses)) {
+				addGroup(steps, group, analyses, regexFlags);
+			}
+			group.add(replacement);
+			analyses.add(analysis);
+		}
+		addGroup(steps, group, analyses, regexFlags);
+		return steps;
+	}
+
+	private static boolean isFusable(CompiledReplacement replacement, PatternAnalysis analysis) {
+		return analysis.isContextFree() && replacement.getTemplate().isParsed()
+				&& !replacement.getPattern().matcher("").find();
+	}
+
+	private static boolean conflicts(CompiledReplacement replacement, PatternAnalysis analysis,
+			List<CompiledReplacement> group, List<PatternAnalysis> analyses) {
+		for (int i=0; i < group.size(); i++) {
+			if (analysis.mayOverlap(analyses.get(i)) || mayMatchValue(analysis, group.get(i).getTemplate())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Whether a later pattern could match text written by the template, or text joined up
+	 * around it. Text copied from groups and empty values are not checked and always count.
+	 */
+	private static boolean mayMatchValue(PatternAnalysis later, ReplacementTemplate earlier) {
+		String value = earlier.getLiteralText();
+		if (earlier.hasGroupReferences() || value.length() == 0) {
+			return true;
+		}
+		for (int i=0; i < value.length(); i++) {
+			if (later.mayContain(value.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void addGroup(List<ReplacementStep> steps, List<CompiledReplacement> group,
+			List<PatternAnalysis> analyses, int regexFlags) {
+		if (group.size() == 1) {
+			steps.add(group.get(0));
+		} else if (!group.isEmpty()) {
+			steps.add(new RegexAlternation(group, regexFlags));
+		}
+		group.clear();
+		analyses.clear();
+	}
+
+	public String apply(String content) {
+		return ReplacementBuffers.apply(this, content);
+	}
+
+	public boolean apply(CharSequence content, StringBuilder output) {
+		int allowed = MatchLimit.allowed();
+		if (allowed <= 0 || cannotMatch(content)) {
+			return false;
+		}
+
+		Matcher matcher = pattern.matcher(content);
+		if (!matcher.find()) {
+			return false;
+		}
+
+		FileMetrics metrics = FileMetrics.current();
+		int matches = 0;
+		int last = 0;
+		do {
+			matches++;
+			output.append(content, last, matcher.start());
+			int matched = appendReplacement(output, matcher);
+			if (metrics != null) {
+				metrics.matched(replacements.get(matched), 1);
+			}
+			last = matcher.end();
+		} while (matches < allowed && matcher.find());
+		output.append(content, last, content.length());
+		MatchLimit.used(matches);
+		return true;
+	}
+
+	/**
+	 * Whether none of the fused patterns can match, as the content lacks each one's required literal.
+	 */
+	public boolean cannotMatch(CharSequence content) {
+		for (CompiledReplacement replacement : replacements) {
+			if (!replacement.cannotMatch(content)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Appends the value of whichever fused pattern made the current match, returning its index.
+	 */
+	public int appendReplacement(StringBuilder output, Matcher matcher) {
+		int matched = matchedReplacement(matcher);
+		replacements.get(matched).getTemplate().appendTo(output, matcher, groupOffsets[matched]);
+		return matched;
+	}
+
+	private int matchedReplacement(Matcher matcher) {
+		for (int i=0; i < groupOffsets.length; i++) {
+			if (matcher.start(groupOffsets[i]) >= 0) {
+				return i;
+			}
+		}
+		throw new IllegalStateException("No fused pattern matched: " + pattern.pattern());
+	}
+
+	public List<CompiledReplacement> getReplacements() {
+		return replacements;
+	}
+
+	public Pattern getPattern() {
+		return pattern;
+	}
+}
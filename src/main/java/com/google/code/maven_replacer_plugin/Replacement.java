@@ -7,6 +7,10 @@ import org.apache.commons.lang.StringEscapeUtils;
 import com.google.code.maven_replacer_plugin.file.FileUtils;
 
 
+/**
+ * A token and value as configured. The token and value after unescaping and delimiters are
+ * resolved once, when the plan is prepared, into the final fields of {@link CompiledReplacement}.
+ */
 public class Replacement {
 	private final FileUtils fileUtils;
 	
@@ -45,7 +49,7 @@ public class Replacement {
 	}
 
 	public String getToken() {
-		String newToken = unescape ? unescape(token) : token;
+		String newToken = getUndelimitedToken();
 		if (delimiter != null) {
 			return delimiter.apply(newToken);
 		}
@@ -56,6 +60,17 @@ public class Replacement {
 		return unescape ? unescape(value) : value;
 	}
 
+	/**
+	 * The token without any delimiter applied.
+	 */
+	public String getUndelimitedToken() {
+		return unescape ? unescape(token) : token;
+	}
+
+	public DelimiterBuilder getDelimiter() {
+		return delimiter;
+	}
+
 	public void setToken(String token) {
 		this.token = token;
 	}
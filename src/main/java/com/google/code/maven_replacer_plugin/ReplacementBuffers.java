@@ -0,0 +1,70 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reusable output buffers for the thread replacing a file. Steps write into a borrowed buffer
+ * instead of allocating a new one each time, so a buffer grows to the size of the files being
+ * replaced once and is then reused for every step and file on that thread. Buffers grown beyond
+ * {@link #RETAINED_CAPACITY} characters by an unusually large file are dropped when released.
+ */
+public final class ReplacementBuffers {
+	static final int RETAINED_CAPACITY = 8 * 1024 * 1024;
+
+	private static final ThreadLocal<List<StringBuilder>> FREE = new ThreadLocal<List<StringBuilder>>() {
+		@Override
+		protected List<StringBuilder> initialValue() {
+			return new ArrayList<StringBuilder>();
+		}
+	};
+
+	private ReplacementBuffers() {
+	}
+
+	/**
+	 * An empty buffer, which must be released once its content is no longer needed.
+	 */
+	public static StringBuilder borrow() {
+		List<StringBuilder> free = FREE.get();
+		if (free.isEmpty()) {
+			return new StringBuilder();
+		}
+		return free.remove(free.size() - 1);
+	}
+
+	public static void release(StringBuilder buffer) {
+		if (buffer.capacity() <= RETAINED_CAPACITY) {
+			buffer.setLength(0);
+			FREE.get().add(buffer);
+		}
+	}
+
+	/**
+	 * Applies a step to a string through a borrowed buffer, returning the content itself when unchanged.
+	 */
+	public static String apply(ReplacementStep step, String content) {
+		StringBuilder output = borrow();
+		try {
+			return step.apply(content, output) ? output.toString() : content;
+		} finally {
+			release(output);
+		}
+	}
+
+	/**
+	 * {@link String#indexOf(String, int)} for the strings, buffers and file bytes steps read from.
+	 */
+	public static int indexOf(CharSequence text, String token, int from) {
+		if (text instanceof String) {
+			return ((String) text).indexOf(token, from);
+		}
+		if (text instanceof StringBuilder) {
+			return ((StringBuilder) text).indexOf(token, from);
+		}
+		if (text instanceof ByteText) {
+			return ((ByteText) text).indexOf(token, from);
+		}
+		return text.toString().indexOf(token, from);
+	}
+}
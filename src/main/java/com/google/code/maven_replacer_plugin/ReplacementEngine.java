@@ -0,0 +1,44 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isBlank;
+
+/**
+ * How the replacements of a plan are applied to each file's content.
+ */
+public enum ReplacementEngine {
+	/**
+	 * Each replacement is applied in turn to the result of the previous one.
+	 */
+	SEQUENTIAL,
+
+	/**
+	 * All tokens are matched in a single scan of the content and replaced text is never
+	 * scanned again. Literal tokens use the leftmost and then longest token at each position.
+	 * Regex tokens are fused into one alternation where that gives the same result as applying
+	 * them in turn, falling back to sequential passes for the others.
+	 */
+	SINGLE_PASS,
+
+	/**
+	 * For non-regex tokens with delimiters: the content is scanned once for each delimiter's
+	 * start and end, and the enclosed name is looked up among the tokens, so the cost does not
+	 * grow with the number of tokens or delimiters. Names which are not tokens are left alone.
+	 * Tokens without delimiters are then replaced in a single pass, and regex tokens are
+	 * handled as in {@link #SINGLE_PASS}.
+	 */
+	DELIMITED_LOOKUP;
+
+	public static ReplacementEngine from(String name) {
+		if (isBlank(name)) {
+			return SEQUENTIAL;
+		}
+
+		String normalised = name.trim().toUpperCase().replace('-', '_');
+		for (ReplacementEngine engine : values()) {
+			if (engine.name().equals(normalised)) {
+				return engine;
+			}
+		}
+		throw new IllegalArgumentException("Unknown replacement engine: " + name);
+	}
+}
@@ -0,0 +1,294 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isBlank;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a replacement plan over many files, optionally on a pool of worker threads.
+ * Completed files are reported back in input order so that logging and summaries do not
+ * depend on thread scheduling. The first failing file (in input order) is rethrown and
+ * files after it not yet started are skipped.
+ */
+public class ReplacementExecutor {
+	private static final String INVALID_THREADS_MESSAGE = "Invalid <threads> value: %s. Use a number of threads (e.g. 4) or a multiple of the available cores (e.g. 1C)";
+	private static final int QUEUED_FILES_PER_THREAD = 4;
+	private static final Future<Boolean> END_OF_FILES = new FutureTask<Boolean>(new Callable<Boolean>() {
+		public Boolean call() {
+			return null;
+		}
+	});
+
+	private final ReplacementProcessor processor;
+	private final int threads;
+
+	public ReplacementExecutor(ReplacementProcessor processor, int threads) {
+		this.processor = processor;
+		this.threads = Math.max(1, threads);
+	}
+
+	public static int parseThreads(String threads) {
+		if (isBlank(threads)) {
+			return 1;
+		}
+
+		String value = threads.trim();
+		try {
+			if (value.endsWith("C") || value.endsWith("c")) {
+				float multiplier = Float.parseFloat(value.substring(0, value.length() - 1));
+				return Math.max(1, (int) (multiplier * Runtime.getRuntime().availableProcessors()));
+			}
+			int count = Integer.parseInt(value);
+			if (count > 0) {
+				return count;
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format(INVALID_THREADS_MESSAGE, threads), e);
+		}
+		throw new IllegalArgumentException(String.format(INVALID_THREADS_MESSAGE, threads));
+	}
+
+	public void replace(ReplacementPlan plan, List<String> inputFiles, List<String> outputFiles,
+			String encoding, Callback callback) throws IOException {
+		if (threads == 1 || inputFiles.size() <= 1) {
+			for (int i=0; i < inputFiles.size(); i++) {
+				boolean modified = processor.replace(plan, inputFiles.get(i), outputFiles.get(i), encoding);
+				callback.replaced(i, modified);
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, inputFiles.size()));
+		try {
+			List<Future<Boolean>> results = submit(executor, plan, inputFiles, outputFiles, encoding);
+			waitInOrder(results, callback);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Replaces files while the source is still producing them, so that finding the files and
+	 * replacing them overlap. The source runs on its own thread and is blocked while a few files
+	 * per worker are already waiting. Files are reported in the order the source added them.
+	 * With a single thread each file is replaced on the calling thread as soon as it is added.
+	 */
+	public void replace(final ReplacementPlan plan, final Source source, final String encoding, Callback callback)
+			throws IOException {
+		if (threads == 1) {
+			replaceInline(plan, source, encoding, callback);
+			return;
+		}
+
+		final ExecutorService workers = Executors.newFixedThreadPool(threads);
+		final BlockingQueue<Future<Boolean>> results = new LinkedBlockingQueue<Future<Boolean>>();
+		final Semaphore waiting = new Semaphore(threads * QUEUED_FILES_PER_THREAD);
+		final AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+		ExecutorService producer = Executors.newSingleThreadExecutor();
+		try {
+			Future<Boolean> produced = producer.submit(new Callable<Boolean>() {
+				public Boolean call() throws IOException {
+					try {
+						source.produce(new Sink() {
+							private int added;
+
+							public void add(String inputFile, String outputFile) {
+								try {
+									waiting.acquire();
+								} catch (InterruptedException e) {
+									Thread.currentThread().interrupt();
+									throw new IllegalStateException("Interrupted while queueing " + inputFile, e);
+								}
+								results.add(workers.submit(new ReleasingTask(task(added++, plan, inputFile, outputFile,
+										encoding, firstFailure), waiting)));
+							}
+						});
+					} finally {
+						results.add(END_OF_FILES);
+					}
+					return Boolean.TRUE;
+				}
+			});
+
+			boolean reporting = true;
+			int index = 0;
+			for (Future<Boolean> result = take(results); result != END_OF_FILES; result = take(results)) {
+				Boolean modified = get(result);
+				if (reporting && modified != null) {
+					callback.replaced(index++, modified);
+				} else {
+					reporting = false;
+				}
+			}
+			get(produced);
+		} finally {
+			producer.shutdownNow();
+			workers.shutdownNow();
+		}
+	}
+
+	private void replaceInline(final ReplacementPlan plan, Source source, final String encoding,
+			final Callback callback) throws IOException {
+		try {
+			source.produce(new Sink() {
+				private int added;
+
+				public void add(String inputFile, String outputFile) {
+					try {
+						boolean modified = processor.replace(plan, inputFile, outputFile, encoding);
+						callback.replaced(added++, modified);
+					} catch (IOException e) {
+						throw new InlineFailure(e);
+					}
+				}
+			});
+		} catch (InlineFailure e) {
+			throw e.failure;
+		}
+	}
+
+	private List<Future<Boolean>> submit(ExecutorService executor, ReplacementPlan plan,
+			List<String> inputFiles, List<String> outputFiles, String encoding) {
+		AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+		for (int i=0; i < inputFiles.size(); i++) {
+			results.add(executor.submit(task(i, plan, inputFiles.get(i), outputFiles.get(i), encoding, firstFailure)));
+		}
+		return results;
+	}
+
+	private Callable<Boolean> task(final int index, final ReplacementPlan plan, final String inputFile,
+			final String outputFile, final String encoding, final AtomicInteger firstFailure) {
+		return new Callable<Boolean>() {
+			public Boolean call() throws Exception {
+				if (index > firstFailure.get()) {
+					return null;
+				}
+				try {
+					return processor.replace(plan, inputFile, outputFile, encoding);
+				} catch (Exception e) {
+					recordFailure(firstFailure, index);
+					throw e;
+				}
+			}
+		};
+	}
+
+	private static void recordFailure(AtomicInteger firstFailure, int index) {
+		int current = firstFailure.get();
+		while (index < current && !firstFailure.compareAndSet(current, index)) {
+			current = firstFailure.get();
+		}
+	}
+
+	private void waitInOrder(List<Future<Boolean>> results, Callback callback) throws IOException {
+		boolean reporting = true;
+		for (int i=0; i < results.size(); i++) {
+			Boolean modified = get(results.get(i));
+			if (reporting && modified != null) {
+				callback.replaced(i, modified);
+			} else {
+				reporting = false;
+			}
+		}
+	}
+
+	private Future<Boolean> take(BlockingQueue<Future<Boolean>> results) {
+		try {
+			return results.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for replacements", e);
+		}
+	}
+
+	private Boolean get(Future<Boolean> result) throws IOException {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for replacements", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause.getMessage(), cause);
+		}
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Notified in input order for each file replaced, with whether its content was modified.
+	 */
+	public interface Callback {
+		void replaced(int index, boolean modified) throws IOException;
+	}
+
+	/**
+	 * Finds the files to replace, adding each to the sink as soon as it is known.
+	 */
+	public interface Source {
+		void produce(Sink sink) throws IOException;
+	}
+
+	public interface Sink {
+		/**
+		 * Queues a file for replacement, waiting while the workers are too far behind.
+		 */
+		void add(String inputFile, String outputFile);
+	}
+
+	/**
+	 * Carries a failure replacing a file out of the sink, which cannot throw IOException.
+	 */
+	private static class InlineFailure extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private final IOException failure;
+
+		private InlineFailure(IOException failure) {
+			super(failure);
+			this.failure = failure;
+		}
+	}
+
+	private static class ReleasingTask implements Callable<Boolean> {
+		private final Callable<Boolean> task;
+		private final Semaphore waiting;
+
+		private ReleasingTask(Callable<Boolean> task, Semaphore waiting) {
+			this.task = task;
+			this.waiting = waiting;
+		}
+
+		public Boolean call() throws Exception {
+			try {
+				return task.call();
+			} finally {
+				waiting.release();
+			}
+		}
+	}
+}
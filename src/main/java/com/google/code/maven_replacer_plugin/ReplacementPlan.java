@@ -0,0 +1,351 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ordered list of compiled replacements for one execution.
+ * Built once and shared by every file being replaced.
+ */
+public class ReplacementPlan {
+	public static final int UNLIMITED = Integer.MAX_VALUE;
+
+	private final List<CompiledReplacement> replacements;
+	private final List<ReplacementStep> steps;
+	private final boolean regex;
+	private final int regexFlags;
+	private final ReplacementEngine engine;
+	private final boolean asciiLiteral;
+	private final LiteralPresence presence;
+	private StreamingReplacer streamingReplacer;
+	private long streamThreshold;
+	private int maxMatchLength;
+	private PerformanceReport report;
+	private int maxMatches = UNLIMITED;
+	private ScanLimit scanLimit;
+
+	public ReplacementPlan(List<CompiledReplacement> replacements, boolean regex, int regexFlags) {
+		this(replacements, regex, regexFlags, ReplacementEngine.SEQUENTIAL);
+	}
+
+	public ReplacementPlan(List<CompiledReplacement> replacements, boolean regex, int regexFlags,
+			ReplacementEngine engine) {
+		this.replacements = Collections.unmodifiableList(replacements);
+		this.regex = regex;
+		this.regexFlags = regexFlags;
+		this.engine = engine;
+		this.steps = buildSteps();
+		this.asciiLiteral = AsciiBytes.isAsciiLiteral(steps);
+		this.presence = LiteralPresence.of(replacements);
+	}
+
+	private List<ReplacementStep> buildSteps() {
+		List<ReplacementStep> built = new ArrayList<ReplacementStep>();
+		List<CompiledReplacement> run = new ArrayList<CompiledReplacement>();
+		List<CompiledReplacement> xpathRun = new ArrayList<CompiledReplacement>();
+		for (CompiledReplacement replacement : replacements) {
+			if (isEmpty(replacement.getXpath())) {
+				addXPathRun(built, xpathRun);
+				run.add(replacement);
+				continue;
+			}
+			addRun(built, run);
+			xpathRun.add(replacement);
+		}
+		addXPathRun(built, xpathRun);
+		addRun(built, run);
+		return built;
+	}
+
+	private void addXPathRun(List<ReplacementStep> built, List<CompiledReplacement> xpathRun) {
+		if (xpathRun.size() > 1 && xpathRun.get(0).getReplacer() instanceof XPathReplacer) {
+			built.add(new XPathBatch((XPathReplacer) xpathRun.get(0).getReplacer(), xpathRun));
+		} else {
+			built.addAll(xpathRun);
+		}
+		xpathRun.clear();
+	}
+
+	private void addRun(List<ReplacementStep> built, List<CompiledReplacement> run) {
+		if (engine == ReplacementEngine.SEQUENTIAL) {
+			addSequence(built, run);
+		} else if (regex) {
+			built.addAll(RegexAlternation.fuse(run, regexFlags));
+		} else if (engine == ReplacementEngine.DELIMITED_LOOKUP) {
+			built.addAll(DelimitedLookup.build(run));
+		} else {
+			addLiterals(built, run);
+		}
+		run.clear();
+	}
+
+	private void addSequence(List<ReplacementStep> built, List<CompiledReplacement> run) {
+		if (run.size() > 1 && IndexedSequence.canIndex(run)) {
+			built.add(new IndexedSequence(run));
+		} else {
+			built.addAll(run);
+		}
+	}
+
+	static void addLiterals(List<ReplacementStep> built, List<CompiledReplacement> run) {
+		if (run.size() == 1) {
+			built.add(run.get(0));
+		} else if (!run.isEmpty()) {
+			built.add(new LiteralAutomaton(run));
+		}
+	}
+
+	/**
+	 * Streams files of at least the given size in bytes rather than reading them whole.
+	 * Regular expressions must not match more than maxMatchLength characters.
+	 */
+	public ReplacementPlan withStreaming(long streamThreshold, int maxMatchLength) {
+		this.streamThreshold = streamThreshold;
+		this.maxMatchLength = maxMatchLength;
+		if (hasXPath() && !XPathStreamer.canStream(replacements)) {
+			return this;
+		}
+		this.streamingReplacer = new StreamingReplacer(this, maxMatchLength);
+		checkStreamedLimit();
+		return this;
+	}
+
+	/**
+	 * Replaces at most the given number of matches in each file, counted across all replacements
+	 * in the order they are applied. Scanning stops once the limit is reached.
+	 */
+	public ReplacementPlan withMaxMatches(int maxMatches) {
+		if (maxMatches < 0) {
+			throw new IllegalArgumentException("Maximum matches must not be negative: " + maxMatches);
+		}
+		this.maxMatches = maxMatches;
+		checkStreamedLimit();
+		return this;
+	}
+
+	private void checkStreamedLimit() {
+		if (isLimited() && isStreaming() && streamingReplacer.getStageCount() > 1) {
+			throw new IllegalArgumentException("Maximum matches can only be streamed with a single replacement step");
+		}
+	}
+
+	/**
+	 * Replaces only the leading lines or bytes of each file, copying the rest as it is.
+	 */
+	public ReplacementPlan withScanLimit(ScanLimit scanLimit) {
+		for (CompiledReplacement replacement : replacements) {
+			if (!isEmpty(replacement.getXpath())) {
+				throw new IllegalArgumentException("XPath replacements need the whole file and cannot have a scan limit");
+			}
+		}
+		this.scanLimit = scanLimit;
+		return this;
+	}
+
+	public ScanLimit getScanLimit() {
+		return scanLimit;
+	}
+
+	private boolean hasXPath() {
+		for (CompiledReplacement replacement : replacements) {
+			if (!isEmpty(replacement.getXpath())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean isLimited() {
+		return maxMatches != UNLIMITED;
+	}
+
+	public int getMaxMatches() {
+		return maxMatches;
+	}
+
+	public boolean isStreaming() {
+		return streamingReplacer != null;
+	}
+
+	public long getStreamThreshold() {
+		return streamThreshold;
+	}
+
+	public int getMaxMatchLength() {
+		return maxMatchLength;
+	}
+
+	public StreamingReplacer getStreamingReplacer() {
+		return streamingReplacer;
+	}
+
+	/**
+	 * Records timings, sizes and match counts of every file replaced into the report.
+	 */
+	public ReplacementPlan withReport() {
+		this.report = new PerformanceReport(this);
+		return this;
+	}
+
+	public PerformanceReport getReport() {
+		return report;
+	}
+
+	/**
+	 * Each step reads the buffer written by the previous one and writes into the other of two
+	 * buffers reused by this thread, so only the final result becomes a new string.
+	 */
+	public String apply(String content) {
+		StringBuilder first = ReplacementBuffers.borrow();
+		StringBuilder second = ReplacementBuffers.borrow();
+		try {
+			CharSequence replaced = applySteps(content, first, second);
+			return replaced == content ? content : replaced.toString();
+		} finally {
+			ReplacementBuffers.release(first);
+			ReplacementBuffers.release(second);
+		}
+	}
+
+	/**
+	 * Applies the steps to any text, such as a {@link ByteText} view of a file, handing the result
+	 * to the output before the buffers holding it are reused. Returns false, without writing
+	 * anything, when the content is unchanged.
+	 */
+	public boolean apply(CharSequence content, Output output) throws IOException {
+		StringBuilder first = ReplacementBuffers.borrow();
+		StringBuilder second = ReplacementBuffers.borrow();
+		try {
+			CharSequence replaced = applySteps(content, first, second);
+			if (replaced == content) {
+				return false;
+			}
+			output.write(replaced);
+			return true;
+		} finally {
+			ReplacementBuffers.release(first);
+			ReplacementBuffers.release(second);
+		}
+	}
+
+	/**
+	 * Whether the plan replaces literal ASCII tokens in a single scan, so that its result can be
+	 * described by {@link Splices} of the original content.
+	 */
+	public boolean isSpliceable() {
+		return asciiLiteral && steps.size() == 1
+				&& (steps.get(0) instanceof CompiledReplacement || steps.get(0) instanceof LiteralAutomaton);
+	}
+
+	/**
+	 * Whether the plan is spliceable and every value has the length of its token, so that files
+	 * keep their length and can be patched where they are.
+	 */
+	public boolean isSameLength() {
+		if (!isSpliceable()) {
+			return false;
+		}
+		for (CompiledReplacement replacement : replacements) {
+			if (replacement.getValue().length() != replacement.getToken().length()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hands every match of a spliceable plan starting from the first index and before the second
+	 * to the splices, returning the number of matches. The caller binds any {@link MatchLimit},
+	 * as a file is scanned in several ranges, see {@link SpliceScanner}.
+	 */
+	public int splice(CharSequence content, int from, int before, Splices splices) {
+		ReplacementStep step = steps.get(0);
+		if (step instanceof LiteralAutomaton) {
+			return ((LiteralAutomaton) step).splice(content, from, before, splices);
+		}
+		CompiledReplacement replacement = (CompiledReplacement) step;
+		return ((TokenReplacer) replacement.getReplacer()).splice(content, from, before, replacement, splices);
+	}
+
+	private CharSequence applySteps(CharSequence content, StringBuilder first, StringBuilder second) {
+		if (!isLimited()) {
+			return applySteps(content, null, first, second);
+		}
+
+		MatchLimit limit = new MatchLimit(maxMatches);
+		limit.bind();
+		try {
+			return applySteps(content, limit, first, second);
+		} finally {
+			MatchLimit.unbind();
+		}
+	}
+
+	private CharSequence applySteps(CharSequence content, MatchLimit limit, StringBuilder first, StringBuilder second) {
+		FileMetrics metrics = FileMetrics.current();
+		CharSequence current = content;
+		StringBuilder target = first;
+		for (int i=0; i < steps.size() && (limit == null || !limit.isExhausted()); i++) {
+			long start = 0;
+			if (metrics != null) {
+				metrics.startStep(i);
+				start = System.nanoTime();
+			}
+			target.setLength(0);
+			boolean changed = steps.get(i).apply(current, target);
+			if (metrics != null) {
+				metrics.endStep(i, System.nanoTime() - start);
+			}
+			if (changed) {
+				current = target;
+				target = target == first ? second : first;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Whether the plan can be applied to the bytes of files, see {@link AsciiBytes}.
+	 */
+	public boolean isAsciiLiteral() {
+		return asciiLiteral;
+	}
+
+	/**
+	 * The check for whether a file could match at all, or null when the plan has none.
+	 */
+	public LiteralPresence getPresence() {
+		return presence;
+	}
+
+	public List<CompiledReplacement> getReplacements() {
+		return replacements;
+	}
+
+	public List<ReplacementStep> getSteps() {
+		return steps;
+	}
+
+	public boolean isRegex() {
+		return regex;
+	}
+
+	public int getRegexFlags() {
+		return regexFlags;
+	}
+
+	public ReplacementEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Receives the replaced content of a file.
+	 */
+	public interface Output {
+		void write(CharSequence replaced) throws IOException;
+	}
+}
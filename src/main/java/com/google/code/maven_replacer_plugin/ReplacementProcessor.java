@@ -1,8 +1,13 @@
 package com.google.code.maven_replacer_plugin;
 
-import static org.apache.commons.lang.StringUtils.isEmpty;
-
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.google.code.maven_replacer_plugin.file.FileUtils;
@@ -15,23 +20,346 @@ public class ReplacementProcessor {
 		this.fileUtils = fileUtils;
 		this.replacerFactory = replacerFactory;
 	}
-	
+
 	public void replace(List<Replacement> replacements, boolean regex, String file,
 			String outputFile, int regexFlags, String encoding) throws IOException {
+		replace(prepare(replacements, regex, regexFlags), file, outputFile, encoding);
+	}
+
+	/**
+	 * Replaces the file into the output file, returning whether the content was modified.
+	 * Unmodified content is not rewritten, or is copied as it is when the output is a different file.
+	 */
+	public boolean replace(ReplacementPlan plan, String file, String outputFile, String encoding) throws IOException {
+		if (plan.getReport() == null) {
+			return replace(plan, file, outputFile, encoding, null);
+		}
+
+		FileMetrics metrics = plan.getReport().start(file, outputFile, encoding);
+		long bytesIn = fileUtils.fileSize(file);
+		metrics.bind();
+		try {
+			boolean modified = replace(plan, file, outputFile, encoding, metrics);
+			metrics.setModified(modified);
+			metrics.sized(bytesIn, fileUtils.fileSize(outputFile));
+			plan.getReport().add(metrics);
+			return modified;
+		} finally {
+			FileMetrics.unbind();
+		}
+	}
+
+	private boolean replace(ReplacementPlan plan, String file, String outputFile, String encoding,
+			FileMetrics metrics) throws IOException {
+		long start = System.nanoTime();
+		if (plan.getScanLimit() != null) {
+			// the presence check would read the whole file, which a scan limit is meant to avoid
+			return replacePrefix(plan, file, outputFile, encoding, metrics, start);
+		}
+		if (cannotMatch(plan, file, encoding)) {
+			long checked = System.nanoTime();
+			copyUnmodified(file, outputFile);
+			if (metrics != null) {
+				metrics.timed(checked - start, 0, System.nanoTime() - checked);
+			}
+			return false;
+		}
+
+		if (plan.isSpliceable()) {
+			if (!fileUtils.isSameFile(file, outputFile)) {
+				return splice(plan, file, outputFile, encoding, metrics, start);
+			}
+			if (plan.isSameLength()) {
+				return patch(plan, file, encoding, metrics, start);
+			}
+		}
+		return rewrite(plan, file, outputFile, encoding, metrics, start);
+	}
+
+	/**
+	 * Replaces the file by reading and writing all of its content.
+	 */
+	private boolean rewrite(ReplacementPlan plan, String file, String outputFile, String encoding,
+			FileMetrics metrics, long start) throws IOException {
+		if (plan.isStreaming() && fileUtils.fileSize(file) >= plan.getStreamThreshold()) {
+			boolean modified = stream(plan, file, outputFile, encoding);
+			if (metrics != null) {
+				metrics.streamed(System.nanoTime() - start);
+			}
+			return modified;
+		}
+
+		if (plan.isAsciiLiteral()) {
+			return replaceBytes(plan, file, outputFile, encoding, metrics, start);
+		}
+
 		String content = fileUtils.readFile(file, encoding);
-		for (Replacement replacement : replacements) {
-			content = replaceContent(regex, regexFlags, content, replacement);
+		long read = System.nanoTime();
+		return replaceContent(plan, content, file, outputFile, encoding, metrics, start, read);
+	}
+
+	/**
+	 * Finds the matches in the bytes of the file and writes the output as the unchanged ranges of
+	 * the input around the replaced values, transferring those ranges by channel rather than
+	 * decoding and encoding them. Files which do not provably round trip through the encoding are
+	 * decoded and replaced as text.
+	 */
+	private boolean splice(ReplacementPlan plan, String file, String outputFile, String encoding,
+			FileMetrics metrics, long start) throws IOException {
+		SpliceWriter splices = scan(plan, file, encoding);
+		long scanned = System.nanoTime();
+		if (splices == null) {
+			String content = fileUtils.readFile(file, encoding);
+			return replaceContent(plan, content, file, outputFile, encoding, metrics, start, System.nanoTime());
+		}
+
+		boolean modified = !splices.isEmpty();
+		if (modified) {
+			FileChannel input = fileUtils.openInputChannel(file);
+			try {
+				FileChannel output = fileUtils.openOutputChannel(outputFile);
+				try {
+					splices.writeTo(input, input.size(), output, encoding);
+				} finally {
+					output.close();
+				}
+			} finally {
+				input.close();
+			}
+		} else {
+			copyUnmodified(file, outputFile);
+		}
+		if (metrics != null) {
+			metrics.timed(0, scanned - start, System.nanoTime() - scanned);
+		}
+		return modified;
+	}
+
+	/**
+	 * Overwrites the matches in the file with values of the same length, leaving the rest of the
+	 * file as it is. The file is only opened for writing once all of its bytes are known to round
+	 * trip through the encoding; other files are decoded and rewritten as text.
+	 */
+	private boolean patch(ReplacementPlan plan, String file, String encoding, FileMetrics metrics, long start)
+			throws IOException {
+		SpliceWriter splices = scan(plan, file, encoding);
+		long scanned = System.nanoTime();
+		if (splices == null) {
+			String content = fileUtils.readFile(file, encoding);
+			return replaceContent(plan, content, file, file, encoding, metrics, start, System.nanoTime());
+		}
+
+		boolean modified = !splices.isEmpty();
+		if (modified) {
+			FileChannel channel = fileUtils.openReadWriteChannel(file);
+			try {
+				splices.patch(channel, encoding);
+			} finally {
+				channel.close();
+			}
+		}
+		if (metrics != null) {
+			metrics.timed(0, scanned - start, System.nanoTime() - scanned);
+		}
+		return modified;
+	}
+
+	/**
+	 * The matches in the bytes of the file, read a chunk at a time, or null when they do not round trip.
+	 */
+	private SpliceWriter scan(ReplacementPlan plan, String file, String encoding) throws IOException {
+		InputStream input = fileUtils.openInput(file);
+		try {
+			return new SpliceScanner(plan).scan(input, encoding);
+		} finally {
+			input.close();
+		}
+	}
+
+	private static String decode(byte[] bytes, String encoding) throws IOException {
+		return encoding == null ? new String(bytes) : new String(bytes, encoding);
+	}
+
+	/**
+	 * Replaces literal ASCII tokens directly in the bytes of the file when they provably give the
+	 * same result as the decoded content, writing the bytes around the replaced values unchanged.
+	 */
+	private boolean replaceBytes(ReplacementPlan plan, String file, final String outputFile, String encoding,
+			FileMetrics metrics, long start) throws IOException {
+		byte[] bytes = fileUtils.readBytes(file);
+		long read = System.nanoTime();
+		ByteText content = new ByteText(bytes);
+		if (!AsciiBytes.roundTrips(content, encoding)) {
+			return replaceContent(plan, decode(bytes, encoding), file, outputFile, encoding, metrics, start, read);
+		}
+
+		final long[] applied = {0};
+		boolean modified = plan.apply(content, new ReplacementPlan.Output() {
+			public void write(CharSequence replaced) throws IOException {
+				applied[0] = System.nanoTime();
+				fileUtils.writeBytes(outputFile, replaced);
+			}
+		});
+		if (!modified) {
+			applied[0] = System.nanoTime();
+			copyUnmodified(file, outputFile);
+		}
+		if (metrics != null) {
+			metrics.timed(read - start, applied[0] - read, System.nanoTime() - applied[0]);
+		}
+		return modified;
+	}
+
+	private boolean replaceContent(ReplacementPlan plan, String content, String file, String outputFile,
+			String encoding, FileMetrics metrics, long start, long read) throws IOException {
+		return writeReplaced(content, plan.apply(content), file, outputFile, encoding, metrics, start, read);
+	}
+
+	private boolean writeReplaced(String content, String replaced, String file, String outputFile,
+			String encoding, FileMetrics metrics, long start, long read) throws IOException {
+		long applied = System.nanoTime();
+		boolean modified = !replaced.equals(content);
+		if (modified) {
+			fileUtils.writeToFile(outputFile, replaced, encoding);
+		} else {
+			copyUnmodified(file, outputFile);
 		}
+		if (metrics != null) {
+			metrics.timed(read - start, applied - read, System.nanoTime() - applied);
+		}
+		return modified;
+	}
 
-		fileUtils.writeToFile(outputFile, content, encoding);
+	private boolean stream(ReplacementPlan plan, String file, String outputFile, String encoding) throws IOException {
+		File temp = fileUtils.createTempFile(outputFile);
+		try {
+			boolean modified;
+			Reader reader = fileUtils.openReader(file, encoding);
+			try {
+				Writer writer = fileUtils.openWriter(temp, encoding);
+				try {
+					modified = plan.getStreamingReplacer().replace(reader, writer,
+							encoding == null ? Charset.defaultCharset().name() : encoding);
+				} finally {
+					writer.close();
+				}
+			} finally {
+				reader.close();
+			}
+
+			if (modified) {
+				fileUtils.moveFile(temp, outputFile);
+			} else {
+				copyUnmodified(file, outputFile);
+			}
+			return modified;
+		} finally {
+			temp.delete();
+		}
 	}
 
-	private String replaceContent(boolean regex, int regexFlags, String content, Replacement replacement) {
-		if (isEmpty(replacement.getToken())) {
-			throw new IllegalArgumentException("Token or token file required");
+	/**
+	 * Replaces the prefix of the file within the plan's scan limit and copies the rest of its
+	 * bytes after the replaced prefix by channel, without reading them. In encodings other than
+	 * UTF-8 and single byte encodings the file is decoded whole and only its lines can be counted.
+	 */
+	private boolean replacePrefix(ReplacementPlan plan, String file, String outputFile, String encoding,
+			FileMetrics metrics, long start) throws IOException {
+		ScanLimit limit = plan.getScanLimit();
+		if (!AsciiBytes.isAsciiCompatible(encoding)) {
+			String content = fileUtils.readFile(file, encoding);
+			long read = System.nanoTime();
+			int end = limit.prefixLength(content);
+			String replaced = plan.apply(content.substring(0, end)) + content.substring(end);
+			return writeReplaced(content, replaced, file, outputFile, encoding, metrics, start, read);
 		}
 
-		Replacer replacer = replacerFactory.create(replacement);
-		return replacer.replace(content, replacement, regex, regexFlags);
+		byte[] prefix;
+		InputStream input = fileUtils.openInput(file);
+		try {
+			prefix = limit.readPrefix(input, encoding);
+		} finally {
+			input.close();
+		}
+		String content = decode(prefix, encoding);
+		long read = System.nanoTime();
+		String replaced = plan.apply(content);
+		long applied = System.nanoTime();
+		boolean modified = !replaced.equals(content);
+		if (modified) {
+			SpliceWriter splices = new SpliceWriter();
+			splices.splice(0, prefix.length, replaced);
+			writeSpliced(splices, file, outputFile, encoding);
+		} else {
+			copyUnmodified(file, outputFile);
+		}
+		if (metrics != null) {
+			metrics.timed(read - start, applied - read, System.nanoTime() - applied);
+		}
+		return modified;
+	}
+
+	/**
+	 * Writes the file with the splices applied, through a temporary file when replacing it in place.
+	 */
+	private void writeSpliced(SpliceWriter splices, String file, String outputFile, String encoding)
+			throws IOException {
+		boolean inPlace = fileUtils.isSameFile(file, outputFile);
+		File target = inPlace ? fileUtils.createTempFile(outputFile) : new File(outputFile);
+		try {
+			FileChannel input = fileUtils.openInputChannel(file);
+			try {
+				FileChannel output = fileUtils.openOutputChannel(target.getPath());
+				try {
+					splices.writeTo(input, input.size(), output, encoding);
+				} finally {
+					output.close();
+				}
+			} finally {
+				input.close();
+			}
+			if (inPlace) {
+				fileUtils.moveFile(target, outputFile);
+			}
+		} finally {
+			if (inPlace) {
+				target.delete();
+			}
+		}
+	}
+
+	/**
+	 * Whether a scan of the file's bytes shows that no replacement can match, without decoding it.
+	 */
+	private boolean cannotMatch(ReplacementPlan plan, String file, String encoding) throws IOException {
+		if (plan.getPresence() == null || !AsciiBytes.isAsciiCompatible(encoding)) {
+			return false;
+		}
+		InputStream input = fileUtils.openInput(file);
+		try {
+			return !plan.getPresence().occursIn(input);
+		} finally {
+			input.close();
+		}
+	}
+
+	private void copyUnmodified(String file, String outputFile) throws IOException {
+		if (!fileUtils.isSameFile(file, outputFile)) {
+			fileUtils.copyFile(file, outputFile);
+		}
+	}
+
+	public ReplacementPlan prepare(List<Replacement> replacements, boolean regex, int regexFlags) {
+		return prepare(replacements, regex, regexFlags, ReplacementEngine.SEQUENTIAL);
+	}
+
+	public ReplacementPlan prepare(List<Replacement> replacements, boolean regex, int regexFlags,
+			ReplacementEngine engine) {
+		List<CompiledReplacement> compiled = new ArrayList<CompiledReplacement>();
+		for (Replacement replacement : replacements) {
+			Replacer replacer = replacerFactory.create(replacement);
+			compiled.add(new CompiledReplacement(replacement, replacer, regex, regexFlags));
+		}
+		return new ReplacementPlan(compiled, regex, regexFlags, engine);
 	}
 }
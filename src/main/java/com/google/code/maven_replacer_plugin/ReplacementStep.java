@@ -0,0 +1,12 @@
+package com.google.code.maven_replacer_plugin;
+
+
+public interface ReplacementStep {
+	String apply(String content);
+
+	/**
+	 * Writes the replaced content to the empty output buffer, returning false (and leaving the
+	 * output to be ignored) when the content is unchanged.
+	 */
+	boolean apply(CharSequence content, StringBuilder output);
+}
@@ -0,0 +1,138 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * A regex replacement value parsed once into literal text and group references,
+ * following the same rules as {@link Matcher#appendReplacement}.
+ * Values which cannot be pre-parsed (named groups, missing groups or malformed
+ * references) are left to the matcher so that errors surface exactly as before.
+ */
+public class ReplacementTemplate {
+	private static final int LITERAL = -1;
+
+	private final String value;
+	private final List<String> literals;
+	private final List<Integer> groups;
+	private final boolean parsed;
+
+	public ReplacementTemplate(String value, int groupCount) {
+		this.value = value;
+		this.literals = new ArrayList<String>();
+		this.groups = new ArrayList<Integer>();
+		this.parsed = parse(value, groupCount);
+	}
+
+	private boolean parse(String replacement, int groupCount) {
+		StringBuilder literal = new StringBuilder();
+		int cursor = 0;
+		while (cursor < replacement.length()) {
+			char c = replacement.charAt(cursor);
+			if (c == '\\') {
+				cursor++;
+				if (cursor == replacement.length()) {
+					return false;
+				}
+				literal.append(replacement.charAt(cursor++));
+			} else if (c == '$') {
+				cursor++;
+				if (cursor == replacement.length()) {
+					return false;
+				}
+				int refNum = replacement.charAt(cursor) - '0';
+				if (refNum < 0 || refNum > 9) {
+					return false;
+				}
+				cursor++;
+				while (cursor < replacement.length()) {
+					int nextDigit = replacement.charAt(cursor) - '0';
+					if (nextDigit < 0 || nextDigit > 9) {
+						break;
+					}
+					int newRef = refNum * 10 + nextDigit;
+					if (groupCount < newRef) {
+						break;
+					}
+					refNum = newRef;
+					cursor++;
+				}
+				if (refNum > groupCount) {
+					return false;
+				}
+				addLiteral(literal);
+				literals.add(null);
+				groups.add(refNum);
+			} else {
+				literal.append(c);
+				cursor++;
+			}
+		}
+		addLiteral(literal);
+		return true;
+	}
+
+	private void addLiteral(StringBuilder literal) {
+		if (literal.length() > 0) {
+			literals.add(literal.toString());
+			groups.add(LITERAL);
+			literal.setLength(0);
+		}
+	}
+
+	public boolean isParsed() {
+		return parsed;
+	}
+
+	/**
+	 * Whether the template copies text from any group of the match.
+	 */
+	public boolean hasGroupReferences() {
+		for (int group : groups) {
+			if (group != LITERAL) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	/**
+	 * The literal text written by this template, without any group references.
+	 */
+	public String getLiteralText() {
+		StringBuilder text = new StringBuilder();
+		for (String literal : literals) {
+			if (literal != null) {
+				text.append(literal);
+			}
+		}
+		return text.toString();
+	}
+
+	public void appendTo(StringBuilder output, Matcher matcher) {
+		appendTo(output, matcher, 0);
+	}
+
+	/**
+	 * Appends the replacement for the current match, reading group n from
+	 * group n + groupOffset of the matcher.
+	 */
+	public void appendTo(StringBuilder output, Matcher matcher, int groupOffset) {
+		for (int i=0; i < groups.size(); i++) {
+			int group = groups.get(i);
+			if (group == LITERAL) {
+				output.append(literals.get(i));
+			} else {
+				String text = matcher.group(group + groupOffset);
+				if (text != null) {
+					output.append(text);
+				}
+			}
+		}
+	}
+}
@@ -3,14 +3,25 @@ package com.google.code.maven_replacer_plugin;
 import static org.apache.commons.lang.StringUtils.isNotEmpty;
 
 
+/**
+ * Replacers are stateless or confine their state to each thread, so one of each kind
+ * is shared by every replacement rather than creating XML factories per replacement.
+ */
 public class ReplacerFactory {
+	private final TokenReplacer tokenReplacer = new TokenReplacer();
+	private XPathReplacer xpathReplacer;
+
 	public Replacer create(Replacement replacement) {
-		TokenReplacer tokenReplacer = new TokenReplacer();
-		
 		if (isNotEmpty(replacement.getXpath())) {
-			return new XPathReplacer(tokenReplacer);
+			return getXPathReplacer();
 		}
 		return tokenReplacer;
 	}
 
+	private synchronized XPathReplacer getXPathReplacer() {
+		if (xpathReplacer == null) {
+			xpathReplacer = new XPathReplacer(tokenReplacer);
+		}
+		return xpathReplacer;
+	}
 }
@@ -3,12 +3,14 @@ package com.google.code.maven_replacer_plugin;
 import static org.apache.commons.lang.StringUtils.isBlank;
 
 import com.google.code.maven_replacer_plugin.file.FileUtils;
+import com.google.code.maven_replacer_plugin.include.DirectoryWalker;
 import com.google.code.maven_replacer_plugin.include.FileSelector;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.PatternSyntaxException;
 
@@ -28,6 +30,9 @@ import org.apache.maven.plugin.MojoExecutionException;
  */
 public class ReplacerMojo extends AbstractMojo {
 	private static final String INVALID_IGNORE_MISSING_FILE_MESSAGE = "<ignoreMissingFile> only useable with <file>";
+	private static final String FUSED_PATTERNS_MESSAGE = "Fused %d regex replacements into a single pass: %s";
+	private static final String XPATH_NOT_STREAMED_MESSAGE = "XPath replacements can only be streamed when they " +
+		"all select text() or an attribute by a simple path; files will be read whole";
 	private static final String REGEX_PATTERN_WITH_DELIMITERS_MESSAGE = "Error: %s. " +
 		"Check that your delimiters do not contain regex characters. (e.g. '$'). " +
 		"Either remove the regex characters from your delimiters or set <regex>false</regex>" +
@@ -340,6 +345,135 @@ public class ReplacerMojo extends AbstractMojo {
      */
     private Integer maxReplacements = Integer.MAX_VALUE;
 
+	/**
+	 * Maximum number of matches replaced in each file, counted across all replacements in the
+	 * order they are applied (e.g. 1 to stamp only the first occurrence of a header token).
+	 * Scanning stops as soon as the limit is reached and the rest of the file is copied as it is,
+	 * without being searched. When streaming (see streamThreshold) the replacements must form a
+	 * single step, such as one token or tokens replaced with the single-pass engine.
+	 * For XPath replacements the matches within the selected nodes are counted.
+	 * Not set by default (all matches are replaced).
+	 *
+	 * @parameter
+	 */
+	private Integer maxMatches;
+
+	/**
+	 * Replace only the start of each file, given as a number of lines or bytes (e.g. 20 lines
+	 * or 4096 bytes), such as a license header. The rest of the file is copied as it is without
+	 * being read into memory or searched, so tokens beyond the limit are left alone.
+	 * A byte limit needs UTF-8 or a single byte encoding, and does not split UTF-8 characters.
+	 * XPath replacements cannot be limited.
+	 * Not set by default (whole files are replaced).
+	 *
+	 * @parameter
+	 */
+	private String scanLimit;
+
+	/**
+	 * Engine used to apply the replacements to each file.
+	 * sequential - each replacement is run over the whole content in turn,
+	 * so a later token may match text written by an earlier replacement.
+	 * single-pass - tokens are found in one scan of the content and replaced text is not scanned again.
+	 * Non-regex tokens replace the leftmost (and then longest) token found.
+	 * Regex tokens are fused into a single alternation where the result is the same as applying them
+	 * in turn (the fused patterns are logged)
+	 * and the others are still applied sequentially.
+	 * delimited-lookup - for non-regex tokens with delimiters, the content is scanned once for the
+	 * delimiters and each enclosed name is looked up among the tokens, so large token maps cost no
+	 * more than small ones. Delimited names which are not tokens are left alone.
+	 * Default is sequential.
+	 *
+	 * @parameter default-value="sequential"
+	 */
+	private String engine = "sequential";
+
+	/**
+	 * Number of threads used to replace files in parallel.
+	 * Either a number of threads (e.g. 4) or a multiple of the available cores ending in C (e.g. 1C or 1.5C).
+	 * Files are still summarised in the order they were found and the first failure stops the
+	 * remaining files from being started (the build only continues when ignoreErrors is true).
+	 * When using includes, files already found are replaced while directories are still being
+	 * scanned, in the sorted order of their paths.
+	 * Default is 1.
+	 *
+	 * @parameter default-value="1"
+	 */
+	private String threads = "1";
+
+	/**
+	 * Files of at least this size in bytes are streamed through a window rather than read whole,
+	 * so that memory use does not grow with the file. Output is written to a temporary file
+	 * which then replaces the output file. XPath replacements are streamed as XML events when
+	 * they all select text() or an attribute by a simple path, such as //dependency/version/text()
+	 * or /project/@version. Otherwise they are read whole into a DOM, with a warning.
+	 * Not set by default (files are always read whole).
+	 *
+	 * @parameter
+	 */
+	private Long streamThreshold;
+
+	/**
+	 * Longest text a regex token may match when streaming (see streamThreshold).
+	 * This many characters are held back at the end of each window so that a match
+	 * is not split across two reads. Literal tokens use their own length instead.
+	 * Default is 4096.
+	 *
+	 * @parameter default-value="4096"
+	 */
+	private int maxMatchLength = 4096;
+
+	/**
+	 * Skip files which have not changed since the last build.
+	 * The size, modification time and content hash of each input and output file are recorded
+	 * in stateDirectory, in a state file per execution along with a hash of the replacements and
+	 * settings, so changing any token, value or setting replaces every file again. A file is skipped while its input and output still match.
+	 * Default is false.
+	 *
+	 * @parameter default-value="false"
+	 */
+	private boolean incremental;
+
+	/**
+	 * Directory holding the state files used by incremental.
+	 *
+	 * @parameter default-value="${project.build.directory}/replacer-state"
+	 */
+	private String stateDirectory = "target/replacer-state";
+
+	/**
+	 * Id of the execution, naming its state file in stateDirectory.
+	 *
+	 * @parameter default-value="${mojoExecution.executionId}"
+	 * @readonly
+	 */
+	private String executionId = "default";
+
+	/**
+	 * Write a JSON report of how long each file took to read, replace and write, its size before
+	 * and after, its encoding and how often each token matched in it, with totals and the slowest
+	 * files and patterns, to performanceReportFile.
+	 * Default is false.
+	 *
+	 * @parameter default-value="false"
+	 */
+	private boolean performanceReport;
+
+	/**
+	 * File the performance report is written to (see performanceReport).
+	 *
+	 * @parameter default-value="${project.build.directory}/replacer-performance.json"
+	 */
+	private String performanceReportFile = "target/replacer-performance.json";
+
+	/**
+	 * Number of slowest files and patterns listed in the performance report.
+	 * Default is 10.
+	 *
+	 * @parameter default-value="10"
+	 */
+	private int performanceReportSlowest = 10;
+
     /**
      * list files
      * 
@@ -396,17 +530,25 @@ public class ReplacerMojo extends AbstractMojo {
 			List<Replacement> replacements = getDelimiterReplacements(buildReplacements());
 			addIncludesFilesAndExcludedFiles();
 			if (includes.isEmpty()) {
-			    if (files.isEmpty()) {
-			        replaceContents(processor, limit(replacements), file);
-                }else {
-                    replaceContents(processor, limit(replacements), files);
-                }
+				ReplacementPlan plan = prepare(limit(replacements));
+				if (plan == null) {
+					return;
+				}
+				if (files.isEmpty()) {
+					replaceContents(plan, Arrays.asList(file), false);
+				} else {
+					replaceContents(plan, files, true);
+				}
+				writeReport(plan);
 				return;
 			}
 
-            for (String file : limit(fileSelector.listIncludes(basedir, includes, excludes))) {
-				replaceContents(processor, replacements, file);
+			ReplacementPlan plan = prepare(replacements);
+			if (plan == null) {
+				return;
 			}
+			replaceIncludes(plan);
+			writeReport(plan);
 		} catch (Exception e) {
 			getLog().error(e.getMessage());
 			getLog().error(e);
@@ -422,12 +564,16 @@ public class ReplacerMojo extends AbstractMojo {
 
     private <T> List<T> limit(List<T> all) {
         if (all.size() > maxReplacements) {
-            getLog().info("Max replacements has been exceeded. Limiting to the first: " + maxReplacements);
+            logMaxReplacementsExceeded();
             return all.subList(0, maxReplacements);
         }
         return all;
     }
 
+    private void logMaxReplacementsExceeded() {
+        getLog().info("Max replacements has been exceeded. Limiting to the first: " + maxReplacements);
+    }
+
     private boolean checkFileExists() throws MojoExecutionException {
 		if (ignoreMissingFile && file == null) {
 			getLog().error(INVALID_IGNORE_MISSING_FILE_MESSAGE);
@@ -461,39 +607,171 @@ public class ReplacerMojo extends AbstractMojo {
 		}
 	}
 
-	private void replaceContents(ReplacementProcessor processor, List<Replacement> replacements, String inputFile) throws IOException {
-	    String outputFileName = outputFilenameBuilder.buildFrom(inputFile, this);
+	/**
+	 * Returns null when a token is not a valid regex and no delimiters are used, as such
+	 * tokens have always been ignored without failing the build.
+	 */
+	private ReplacementPlan prepare(List<Replacement> replacements) {
 		try {
-			processor.replace(replacements, regex, getBaseDirPrefixedFilename(inputFile),
-					outputFileName, patternFlagsFactory.buildFlags(regexFlags), encoding);
+			ReplacementPlan plan = processor.prepare(replacements, regex, patternFlagsFactory.buildFlags(regexFlags),
+					ReplacementEngine.from(engine));
+			if (maxMatches != null) {
+				plan.withMaxMatches(maxMatches);
+			}
+			if (!isBlank(scanLimit)) {
+				plan.withScanLimit(ScanLimit.parse(scanLimit));
+			}
+			if (streamThreshold != null) {
+				plan.withStreaming(streamThreshold, maxMatchLength);
+				if (!plan.isStreaming()) {
+					getLog().warn(XPATH_NOT_STREAMED_MESSAGE);
+				}
+			}
+			if (performanceReport) {
+				plan.withReport();
+			}
+			logFusedPatterns(plan);
+			return plan;
 		} catch (PatternSyntaxException e) {
 			if (!delimiters.isEmpty()) {
 				getLog().error(String.format(REGEX_PATTERN_WITH_DELIMITERS_MESSAGE, e.getMessage()));
 				throw e;
 			}
+			return null;
+		}
+	}
+
+	private void writeReport(ReplacementPlan plan) throws IOException {
+		if (plan.getReport() == null) {
+			return;
+		}
+
+		String reportFile = getBaseDirPrefixedFilename(performanceReportFile);
+		fileUtils.writeToFile(reportFile, plan.getReport().toJson(performanceReportSlowest), "UTF-8");
+		getLog().info("Performance report written to " + reportFile);
+	}
+
+	private void logFusedPatterns(ReplacementPlan plan) {
+		for (ReplacementStep step : plan.getSteps()) {
+			if (step instanceof RegexAlternation) {
+				List<String> tokens = new ArrayList<String>();
+				for (CompiledReplacement replacement : ((RegexAlternation) step).getReplacements()) {
+					tokens.add(replacement.getToken());
+				}
+				getLog().info(String.format(FUSED_PATTERNS_MESSAGE, tokens.size(), tokens));
+			}
+		}
+	}
+
+	private void replaceContents(ReplacementPlan plan, List<String> inputFiles, boolean indexedOutput)
+			throws IOException {
+		Reporter reporter = new Reporter(plan, indexedOutput);
+		for (int i=0; i < inputFiles.size(); i++) {
+			String inputFile = inputFiles.get(i);
+			String outputFileName = indexedOutput ? outputFilenameBuilder.buildFrom(inputFile, this, i)
+					: outputFilenameBuilder.buildFrom(inputFile, this);
+			reporter.select(inputFile, outputFileName);
+		}
+
+		ReplacementExecutor executor = new ReplacementExecutor(processor, ReplacementExecutor.parseThreads(threads));
+		try {
+			executor.replace(plan, reporter.inputFileNames, reporter.outputFileNames, encoding, reporter);
+		} finally {
+			reporter.save();
+		}
+	}
+
+	/**
+	 * Replaces the included files while the directories are still being scanned. The directories
+	 * are walked on one thread so that files are found in sorted order, as they were listed before,
+	 * and maxReplacements always selects the same files.
+	 */
+	private void replaceIncludes(ReplacementPlan plan) throws IOException {
+		final Reporter reporter = new Reporter(plan, false);
+		ReplacementExecutor executor = new ReplacementExecutor(processor, ReplacementExecutor.parseThreads(threads));
+		try {
+			executor.replace(plan, new ReplacementExecutor.Source() {
+				public void produce(final ReplacementExecutor.Sink sink) {
+					fileSelector.selectIncludes(basedir, includes, excludes, 1, new DirectoryWalker.Listener() {
+						private int selected;
+						private boolean limited;
+
+						public void found(String inputFile) {
+							if (selected == maxReplacements) {
+								if (!limited) {
+									logMaxReplacementsExceeded();
+									limited = true;
+								}
+								return;
+							}
+							selected++;
+
+							String outputFileName = outputFilenameBuilder.buildFrom(inputFile, ReplacerMojo.this);
+							try {
+								String inputFileName = reporter.select(inputFile, outputFileName);
+								if (inputFileName != null) {
+									sink.add(inputFileName, outputFileName);
+								}
+							} catch (IOException e) {
+								throw new IllegalStateException(e.getMessage(), e);
+							}
+						}
+					});
+				}
+			}, encoding, reporter);
+		} finally {
+			reporter.save();
+		}
+	}
+
+	/**
+	 * Keeps the files selected for replacement, skipping those which are up to date,
+	 * and reports each once it has been replaced.
+	 */
+	private class Reporter implements ReplacementExecutor.Callback {
+		private final IncrementalState state;
+		private final boolean indexedOutput;
+		private final List<String> displayNames = Collections.synchronizedList(new ArrayList<String>());
+		private final List<String> inputFileNames = Collections.synchronizedList(new ArrayList<String>());
+		private final List<String> outputFileNames = Collections.synchronizedList(new ArrayList<String>());
+
+		private Reporter(ReplacementPlan plan, boolean indexedOutput) throws IOException {
+			this.state = incremental ? IncrementalState.load(stateDirectory, executionId, plan, encoding) : null;
+			this.indexedOutput = indexedOutput;
+		}
+
+		/**
+		 * Returns the input file prefixed with the basedir, or null when it is up to date.
+		 */
+		private String select(String inputFile, String outputFileName) throws IOException {
+			String inputFileName = getBaseDirPrefixedFilename(inputFile);
+			if (state != null && state.isUpToDate(inputFileName, outputFileName)) {
+				summaryBuilder.addSkipped(inputFileName, getLog());
+				return null;
+			}
+			displayNames.add(inputFile);
+			inputFileNames.add(inputFileName);
+			outputFileNames.add(outputFileName);
+			return inputFileName;
+		}
+
+		public void replaced(int index, boolean modified) throws IOException {
+			if (indexedOutput) {
+				getLog().info(displayNames.get(index));
+				getLog().info(outputFileNames.get(index));
+			}
+			summaryBuilder.add(inputFileNames.get(index), outputFileNames.get(index), encoding, modified, getLog());
+			if (state != null) {
+				state.record(inputFileNames.get(index), outputFileNames.get(index));
+			}
+		}
+
+		private void save() throws IOException {
+			if (state != null) {
+				state.save();
+			}
 		}
-		summaryBuilder.add(getBaseDirPrefixedFilename(inputFile), outputFileName, encoding, getLog());
 	}
-	
-	private void replaceContents(ReplacementProcessor processor, List<Replacement> replacements, List<String> inputFiles) throws IOException {
-        int index = 0;
-	    for (String inputFile : inputFiles) {
-	        getLog().info(inputFile);
-            String outputFileName = outputFilenameBuilder.buildFrom(inputFile, this, index);
-            getLog().info(outputFileName);
-            try {
-                processor.replace(replacements, regex, getBaseDirPrefixedFilename(inputFile),
-                        outputFileName, patternFlagsFactory.buildFlags(regexFlags), encoding);
-            } catch (PatternSyntaxException e) {
-                if (!delimiters.isEmpty()) {
-                    getLog().error(String.format(REGEX_PATTERN_WITH_DELIMITERS_MESSAGE, e.getMessage()));
-                    throw e;
-                }
-            }
-            index ++;
-            summaryBuilder.add(getBaseDirPrefixedFilename(inputFile), outputFileName, encoding, getLog());
-        }
-    }
 
 	private List<Replacement> buildReplacements() throws IOException {
 		if (replacements != null) {
@@ -740,6 +1018,102 @@ public class ReplacerMojo extends AbstractMojo {
         this.maxReplacements = maxReplacements;
     }
 
+	public void setMaxMatches(Integer maxMatches) {
+		this.maxMatches = maxMatches;
+	}
+
+	public Integer getMaxMatches() {
+		return maxMatches;
+	}
+
+	public void setScanLimit(String scanLimit) {
+		this.scanLimit = scanLimit;
+	}
+
+	public String getScanLimit() {
+		return scanLimit;
+	}
+
+	public void setEngine(String engine) {
+		this.engine = engine;
+	}
+
+	public String getEngine() {
+		return engine;
+	}
+
+	public void setThreads(String threads) {
+		this.threads = threads;
+	}
+
+	public String getThreads() {
+		return threads;
+	}
+
+	public void setStreamThreshold(Long streamThreshold) {
+		this.streamThreshold = streamThreshold;
+	}
+
+	public Long getStreamThreshold() {
+		return streamThreshold;
+	}
+
+	public void setMaxMatchLength(int maxMatchLength) {
+		this.maxMatchLength = maxMatchLength;
+	}
+
+	public int getMaxMatchLength() {
+		return maxMatchLength;
+	}
+
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	public void setExecutionId(String executionId) {
+		this.executionId = executionId;
+	}
+
+	public String getExecutionId() {
+		return executionId;
+	}
+
+	public void setStateDirectory(String stateDirectory) {
+		this.stateDirectory = stateDirectory;
+	}
+
+	public String getStateDirectory() {
+		return stateDirectory;
+	}
+
+	public void setPerformanceReport(boolean performanceReport) {
+		this.performanceReport = performanceReport;
+	}
+
+	public boolean isPerformanceReport() {
+		return performanceReport;
+	}
+
+	public void setPerformanceReportFile(String performanceReportFile) {
+		this.performanceReportFile = performanceReportFile;
+	}
+
+	public String getPerformanceReportFile() {
+		return performanceReportFile;
+	}
+
+	public void setPerformanceReportSlowest(int performanceReportSlowest) {
+		this.performanceReportSlowest = performanceReportSlowest;
+	}
+
+	public int getPerformanceReportSlowest() {
+		return performanceReportSlowest;
+	}
+
     public List<String> getFiles() {
         return files;
     }
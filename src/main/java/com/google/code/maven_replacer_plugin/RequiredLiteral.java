@@ -0,0 +1,245 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.util.regex.Pattern;
+
+/**
+ * Finds literal text which every match of a regex token must contain, so that content without
+ * it can be skipped before running the pattern. Only the top level of the pattern is read:
+ * groups, classes, escapes other than quoted characters, anchors and boundaries all end a run
+ * of literal characters, a character made optional by a quantifier is dropped, and the longest
+ * run left is used. Alternation, case insensitivity and comments give no literal at all.
+ */
+public final class RequiredLiteral {
+	private static final int UNSUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.COMMENTS | Pattern.CANON_EQ;
+
+	private final String regex;
+	private final StringBuilder run = new StringBuilder();
+	private String longest = "";
+	private boolean lastWasLiteral;
+
+	private RequiredLiteral(String regex) {
+		this.regex = regex;
+	}
+
+	/**
+	 * Returns the literal, or null when none could be found.
+	 */
+	public static String find(String regex, int flags) {
+		int usedFlags = flags == PatternFlagsFactory.NO_FLAGS ? 0 : flags;
+		if ((usedFlags & UNSUPPORTED_FLAGS) != 0) {
+			return null;
+		}
+		if ((usedFlags & Pattern.LITERAL) != 0) {
+			return regex.length() > 0 ? regex : null;
+		}
+
+		try {
+			return new RequiredLiteral(regex).parse();
+		} catch (UnsupportedPattern e) {
+			return null;
+		}
+	}
+
+	private String parse() {
+		int i = 0;
+		while (i < regex.length()) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i = parseEscape(i);
+			} else if (c == '[') {
+				i = skipClass(i);
+				breakRun();
+			} else if (c == '(') {
+				i = skipGroup(i);
+				breakRun();
+			} else if (c == '*' || c == '?' || c == '+' || c == '{') {
+				i = parseQuantifier(i);
+			} else if (c == '|' || c == ')') {
+				throw new UnsupportedPattern();
+			} else if (c == '.' || c == '^' || c == '$') {
+				breakRun();
+				i++;
+			} else {
+				addLiteral(c);
+				i++;
+			}
+		}
+		breakRun();
+		return longest.length() > 0 ? longest : null;
+	}
+
+	private int parseEscape(int start) {
+		if (start + 1 >= regex.length()) {
+			throw new UnsupportedPattern();
+		}
+
+		char n = regex.charAt(start + 1);
+		if (n == 'Q') {
+			int end = regex.indexOf("\\E", start + 2);
+			int stop = end < 0 ? regex.length() : end;
+			for (int i=start + 2; i < stop; i++) {
+				addLiteral(regex.charAt(i));
+			}
+			return end < 0 ? regex.length() : end + 2;
+		}
+		if (!Character.isLetterOrDigit(n)) {
+			addLiteral(n);
+			return start + 2;
+		}
+
+		String controls = "tnrfae";
+		int control = controls.indexOf(n);
+		if (control >= 0) {
+			addLiteral("\t\n\r\f\u0007\u001B".charAt(control));
+			return start + 2;
+		}
+
+		breakRun();
+		int end = start + 2;
+		if ((n == 'p' || n == 'P' || n == 'x' || n == 'N') && end < regex.length() && regex.charAt(end) == '{') {
+			end = regex.indexOf('}', end) + 1;
+		} else if (n == 'k' && end < regex.length() && regex.charAt(end) == '<') {
+			end = regex.indexOf('>', end) + 1;
+		} else if (n == 'p' || n == 'P' || n == 'c') {
+			end++;
+		} else if (n == 'x') {
+			end += 2;
+		} else if (n == 'u') {
+			end += 4;
+		} else if (n >= '0' && n <= '9') {
+			while (end < regex.length() && Character.isDigit(regex.charAt(end))) {
+				end++;
+			}
+		}
+		if (end <= start || end > regex.length()) {
+			throw new UnsupportedPattern();
+		}
+		return end;
+	}
+
+	private int skipClass(int start) {
+		int depth = 0;
+		int i = start;
+		while (i < regex.length()) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i += 2;
+				continue;
+			}
+			if (c == '[') {
+				depth++;
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+					i++;
+				}
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+					i++;
+				}
+			} else if (c == ']' && --depth == 0) {
+				return i + 1;
+			}
+			i++;
+		}
+		throw new UnsupportedPattern();
+	}
+
+	private int skipGroup(int start) {
+		int flagsEnd = inlineFlagsEnd(start);
+		if (flagsEnd > 0) {
+			String inlineFlags = regex.substring(start + 2, flagsEnd);
+			if (inlineFlags.indexOf('i') >= 0 || inlineFlags.indexOf('x') >= 0) {
+				throw new UnsupportedPattern();
+			}
+			return flagsEnd + 1;
+		}
+
+		int depth = 0;
+		int i = start;
+		while (i < regex.length()) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i = regex.startsWith("\\Q", i) ? quoteEnd(i) : i + 2;
+				continue;
+			}
+			if (c == '[') {
+				i = skipClass(i);
+				continue;
+			}
+			if (c == '(') {
+				depth++;
+			} else if (c == ')' && --depth == 0) {
+				return i + 1;
+			}
+			i++;
+		}
+		throw new UnsupportedPattern();
+	}
+
+	/**
+	 * The index of the closing bracket when a group only sets flags, as in (?s), or else -1.
+	 */
+	private int inlineFlagsEnd(int start) {
+		if (!regex.startsWith("(?", start)) {
+			return -1;
+		}
+		int i = start + 2;
+		while (i < regex.length() && (Character.isLetter(regex.charAt(i)) || regex.charAt(i) == '-')) {
+			i++;
+		}
+		return i > start + 2 && i < regex.length() && regex.charAt(i) == ')' ? i : -1;
+	}
+
+	private int quoteEnd(int start) {
+		int end = regex.indexOf("\\E", start + 2);
+		return end < 0 ? regex.length() : end + 2;
+	}
+
+	private int parseQuantifier(int start) {
+		char c = regex.charAt(start);
+		int i = start + 1;
+		boolean optional = c == '*' || c == '?';
+		if (c == '{') {
+			int end = regex.indexOf('}', start);
+			if (end < 0) {
+				throw new UnsupportedPattern();
+			}
+			String minimum = regex.substring(start + 1, end).split(",", -1)[0].trim();
+			if (!minimum.matches("\\d+")) {
+				throw new UnsupportedPattern();
+			}
+			optional = minimum.matches("0+");
+			i = end + 1;
+		}
+		if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+			i++;
+		}
+
+		if (lastWasLiteral && optional) {
+			// a quantifier after a supplementary character applies to its whole surrogate pair
+			int length = run.length() - 1;
+			if (length > 0 && Character.isLowSurrogate(run.charAt(length))
+					&& Character.isHighSurrogate(run.charAt(length - 1))) {
+				length--;
+			}
+			run.setLength(length);
+		}
+		breakRun();
+		return i;
+	}
+
+	private void addLiteral(char c) {
+		run.append(c);
+		lastWasLiteral = true;
+	}
+
+	private void breakRun() {
+		if (run.length() > longest.length()) {
+			longest = run.toString();
+		}
+		run.setLength(0);
+		lastWasLiteral = false;
+	}
+
+	private static class UnsupportedPattern extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+}
@@ -0,0 +1,139 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The leading part of each file which is replaced, as a number of lines or bytes. The rest of
+ * the file is copied as it is without being read into memory or searched.
+ *
+ * Lines end with a line feed, so Windows line endings count once. A byte limit never splits a
+ * UTF-8 character, ending the prefix before it instead.
+ */
+public class ScanLimit {
+	private static final Pattern FORMAT = Pattern.compile("\\s*(\\d+)\\s*(lines?|bytes?)\\s*", Pattern.CASE_INSENSITIVE);
+	private static final int CHUNK_SIZE = 8 * 1024;
+	private static final String UTF_8 = "UTF-8";
+
+	private final long count;
+	private final boolean lines;
+
+	public ScanLimit(long count, boolean lines) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Scan limit must not be negative: " + count);
+		}
+		this.count = count;
+		this.lines = lines;
+	}
+
+	/**
+	 * Parses a limit such as "20 lines" or "4096 bytes".
+	 */
+	public static ScanLimit parse(String limit) {
+		Matcher matcher = FORMAT.matcher(limit);
+		if (!matcher.matches()) {
+			throw new IllegalArgumentException("Scan limit must be a number of lines or bytes, e.g. 20 lines: " + limit);
+		}
+		return new ScanLimit(Long.parseLong(matcher.group(1)), matcher.group(2).toLowerCase().startsWith("line"));
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public boolean isLines() {
+		return lines;
+	}
+
+	/**
+	 * Reads the bytes of the prefix from the start of the input, for an encoding accepted by
+	 * {@link AsciiBytes#isAsciiCompatible(String)}.
+	 */
+	public byte[] readPrefix(InputStream input, String encoding) throws IOException {
+		return lines ? readLines(input) : readBytes(input, isUtf8(encoding));
+	}
+
+	private byte[] readLines(InputStream input) throws IOException {
+		ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+		byte[] chunk = new byte[CHUNK_SIZE];
+		long remaining = count;
+		while (remaining > 0) {
+			int read = input.read(chunk);
+			if (read == -1) {
+				break;
+			}
+			int end = 0;
+			while (end < read && remaining > 0) {
+				if (chunk[end++] == '\n') {
+					remaining--;
+				}
+			}
+			prefix.write(chunk, 0, end);
+		}
+		return prefix.toByteArray();
+	}
+
+	private byte[] readBytes(InputStream input, boolean utf8) throws IOException {
+		ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+		byte[] chunk = new byte[CHUNK_SIZE];
+		// one byte more than the limit shows whether the prefix would end within a character
+		long remaining = count + 1;
+		while (remaining > 0) {
+			int read = input.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+			if (read == -1) {
+				break;
+			}
+			prefix.write(chunk, 0, read);
+			remaining -= read;
+		}
+		byte[] bytes = prefix.toByteArray();
+		if (bytes.length <= count) {
+			return bytes;
+		}
+
+		int end = (int) count;
+		if (utf8) {
+			while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+				end--;
+			}
+		}
+		return trim(bytes, end);
+	}
+
+	private static byte[] trim(byte[] bytes, int length) {
+		byte[] trimmed = new byte[length];
+		System.arraycopy(bytes, 0, trimmed, 0, length);
+		return trimmed;
+	}
+
+	private static boolean isUtf8(String encoding) {
+		Charset charset = encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+		return UTF_8.equals(charset.name());
+	}
+
+	/**
+	 * The length of the prefix of decoded content, which must be limited by lines.
+	 */
+	public int prefixLength(String content) {
+		if (!lines) {
+			throw new IllegalArgumentException("A scan limit in bytes needs UTF-8 or a single byte encoding");
+		}
+		long remaining = count;
+		int end = 0;
+		while (end < content.length() && remaining > 0) {
+			if (content.charAt(end++) == '\n') {
+				remaining--;
+			}
+		}
+		return end;
+	}
+
+	@Override
+	public String toString() {
+		return count + (lines ? " lines" : " bytes");
+	}
+}
@@ -0,0 +1,27 @@
+package com.google.code.maven_replacer_plugin;
+
+/**
+ * Writes the content with the spliced values into a buffer, as the replaced text.
+ */
+public class SpliceBuffer implements Splices {
+	private final CharSequence content;
+	private final StringBuilder output;
+	private int copied;
+
+	public SpliceBuffer(CharSequence content, StringBuilder output) {
+		this.content = content;
+		this.output = output;
+	}
+
+	public void splice(int start, int end, String value) {
+		output.append(content, copied, start).append(value);
+		copied = end;
+	}
+
+	/**
+	 * Writes the content following the last splice.
+	 */
+	public void finish() {
+		output.append(content, copied, content.length());
+	}
+}
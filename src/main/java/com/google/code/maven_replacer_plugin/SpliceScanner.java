@@ -0,0 +1,117 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Finds the matches of a spliceable plan in the bytes of a file, reading them a chunk at a time
+ * so that neither the file nor its matches' positions are limited by the size of an array.
+ * The last bytes of each chunk in which the longest token could still start are kept for the
+ * next chunk, so tokens spanning two chunks are found where a scan of the whole file finds
+ * them. The bytes are checked to round trip through the encoding as they are read, as in
+ * {@link AsciiBytes#roundTrips(ByteText, String)}.
+ */
+public class SpliceScanner {
+	private static final int CHUNK_SIZE = 64 * 1024;
+	private static final int LONGEST_UTF8_SEQUENCE = 4;
+
+	private final ReplacementPlan plan;
+	private final int chunkSize;
+	private final int longest;
+
+	public SpliceScanner(ReplacementPlan plan) {
+		this(plan, CHUNK_SIZE);
+	}
+
+	SpliceScanner(ReplacementPlan plan, int chunkSize) {
+		if (!plan.isSpliceable()) {
+			throw new IllegalArgumentException("Only plans replacing literal ASCII tokens in one scan can be spliced");
+		}
+		this.plan = plan;
+		this.chunkSize = chunkSize;
+		int max = 0;
+		for (CompiledReplacement replacement : plan.getReplacements()) {
+			max = Math.max(max, replacement.getToken().length());
+		}
+		this.longest = max;
+	}
+
+	/**
+	 * Returns the matches in the input, or null when its bytes do not round trip through the
+	 * encoding and it must be decoded and replaced as text instead.
+	 */
+	public SpliceWriter scan(InputStream input, String encoding) throws IOException {
+		MatchLimit limit = null;
+		if (plan.isLimited()) {
+			limit = new MatchLimit(plan.getMaxMatches());
+			limit.bind();
+		}
+		FileMetrics metrics = FileMetrics.current();
+		long start = 0;
+		if (metrics != null) {
+			metrics.startStep(0);
+			start = System.nanoTime();
+		}
+		try {
+			return scan(input, encoding, new ChunkSplices());
+		} finally {
+			if (metrics != null) {
+				metrics.endStep(0, System.nanoTime() - start);
+			}
+			if (limit != null) {
+				MatchLimit.unbind();
+			}
+		}
+	}
+
+	private SpliceWriter scan(InputStream input, String encoding, ChunkSplices splices) throws IOException {
+		byte[] buffer = new byte[chunkSize + Math.max(longest, LONGEST_UTF8_SEQUENCE)];
+		int length = 0;
+		int checked = 0;
+		int from = 0;
+		boolean ended = false;
+		while (!ended) {
+			int read = input.read(buffer, length, chunkSize);
+			ended = read == -1;
+			if (!ended) {
+				length += read;
+			}
+
+			int valid = AsciiBytes.roundTripLength(new ByteText(buffer, checked, length - checked), encoding);
+			if (valid < 0 || (ended && checked + valid < length)) {
+				return null;
+			}
+			checked += valid;
+
+			// a token starting before this point lies wholly within the bytes read so far
+			int before = ended ? length : length - (longest - 1);
+			if (from < before) {
+				splices.end = 0;
+				plan.splice(new ByteText(buffer, 0, length), from, before, splices);
+				from = Math.max(before, splices.end);
+			}
+
+			int consumed = Math.min(from, checked);
+			length -= consumed;
+			System.arraycopy(buffer, consumed, buffer, 0, length);
+			from -= consumed;
+			checked -= consumed;
+			splices.offset += consumed;
+		}
+		return splices.writer;
+	}
+
+	/**
+	 * Moves the splices found in a chunk to their offsets in the file.
+	 */
+	private static class ChunkSplices implements Splices {
+		private final SpliceWriter writer = new SpliceWriter();
+		private long offset;
+		private int end;
+
+		public void splice(int start, int end, String value) {
+			writer.splice(offset + start, offset + end, value);
+			this.end = end;
+		}
+	}
+}
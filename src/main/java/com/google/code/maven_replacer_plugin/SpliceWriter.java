@@ -0,0 +1,94 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the splices found in the bytes of a file, then writes the file with them applied:
+ * the unchanged ranges are transferred from the input file by the channel, usually without
+ * passing through the JVM, and only the values are encoded. Values as long as the text they
+ * replace can instead be written over the file itself. Positions are kept as byte offsets of the
+ * whole file, so files of any size can be spliced.
+ */
+public class SpliceWriter implements Splices {
+	private long[] starts = new long[16];
+	private long[] ends = new long[16];
+	private final List<String> values = new ArrayList<String>();
+
+	public void splice(int start, int end, String value) {
+		splice((long) start, (long) end, value);
+	}
+
+	public void splice(long start, long end, String value) {
+		int count = values.size();
+		if (count == starts.length) {
+			starts = grow(starts);
+			ends = grow(ends);
+		}
+		starts[count] = start;
+		ends[count] = end;
+		values.add(value);
+	}
+
+	private static long[] grow(long[] array) {
+		long[] grown = new long[array.length * 2];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	public boolean isEmpty() {
+		return values.isEmpty();
+	}
+
+	/**
+	 * Writes the input, of the given length, to the output with every splice applied.
+	 */
+	public void writeTo(FileChannel input, long length, FileChannel output, String encoding) throws IOException {
+		long copied = 0;
+		for (int i=0; i < values.size(); i++) {
+			transfer(input, copied, starts[i], output);
+			String value = values.get(i);
+			write(output, ByteBuffer.wrap(encoding == null ? value.getBytes() : value.getBytes(encoding)));
+			copied = ends[i];
+		}
+		transfer(input, copied, length, output);
+	}
+
+	/**
+	 * Overwrites each spliced range of the file with its value, which must encode to the same length.
+	 */
+	public void patch(FileChannel file, String encoding) throws IOException {
+		for (int i=0; i < values.size(); i++) {
+			String value = values.get(i);
+			byte[] encoded = encoding == null ? value.getBytes() : value.getBytes(encoding);
+			if (encoded.length != ends[i] - starts[i]) {
+				throw new IllegalStateException("Cannot patch " + (ends[i] - starts[i]) + " bytes with " + value);
+			}
+			ByteBuffer bytes = ByteBuffer.wrap(encoded);
+			long position = starts[i];
+			while (bytes.hasRemaining()) {
+				position += file.write(bytes, position);
+			}
+		}
+	}
+
+	private static void transfer(FileChannel input, long from, long to, FileChannel output) throws IOException {
+		long position = from;
+		while (position < to) {
+			long transferred = input.transferTo(position, to - position, output);
+			if (transferred <= 0) {
+				throw new IOException("Input ended at " + position + " of " + to + " bytes");
+			}
+			position += transferred;
+		}
+	}
+
+	private static void write(FileChannel output, ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining()) {
+			output.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,9 @@
+package com.google.code.maven_replacer_plugin;
+
+/**
+ * Receives the matches of a single scan of some content, in order and without overlapping,
+ * each as the range of the content it replaces and the value replacing it.
+ */
+public interface Splices {
+	void splice(int start, int end, String value);
+}
@@ -0,0 +1,334 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the steps of a plan to a stream of characters so that only a window of the
+ * content is held in memory and output is written as it is produced.
+ *
+ * Each step becomes a stage which holds back the last characters of its window until
+ * more input arrives, so that a token split across two reads is still found. The overlap
+ * held back is the longest literal token, or the declared maximum match length for regular
+ * expressions. Some of the text already written is kept as context for look-behind and
+ * word boundaries. Plans made only of XPath replacements are streamed as XML events by an
+ * {@link XPathStreamer} when their paths are simple enough, and cannot be streamed otherwise.
+ *
+ * When the plan limits its matches there is a single stage, and once the limit is reached the
+ * rest of the stream is written out as it is read, without being scanned.
+ */
+public class StreamingReplacer {
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private final ReplacementPlan plan;
+	private final List<Stage> stages;
+	private final XPathStreamer xpathStreamer;
+
+	public StreamingReplacer(ReplacementPlan plan, int maxMatchLength) {
+		if (maxMatchLength < 1) {
+			throw new IllegalArgumentException("Maximum match length must be positive: " + maxMatchLength);
+		}
+
+		this.plan = plan;
+		this.stages = new ArrayList<Stage>();
+		if (XPathStreamer.canStream(plan.getReplacements())) {
+			this.xpathStreamer = new XPathStreamer(plan.getReplacements());
+			return;
+		}
+		this.xpathStreamer = null;
+		for (ReplacementStep step : plan.getSteps()) {
+			if (step instanceof IndexedSequence) {
+				for (CompiledReplacement replacement : ((IndexedSequence) step).getReplacements()) {
+					stages.add(stageFor(replacement, maxMatchLength));
+				}
+			} else {
+				stages.add(stageFor(step, maxMatchLength));
+			}
+		}
+	}
+
+	private static Stage stageFor(ReplacementStep step, int maxMatchLength) {
+		if (step instanceof LiteralAutomaton) {
+			return new LiteralStage(((LiteralAutomaton) step).getReplacements());
+		}
+		if (step instanceof RegexAlternation) {
+			return new AlternationStage((RegexAlternation) step, maxMatchLength);
+		}
+		if (step instanceof XPathBatch) {
+			throw new IllegalArgumentException("XPath replacements cannot be streamed: "
+					+ ((XPathBatch) step).getReplacements().get(0).getXpath());
+		}
+		if (step instanceof DelimitedLookup) {
+			throw new IllegalArgumentException("The delimited-lookup engine cannot be streamed");
+		}
+		if (step instanceof CompiledReplacement) {
+			CompiledReplacement replacement = (CompiledReplacement) step;
+			if (!isEmpty(replacement.getXpath())) {
+				throw new IllegalArgumentException("XPath replacements cannot be streamed: " + replacement.getXpath());
+			}
+			if (!replacement.isRegex()) {
+				return new LiteralStage(Arrays.asList(replacement));
+			}
+			if (!replacement.getTemplate().isParsed()) {
+				throw new IllegalArgumentException("Replacement value cannot be streamed: " + replacement.getValue());
+			}
+			return new TemplateStage(replacement, maxMatchLength);
+		}
+		throw new IllegalArgumentException("Replacement cannot be streamed: " + step);
+	}
+
+	/**
+	 * Returns whether any token was found, in which case the output may differ from the input.
+	 */
+	public boolean replace(Reader reader, Writer writer) throws IOException {
+		return replace(reader, writer, null);
+	}
+
+	/**
+	 * Replaces into a writer writing in the given encoding, which is declared by XML documents
+	 * declaring none of their own.
+	 */
+	public boolean replace(Reader reader, Writer writer, String encoding) throws IOException {
+		if (xpathStreamer != null) {
+			return replaceXml(reader, writer, encoding);
+		}
+
+		Sink sink = new WriterSink(writer);
+		List<StageBuffer> buffers = new ArrayList<StageBuffer>();
+		for (int i=stages.size() - 1; i >= 0; i--) {
+			StageBuffer stageBuffer = new StageBuffer(stages.get(i), sink, plan.getMaxMatches());
+			buffers.add(stageBuffer);
+			sink = stageBuffer;
+		}
+
+		char[] buffer = new char[CHUNK_SIZE];
+		int read;
+		while ((read = reader.read(buffer)) != -1) {
+			if (isExhausted(buffers)) {
+				writer.write(buffer, 0, read);
+			} else {
+				sink.accept(new String(buffer, 0, read));
+			}
+		}
+		sink.finish();
+
+		for (StageBuffer stageBuffer : buffers) {
+			if (stageBuffer.matched) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean replaceXml(Reader reader, Writer writer, String encoding) throws IOException {
+		if (!plan.isLimited()) {
+			return xpathStreamer.replace(reader, writer, encoding);
+		}
+
+		MatchLimit limit = new MatchLimit(plan.getMaxMatches());
+		limit.bind();
+		try {
+			return xpathStreamer.replace(reader, writer, encoding);
+		} finally {
+			MatchLimit.unbind();
+		}
+	}
+
+	private static boolean isExhausted(List<StageBuffer> buffers) {
+		for (StageBuffer stageBuffer : buffers) {
+			if (stageBuffer.remaining > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getStageCount() {
+		return stages.size();
+	}
+
+	private interface Sink {
+		void accept(CharSequence text) throws IOException;
+
+		void finish() throws IOException;
+	}
+
+	private static class WriterSink implements Sink {
+		private final Writer writer;
+
+		private WriterSink(Writer writer) {
+			this.writer = writer;
+		}
+
+		public void accept(CharSequence text) throws IOException {
+			writer.append(text);
+		}
+
+		public void finish() throws IOException {
+			writer.flush();
+		}
+	}
+
+	/**
+	 * The window of one stage while a stream is being replaced.
+	 */
+	private static class StageBuffer implements Sink {
+		private final Stage stage;
+		private final Sink next;
+		private final StringBuilder pending = new StringBuilder();
+		private String context = "";
+		private boolean matched;
+		private int remaining;
+
+		private StageBuffer(Stage stage, Sink next, int remaining) {
+			this.stage = stage;
+			this.next = next;
+			this.remaining = remaining;
+		}
+
+		public void accept(CharSequence text) throws IOException {
+			if (remaining <= 0) {
+				next.accept(text);
+				return;
+			}
+			pending.append(text);
+			if (pending.length() >= stage.overlap + CHUNK_SIZE) {
+				process(false);
+			}
+		}
+
+		public void finish() throws IOException {
+			process(true);
+			next.finish();
+		}
+
+		private void process(boolean finished) throws IOException {
+			String window = context + pending;
+			int start = context.length();
+			int safe = finished ? window.length() : window.length() - stage.overlap;
+
+			Matcher matcher = stage.pattern.matcher(window);
+			matcher.useTransparentBounds(true);
+			matcher.useAnchoringBounds(false);
+			matcher.region(start, window.length());
+
+			StringBuilder output = new StringBuilder(window.length() - start);
+			int last = start;
+			int cut = safe;
+			while (remaining > 0 && matcher.find()) {
+				if (!finished && (matcher.start() >= safe || matcher.hitEnd())) {
+					cut = matcher.start();
+					break;
+				}
+				output.append(window, last, matcher.start());
+				stage.appendReplacement(output, matcher);
+				matched = true;
+				remaining--;
+				last = matcher.end();
+			}
+			cut = remaining > 0 ? Math.max(cut, last) : window.length();
+			output.append(window, last, cut);
+
+			if (output.length() > 0) {
+				next.accept(output);
+			}
+			context = window.substring(Math.max(0, cut - stage.overlap), cut);
+			pending.setLength(0);
+			pending.append(window, cut, window.length());
+		}
+	}
+
+	private abstract static class Stage {
+		private final Pattern pattern;
+		private final int overlap;
+
+		private Stage(Pattern pattern, int overlap) {
+			this.pattern = pattern;
+			this.overlap = overlap;
+		}
+
+		abstract void appendReplacement(StringBuilder output, Matcher matcher);
+	}
+
+	private static class TemplateStage extends Stage {
+		private final ReplacementTemplate template;
+
+		private TemplateStage(CompiledReplacement replacement, int maxMatchLength) {
+			super(replacement.getPattern(), maxMatchLength);
+			this.template = replacement.getTemplate();
+		}
+
+		void appendReplacement(StringBuilder output, Matcher matcher) {
+			template.appendTo(output, matcher);
+		}
+	}
+
+	private static class AlternationStage extends Stage {
+		private final RegexAlternation alternation;
+
+		private AlternationStage(RegexAlternation alternation, int maxMatchLength) {
+			super(alternation.getPattern(), maxMatchLength);
+			this.alternation = alternation;
+		}
+
+		void appendReplacement(StringBuilder output, Matcher matcher) {
+			alternation.appendReplacement(output, matcher);
+		}
+	}
+
+	/**
+	 * Literal tokens as a quoted alternation, longest first, which matches the leftmost
+	 * and then longest token just as {@link LiteralAutomaton} and {@link TokenReplacer} do.
+	 */
+	private static class LiteralStage extends Stage {
+		private final List<String> values;
+
+		private LiteralStage(List<CompiledReplacement> replacements) {
+			super(quote(longestFirst(replacements)), longestFirst(replacements).get(0).getToken().length());
+			this.values = new ArrayList<String>();
+			for (CompiledReplacement replacement : longestFirst(replacements)) {
+				values.add(replacement.getValue());
+			}
+		}
+
+		private static List<CompiledReplacement> longestFirst(List<CompiledReplacement> replacements) {
+			List<CompiledReplacement> sorted = new ArrayList<CompiledReplacement>(replacements);
+			Collections.sort(sorted, new Comparator<CompiledReplacement>() {
+				public int compare(CompiledReplacement first, CompiledReplacement second) {
+					return second.getToken().length() - first.getToken().length();
+				}
+			});
+			return sorted;
+		}
+
+		private static Pattern quote(List<CompiledReplacement> replacements) {
+			StringBuilder alternation = new StringBuilder();
+			for (CompiledReplacement replacement : replacements) {
+				if (alternation.length() > 0) {
+					alternation.append('|');
+				}
+				alternation.append('(').append(Pattern.quote(replacement.getToken())).append(')');
+			}
+			return Pattern.compile(alternation.toString());
+		}
+
+		void appendReplacement(StringBuilder output, Matcher matcher) {
+			for (int i=0; i < values.size(); i++) {
+				if (matcher.start(i + 1) >= 0) {
+					output.append(values.get(i));
+					return;
+				}
+			}
+		}
+	}
+}
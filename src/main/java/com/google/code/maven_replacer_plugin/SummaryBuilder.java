@@ -5,18 +5,42 @@ import org.apache.maven.plugin.logging.Log;
 public class SummaryBuilder {
 
 	private static final String FILE_DEBUG_FORMAT = "Replacement run on %s and writing to %s with encoding %s";
+	private static final String UNMODIFIED_DEBUG_FORMAT = "No tokens replaced in %s";
 	private static final String SUMMARY_FORMAT = "Replacement run on %d file%s.";
+	private static final String MODIFIED_FORMAT = "Modified %d file%s.";
+	private static final String SKIPPED_DEBUG_FORMAT = "Skipping unchanged %s";
+	private static final String SKIPPED_FORMAT = "Skipped %d unchanged file%s.";
 	
 	private int filesReplaced;
+	private int filesModified;
+	private int filesSkipped;
 
 	public void add(String inputFile, String outputFile, String encoding, Log log) {
+		add(inputFile, outputFile, encoding, true, log);
+	}
+
+	public synchronized void add(String inputFile, String outputFile, String encoding, boolean modified, Log log) {
 		String encodingUsed = encoding == null ? "(default)" : encoding;
 		log.debug(String.format(FILE_DEBUG_FORMAT, inputFile, outputFile, encodingUsed));
+		if (modified) {
+			filesModified++;
+		} else {
+			log.debug(String.format(UNMODIFIED_DEBUG_FORMAT, inputFile));
+		}
 		filesReplaced++;
 	}
 
-	public void print(Log log) {
+	public synchronized void addSkipped(String inputFile, Log log) {
+		log.debug(String.format(SKIPPED_DEBUG_FORMAT, inputFile));
+		filesSkipped++;
+	}
+
+	public synchronized void print(Log log) {
 		log.info(String.format(SUMMARY_FORMAT, filesReplaced, filesReplaced > 1 ? "s" : ""));
+		log.info(String.format(MODIFIED_FORMAT, filesModified, filesModified == 1 ? "" : "s"));
+		if (filesSkipped > 0) {
+			log.info(String.format(SKIPPED_FORMAT, filesSkipped, filesSkipped == 1 ? "" : "s"));
+		}
 	}
 
 }
@@ -1,34 +1,129 @@
 package com.google.code.maven_replacer_plugin;
 
-import static org.apache.commons.lang.StringUtils.defaultString;
-import static org.apache.commons.lang.StringUtils.isEmpty;
-
-import java.util.regex.Pattern;
+import java.util.regex.Matcher;
 
 public class TokenReplacer implements Replacer {
 	public String replace(String content, Replacement replacement, boolean regex, int regexFlags) {
-		if (regex) {
-			return replaceRegex(content, replacement.getToken(), replacement.getValue(), regexFlags);
+		return replace(content, new CompiledReplacement(replacement, this, regex, regexFlags));
+	}
+
+	public String replace(String content, CompiledReplacement replacement) {
+		if (content == null) {
+			return null;
+		}
+
+		StringBuilder output = ReplacementBuffers.borrow();
+		try {
+			return replace(content, replacement, output) ? output.toString() : content;
+		} finally {
+			ReplacementBuffers.release(output);
+		}
+	}
+
+	/**
+	 * Writes the replaced content to the output, returning false when nothing was replaced.
+	 */
+	public boolean replace(CharSequence content, CompiledReplacement replacement, StringBuilder output) {
+		if (replacement.isRegex()) {
+			return replaceRegex(content, replacement, output);
+		}
+		return replaceNonRegex(content, replacement, output);
+	}
+
+	private boolean replaceRegex(CharSequence content, CompiledReplacement replacement, StringBuilder output) {
+		int allowed = MatchLimit.allowed();
+		if (allowed <= 0 || replacement.cannotMatch(content)) {
+			return false;
+		}
+		ReplacementTemplate template = replacement.getTemplate();
+		Matcher matcher = replacement.getPattern().matcher(content);
+		FileMetrics metrics = FileMetrics.current();
+		if (!template.isParsed()) {
+			return replaceUnparsed(matcher, replacement, allowed, metrics, output);
+		}
+		if (!matcher.find()) {
+			return false;
 		}
-		return replaceNonRegex(content, replacement.getToken(), replacement.getValue());
+
+		int matches = 0;
+		int last = 0;
+		do {
+			matches++;
+			output.append(content, last, matcher.start());
+			template.appendTo(output, matcher);
+			last = matcher.end();
+		} while (matches < allowed && matcher.find());
+		output.append(content, last, content.length());
+		MatchLimit.used(matches);
+		if (metrics != null) {
+			metrics.matched(replacement, matches);
+		}
+		return true;
 	}
-	
-	private String replaceRegex(String content, String token, String value, int flags) {
-		final Pattern compiledPattern;
-		if (flags == PatternFlagsFactory.NO_FLAGS) {
-			compiledPattern = Pattern.compile(token);
-		} else {
-			compiledPattern = Pattern.compile(token, flags);
+
+	private boolean replaceUnparsed(Matcher matcher, CompiledReplacement replacement, int allowed,
+			FileMetrics metrics, StringBuilder output) {
+		StringBuffer replaced = new StringBuffer();
+		int matches = 0;
+		while (matches < allowed && matcher.find()) {
+			matcher.appendReplacement(replaced, replacement.getTemplate().getValue());
+			matches++;
+		}
+		if (matches == 0) {
+			return false;
 		}
-		
-		return compiledPattern.matcher(content).replaceAll(defaultString(value));
+		matcher.appendTail(replaced);
+		output.append(replaced);
+		MatchLimit.used(matches);
+		if (metrics != null) {
+			metrics.matched(replacement, matches);
+		}
+		return true;
 	}
 
-	private String replaceNonRegex(String content, String token, String value) {
-		if (isEmpty(content)) {
-			return content;
+	private boolean replaceNonRegex(CharSequence content, CompiledReplacement replacement, StringBuilder output) {
+		SpliceBuffer splices = new SpliceBuffer(content, output);
+		if (!splice(content, replacement, splices)) {
+			return false;
 		}
+		splices.finish();
+		return true;
+	}
 
-		return content.replace(token, defaultString(value));
+	/**
+	 * Hands each match of a non-regex token to the splices, returning false when there is none.
+	 */
+	public boolean splice(CharSequence content, CompiledReplacement replacement, Splices splices) {
+		return splice(content, 0, content.length(), replacement, splices) > 0;
+	}
+
+	/**
+	 * Hands each match of a non-regex token starting from the first index and before the second to
+	 * the splices, returning the number of matches.
+	 */
+	public int splice(CharSequence content, int from, int before, CompiledReplacement replacement, Splices splices) {
+		int allowed = MatchLimit.allowed();
+		if (from >= before || allowed <= 0) {
+			return 0;
+		}
+
+		String token = replacement.getToken();
+		String value = replacement.getValue();
+		int found = ReplacementBuffers.indexOf(content, token, from);
+		int matches = 0;
+		while (found >= 0 && found < before) {
+			int end = found + token.length();
+			splices.splice(found, end, value);
+			found = ++matches < allowed ? ReplacementBuffers.indexOf(content, token, end) : -1;
+		}
+		if (matches == 0) {
+			return 0;
+		}
+		MatchLimit.used(matches);
+		FileMetrics metrics = FileMetrics.current();
+		if (metrics != null) {
+			metrics.matched(replacement, matches);
+		}
+		return matches;
 	}
 }
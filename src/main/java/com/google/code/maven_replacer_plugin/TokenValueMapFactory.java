@@ -2,7 +2,6 @@ package com.google.code.maven_replacer_plugin;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
@@ -40,20 +39,22 @@ public class TokenValueMapFactory {
 	public List<Replacement> replacementsForFile(String tokenValueMapFile, boolean commentsEnabled, 
 			boolean unescape, String encoding) 
 		throws IOException {
-		String contents = fileUtils.readFile(tokenValueMapFile, encoding);
-		BufferedReader reader = new BufferedReader(new StringReader(contents));
-
-		String fragment = null;
-		List<Replacement> replacements = new ArrayList<Replacement>();
-		while ((fragment = reader.readLine()) != null) {
-			fragment = fragment.trim();
-			if (ignoreFragment(fragment, commentsEnabled)) {
-				continue;
+		BufferedReader reader = new BufferedReader(fileUtils.openReader(tokenValueMapFile, encoding));
+		try {
+			String fragment = null;
+			List<Replacement> replacements = new ArrayList<Replacement>();
+			while ((fragment = reader.readLine()) != null) {
+				fragment = fragment.trim();
+				if (ignoreFragment(fragment, commentsEnabled)) {
+					continue;
+				}
+
+				appendReplacement(replacements, fragment, unescape, encoding);
 			}
-
-			appendReplacement(replacements, fragment, unescape, encoding);
+			return replacements;
+		} finally {
+			reader.close();
 		}
-		return replacements;
 	}
 	
 	private void appendReplacement(List<Replacement> replacements, String fragment, boolean unescape, String encoding) {
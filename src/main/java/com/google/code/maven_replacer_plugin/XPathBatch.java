@@ -0,0 +1,32 @@
+package com.google.code.maven_replacer_plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Consecutive XPath replacements applied to one parsed document, so that the content
+ * is parsed and serialised once rather than once per replacement.
+ */
+public class XPathBatch implements ReplacementStep {
+	private final XPathReplacer replacer;
+	private final List<CompiledReplacement> replacements;
+
+	public XPathBatch(XPathReplacer replacer, List<CompiledReplacement> replacements) {
+		this.replacer = replacer;
+		this.replacements = Collections.unmodifiableList(new ArrayList<CompiledReplacement>(replacements));
+	}
+
+	public String apply(String content) {
+		return replacer.replace(content, replacements);
+	}
+
+	public boolean apply(CharSequence content, StringBuilder output) {
+		output.append(replacer.replace(content.toString(), replacements));
+		return true;
+	}
+
+	public List<CompiledReplacement> getReplacements() {
+		return replacements;
+	}
+}
@@ -2,6 +2,10 @@ package com.google.code.maven_replacer_plugin;
 
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -23,12 +27,18 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 
+/**
+ * The XML factories are created once per replacer. The parser, XPath evaluator, transformer
+ * and compiled XPath expressions are not thread safe, so each thread gets its own, created on
+ * first use and reused for every later document on that thread.
+ */
 public class XPathReplacer implements Replacer {
 
 	private final TokenReplacer tokenReplacer;
-	private final DocumentBuilder docBuilder;
-	private final XPath xpath;
-	private final Transformer transformer;
+	private final DocumentBuilderFactory documentBuilderFactory;
+	private final XPathFactory xpathFactory;
+	private final TransformerFactory transformerFactory;
+	private final ThreadLocal<XmlSession> sessions;
 
 	public XPathReplacer(TokenReplacer tokenReplacer) {
 		try {
@@ -37,19 +47,52 @@ public class XPathReplacer implements Replacer {
 			}
 			
 			this.tokenReplacer = tokenReplacer;
-			this.xpath = XPathFactory.newInstance().newXPath();
-			this.docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-			this.transformer = TransformerFactory.newInstance().newTransformer();
+			this.documentBuilderFactory = DocumentBuilderFactory.newInstance();
+			this.xpathFactory = XPathFactory.newInstance();
+			this.transformerFactory = TransformerFactory.newInstance();
+			this.sessions = new ThreadLocal<XmlSession>() {
+				@Override
+				protected XmlSession initialValue() {
+					return newSession();
+				}
+			};
+			sessions.get();
 		} catch (Exception e) {
 			throw new IllegalStateException("Unable to initialise XML processing: " + e.getMessage(), e);
 		}
 	}
 
+	private XmlSession newSession() {
+		synchronized (this) {
+			try {
+				return new XmlSession(documentBuilderFactory.newDocumentBuilder(), xpathFactory.newXPath(),
+						transformerFactory.newTransformer());
+			} catch (Exception e) {
+				throw new IllegalStateException("Unable to initialise XML processing: " + e.getMessage(), e);
+			}
+		}
+	}
+
 	public String replace(String content, Replacement replacement, boolean regex, int regexFlags) {
+		return replace(content, new CompiledReplacement(replacement, this, regex, regexFlags));
+	}
+
+	public String replace(String content, CompiledReplacement replacement) {
+		return replace(content, Collections.singletonList(replacement));
+	}
+
+	/**
+	 * Parses the content once, applies each replacement's XPath in order to the same document
+	 * and serialises it once.
+	 */
+	public String replace(String content, List<CompiledReplacement> replacements) {
 		try {
-			Document doc = parseXml(content);
-			NodeList replacementTargets = findReplacementNodes(doc, replacement.getXpath());
-			replaceContent(replacementTargets, replacement, regex, regexFlags);
+			XmlSession session = sessions.get();
+			Document doc = parseXml(session, content);
+			for (CompiledReplacement replacement : replacements) {
+				NodeList replacementTargets = findReplacementNodes(session, doc, replacement.getXpath());
+				replaceContent(session, replacementTargets, replacement);
+			}
 			return writeXml(doc);
 		} catch (Exception e) {
 			String cause = e.getMessage() != null ? e.getMessage() : e.getCause().getMessage();
@@ -57,50 +100,55 @@ public class XPathReplacer implements Replacer {
 		}
 	}
 
-	private void replaceContent(NodeList replacementNodes, Replacement replacement, boolean regex, int regexFlags) throws Exception {
+	private void replaceContent(XmlSession session, NodeList replacementNodes, CompiledReplacement replacement)
+			throws Exception {
 		for (int i=0; i < replacementNodes.getLength(); i++) {
 			Node replacementNode = replacementNodes.item(i);
 
 			switch (replacementNode.getNodeType()) {
 			case Node.ATTRIBUTE_NODE: case Node.TEXT_NODE:
-				String replacedValue = tokenReplacer.replace(replacementNode.getTextContent(), replacement, regex, regexFlags);
+				String replacedValue = tokenReplacer.replace(replacementNode.getTextContent(), replacement);
 				replacementNode.setNodeValue(replacedValue);
 				break;
 			default:
-				String replacementNodeStr = convertNodeToString(replacementNode);
-				String replacedNodeStr = tokenReplacer.replace(replacementNodeStr, replacement, regex, regexFlags);
+				String replacementNodeStr = convertNodeToString(session, replacementNode);
+				String replacedNodeStr = tokenReplacer.replace(replacementNodeStr, replacement);
 
 				Node parent = replacementNode.getParentNode();
 				if (parent.getOwnerDocument() == null) {
 					throw new UnsupportedOperationException("Cannot replace a node's content not part of a parent node.");
 				}
-				Node replacedNode = convertXmlToNode(replacedNodeStr);
+				Node replacedNode = convertXmlToNode(session, replacedNodeStr);
 				Node newNode = parent.getOwnerDocument().importNode(replacedNode, true);
 				parent.replaceChild(newNode, replacementNode);
 			}
 		}
 	}
 
-	private Document parseXml(String content) throws Exception {
-		return docBuilder.parse(new InputSource(new StringReader(content)));
+	private Document parseXml(XmlSession session, String content) throws Exception {
+		return session.docBuilder.parse(new InputSource(new StringReader(content)));
 	}
 
-	private NodeList findReplacementNodes(Document doc, String xpathString) throws Exception {
-		XPathExpression xpathExpr = xpath.compile(xpathString);
+	private NodeList findReplacementNodes(XmlSession session, Document doc, String xpathString) throws Exception {
+		XPathExpression xpathExpr = session.expressions.get(xpathString);
+		if (xpathExpr == null) {
+			xpathExpr = session.xpath.compile(xpathString);
+			session.expressions.put(xpathString, xpathExpr);
+		}
 		return (NodeList) xpathExpr.evaluate(doc, XPathConstants.NODESET);
 	}
 
-	private String convertNodeToString(Node replacementTarget) throws TransformerException {
+	private String convertNodeToString(XmlSession session, Node replacementTarget) throws TransformerException {
 		DOMSource targetSource = new DOMSource(replacementTarget);
 		StringWriter stringWriter = new StringWriter();
 		Result stringResult = new StreamResult(stringWriter);
-		transformer.transform(targetSource, stringResult);
+		session.transformer.transform(targetSource, stringResult);
 		return stringWriter.toString();
 	}
 
-	private Node convertXmlToNode(String xml) throws Exception {
+	private Node convertXmlToNode(XmlSession session, String xml) throws Exception {
 		InputSource docSource = new InputSource(new StringReader(xml));
-		Document doc = docBuilder.parse(docSource);
+		Document doc = session.docBuilder.parse(docSource);
 		return doc.getFirstChild();
 	}
 
@@ -114,4 +162,17 @@ public class XPathReplacer implements Replacer {
 		serializer.serialize(doc);
 		return sw.toString();
 	}
+
+	private static class XmlSession {
+		private final DocumentBuilder docBuilder;
+		private final XPath xpath;
+		private final Transformer transformer;
+		private final Map<String, XPathExpression> expressions = new HashMap<String, XPathExpression>();
+
+		private XmlSession(DocumentBuilder docBuilder, XPath xpath, Transformer transformer) {
+			this.docBuilder = docBuilder;
+			this.xpath = xpath;
+			this.transformer = transformer;
+		}
+	}
 }
@@ -0,0 +1,363 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Applies XPath replacements to a stream of XML events, so that only the path to the current
+ * element is held in memory rather than the whole document.
+ *
+ * Only simple location paths can be streamed: steps of unprefixed element names or *
+ * separated by / or //, ending in text() or an attribute such as @version. For example
+ * /project/version/text() or //dependency/@scope. Predicates, axes, functions, namespace
+ * prefixes and paths selecting whole elements are left to {@link XPathReplacer}, which resolves
+ * prefixes in its own way. The tokens are replaced within each selected text or attribute value
+ * as they are with the DOM, and matches are counted in document order.
+ *
+ * Text split by entity or character references is replaced as one text. XPath also reads text
+ * next to CDATA as one text node, of which the DOM only replaces the text before the first CDATA
+ * section, so CDATA sections and the text following them are written back as they are. The XML
+ * declaration keeps its version, encoding and standalone flag, taking the encoding the document
+ * is written in when it declares none. Documents are otherwise written back through StAX, so
+ * formatting may differ from documents written from the DOM.
+ */
+public class XPathStreamer {
+	private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+	private static final int DECLARATION_LIMIT = 1024;
+	private static final Pattern VERSION = Pattern.compile("version\\s*=\\s*(\"[^\"]*\"|'[^']*')");
+	private static final Pattern ENCODING = Pattern.compile("\\sencoding\\s*=");
+
+	private final List<CompiledReplacement> replacements;
+	private final List<LocationPath> paths;
+	private final TokenReplacer tokenReplacer = new TokenReplacer();
+	private final XMLInputFactory inputFactory;
+	private final XMLOutputFactory outputFactory;
+	private final XMLEventFactory eventFactory;
+
+	public XPathStreamer(List<CompiledReplacement> replacements) {
+		this.replacements = Collections.unmodifiableList(new ArrayList<CompiledReplacement>(replacements));
+		this.paths = new ArrayList<LocationPath>();
+		for (CompiledReplacement replacement : replacements) {
+			LocationPath path = LocationPath.parse(replacement.getXpath());
+			if (path == null) {
+				throw new IllegalArgumentException("XPath cannot be streamed: " + replacement.getXpath());
+			}
+			paths.add(path);
+		}
+
+		this.inputFactory = XMLInputFactory.newInstance();
+		if (inputFactory.isPropertySupported(REPORT_CDATA)) {
+			inputFactory.setProperty(REPORT_CDATA, Boolean.TRUE);
+		}
+		this.outputFactory = XMLOutputFactory.newInstance();
+		this.eventFactory = XMLEventFactory.newInstance();
+	}
+
+	/**
+	 * Whether every replacement has an XPath which can be streamed.
+	 */
+	public static boolean canStream(List<CompiledReplacement> replacements) {
+		for (CompiledReplacement replacement : replacements) {
+			if (isEmpty(replacement.getXpath()) || LocationPath.parse(replacement.getXpath()) == null) {
+				return false;
+			}
+		}
+		return !replacements.isEmpty();
+	}
+
+	/**
+	 * Returns whether any token was replaced, in which case the output may differ from the input.
+	 */
+	public boolean replace(Reader reader, Writer writer) throws IOException {
+		return replace(reader, writer, null);
+	}
+
+	/**
+	 * Replaces the document read into the writer, which writes it in the given encoding, or in an
+	 * unknown one when null.
+	 */
+	public boolean replace(Reader reader, Writer writer, String encoding) throws IOException {
+		Reader input = reader.markSupported() ? reader : new BufferedReader(reader);
+		// StAX writers drop the standalone flag and the JDK's readers often the declared encoding
+		writer.write(declaration(readDeclaration(input), encoding));
+		try {
+			XMLEventReader events;
+			XMLEventWriter output;
+			synchronized (this) {
+				events = inputFactory.createXMLEventReader(input);
+				output = outputFactory.createXMLEventWriter(writer);
+			}
+			boolean replaced = replace(events, output);
+			output.flush();
+			return replaced;
+		} catch (XMLStreamException e) {
+			throw new RuntimeException("Error during XML replacement: " + e.getMessage(), e);
+		}
+	}
+
+	private boolean replace(XMLEventReader events, XMLEventWriter output) throws XMLStreamException {
+		LinkedList<BitSet[]> states = new LinkedList<BitSet[]>();
+		states.add(initialStates());
+		StringBuilder text = new StringBuilder();
+		boolean afterCData = false;
+		boolean replaced = false;
+
+		while (events.hasNext()) {
+			XMLEvent event = events.nextEvent();
+			if (event.isCharacters() && states.size() > 1) {
+				Characters characters = event.asCharacters();
+				afterCData |= characters.isCData();
+				if (!afterCData) {
+					text.append(characters.getData());
+					continue;
+				}
+			}
+			replaced |= writeText(text, states.getLast(), output);
+
+			if (event.isStartElement()) {
+				StartElement element = event.asStartElement();
+				BitSet[] elementStates = next(states.getLast(), qualifiedName(element.getName()));
+				states.add(elementStates);
+				StartElement changed = replaceAttributes(element, elementStates);
+				if (changed != null) {
+					event = changed;
+					replaced = true;
+				}
+			} else if (event.isEndElement()) {
+				states.removeLast();
+			}
+			if (!event.isCharacters()) {
+				afterCData = false;
+			}
+			if (!event.isStartDocument()) {
+				output.add(event);
+			}
+		}
+		return replaced;
+	}
+
+	/**
+	 * Returns the XML declaration at the start of the reader, or null when it has none, leaving
+	 * the reader where it was.
+	 */
+	private static String readDeclaration(Reader reader) throws IOException {
+		char[] start = new char[DECLARATION_LIMIT];
+		int length = 0;
+		reader.mark(DECLARATION_LIMIT);
+		try {
+			int read;
+			while (length < start.length && (read = reader.read(start, length, start.length - length)) != -1) {
+				length += read;
+			}
+		} finally {
+			reader.reset();
+		}
+
+		String prolog = new String(start, 0, length);
+		if (prolog.startsWith("\uFEFF")) {
+			prolog = prolog.substring(1);
+		}
+		int end = prolog.indexOf("?>");
+		if (!prolog.startsWith("<?xml") || end < 0 || !Character.isWhitespace(prolog.charAt(5))) {
+			return null;
+		}
+		return prolog.substring(0, end + 2);
+	}
+
+	/**
+	 * The declaration to write: the document's own, declaring the given encoding when it declares
+	 * none, and the one the DOM writes for documents without one.
+	 */
+	private static String declaration(String declared, String encoding) {
+		String declaration = declared == null ? "<?xml version=\"1.0\"?>" : declared;
+		Matcher version = VERSION.matcher(declaration);
+		if (encoding != null && !ENCODING.matcher(declaration).find() && version.find()) {
+			declaration = declaration.substring(0, version.end()) + " encoding=\"" + encoding + "\""
+					+ declaration.substring(version.end());
+		}
+		return declaration + "\n";
+	}
+
+	private BitSet[] initialStates() {
+		BitSet[] initial = new BitSet[paths.size()];
+		for (int i=0; i < initial.length; i++) {
+			initial[i] = new BitSet();
+			initial[i].set(0);
+		}
+		return initial;
+	}
+
+	private BitSet[] next(BitSet[] parent, String name) {
+		BitSet[] states = new BitSet[paths.size()];
+		for (int i=0; i < states.length; i++) {
+			states[i] = paths.get(i).next(parent[i], name);
+		}
+		return states;
+	}
+
+	private StartElement replaceAttributes(StartElement element, BitSet[] states) {
+		List<Attribute> attributes = new ArrayList<Attribute>();
+		boolean changed = false;
+		for (Iterator<?> i = element.getAttributes(); i.hasNext();) {
+			Attribute attribute = (Attribute) i.next();
+			String name = qualifiedName(attribute.getName());
+			String value = attribute.getValue();
+			for (int r=0; r < paths.size(); r++) {
+				if (paths.get(r).selectsAttribute(states[r], name)) {
+					value = tokenReplacer.replace(value, replacements.get(r));
+				}
+			}
+			if (value.equals(attribute.getValue())) {
+				attributes.add(attribute);
+			} else {
+				attributes.add(eventFactory.createAttribute(attribute.getName(), value));
+				changed = true;
+			}
+		}
+		if (!changed) {
+			return null;
+		}
+		return eventFactory.createStartElement(element.getName(), attributes.iterator(), element.getNamespaces());
+	}
+
+	/**
+	 * Writes the text read since the last other event, if any, with the tokens replaced when it is selected.
+	 */
+	private boolean writeText(StringBuilder text, BitSet[] states, XMLEventWriter output) throws XMLStreamException {
+		if (text.length() == 0) {
+			return false;
+		}
+		String data = text.toString();
+		text.setLength(0);
+		String value = data;
+		for (int r=0; r < paths.size(); r++) {
+			if (paths.get(r).selectsText(states[r])) {
+				value = tokenReplacer.replace(value, replacements.get(r));
+			}
+		}
+		output.add(eventFactory.createCharacters(value));
+		return !value.equals(data);
+	}
+
+	private static String qualifiedName(QName name) {
+		return isEmpty(name.getPrefix()) ? name.getLocalPart() : name.getPrefix() + ":" + name.getLocalPart();
+	}
+
+	/**
+	 * Element steps matched as a small automaton over the path of open elements. The state of an
+	 * element is the set of steps matched so far along each way of reading the path to it; the
+	 * element is selected when every step is matched. A final text() or attribute preceded by //
+	 * also selects the descendants of selected elements.
+	 */
+	static class LocationPath {
+		private final List<String> names = new ArrayList<String>();
+		private final List<Boolean> descendants = new ArrayList<Boolean>();
+		private String attribute;
+		private boolean finalDescendant;
+
+		/**
+		 * Returns the path, or null when the expression is not a supported location path.
+		 */
+		static LocationPath parse(String xpath) {
+			String expression = xpath.trim();
+			if (!expression.startsWith("/")) {
+				return null;
+			}
+
+			LocationPath path = new LocationPath();
+			int i = 0;
+			while (i < expression.length()) {
+				boolean descendant = expression.startsWith("//", i);
+				i += descendant ? 2 : 1;
+				int end = expression.indexOf('/', i);
+				String step = (end < 0 ? expression.substring(i) : expression.substring(i, end)).trim();
+				i = end < 0 ? expression.length() : end;
+				boolean last = end < 0;
+
+				if (step.equals("text()") || step.startsWith("@")) {
+					if (!last || (step.startsWith("@") && !step.equals("@*") && !isName(step.substring(1)))) {
+						return null;
+					}
+					path.attribute = step.startsWith("@") ? step.substring(1) : null;
+					path.finalDescendant = descendant;
+					return path.names.isEmpty() && !descendant ? null : path;
+				}
+				if (!step.equals("*") && !isName(step)) {
+					return null;
+				}
+				path.names.add(step);
+				path.descendants.add(descendant);
+			}
+			return null;
+		}
+
+		/**
+		 * Whether the step is a name without a namespace prefix.
+		 */
+		private static boolean isName(String name) {
+			if (name.length() == 0) {
+				return false;
+			}
+			for (int i=0; i < name.length(); i++) {
+				char c = name.charAt(i);
+				if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') {
+					return false;
+				}
+			}
+			return Character.isLetter(name.charAt(0)) || name.charAt(0) == '_';
+		}
+
+		BitSet next(BitSet parent, String name) {
+			BitSet states = new BitSet();
+			int selected = names.size();
+			for (int s = parent.nextSetBit(0); s >= 0; s = parent.nextSetBit(s + 1)) {
+				if (s == selected) {
+					if (finalDescendant) {
+						states.set(s);
+					}
+					continue;
+				}
+				if (descendants.get(s)) {
+					states.set(s);
+				}
+				String step = names.get(s);
+				if (step.equals("*") || step.equals(name)) {
+					states.set(s + 1);
+				}
+			}
+			return states;
+		}
+
+		boolean selectsText(BitSet states) {
+			return attribute == null && states.get(names.size());
+		}
+
+		boolean selectsAttribute(BitSet states, String name) {
+			return attribute != null && (attribute.equals("*") || attribute.equals(name)) && states.get(names.size());
+		}
+	}
+}
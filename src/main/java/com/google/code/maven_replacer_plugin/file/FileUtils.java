@@ -3,10 +3,24 @@ package com.google.code.maven_replacer_plugin.file;
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
 
 public class FileUtils {
+	private static final int BYTE_CHUNK_SIZE = 64 * 1024;
+
 	public boolean fileNotExists(String filename) {
 		return isBlank(filename) || !new File(filename).exists();
 	}
@@ -43,6 +57,94 @@ public class FileUtils {
 		}
 	}
 	
+	public byte[] readBytes(String file) throws IOException {
+		return org.apache.commons.io.FileUtils.readFileToByteArray(new File(file));
+	}
+
+	/**
+	 * Writes text holding a single byte in each character, such as file bytes read as ISO-8859-1,
+	 * as those bytes.
+	 */
+	public void writeBytes(String outputFile, CharSequence content) throws IOException {
+		ensureFolderStructureExists(outputFile);
+		OutputStream output = new FileOutputStream(outputFile);
+		try {
+			byte[] chunk = new byte[BYTE_CHUNK_SIZE];
+			for (int start=0; start < content.length(); start += chunk.length) {
+				int length = Math.min(chunk.length, content.length() - start);
+				for (int i=0; i < length; i++) {
+					chunk[i] = (byte) content.charAt(start + i);
+				}
+				output.write(chunk, 0, length);
+			}
+		} finally {
+			output.close();
+		}
+	}
+
+	public boolean isSameFile(String file, String otherFile) throws IOException {
+		return new File(file).getCanonicalFile().equals(new File(otherFile).getCanonicalFile());
+	}
+
+	public void copyFile(String file, String outputFile) throws IOException {
+		ensureFolderStructureExists(outputFile);
+		org.apache.commons.io.FileUtils.copyFile(new File(file), new File(outputFile), false);
+	}
+
+	public long fileSize(String file) {
+		return new File(file).length();
+	}
+
+	public InputStream openInput(String file) throws IOException {
+		return new FileInputStream(file);
+	}
+
+	public FileChannel openInputChannel(String file) throws IOException {
+		return new FileInputStream(file).getChannel();
+	}
+
+	public FileChannel openOutputChannel(String outputFile) throws IOException {
+		ensureFolderStructureExists(outputFile);
+		return new FileOutputStream(outputFile).getChannel();
+	}
+
+	public FileChannel openReadWriteChannel(String file) throws IOException {
+		return new RandomAccessFile(file, "rw").getChannel();
+	}
+
+	public Reader openReader(String file, String encoding) throws IOException {
+		FileInputStream input = new FileInputStream(file);
+		if (encoding != null) {
+			return new BufferedReader(new InputStreamReader(input, encoding));
+		}
+		return new BufferedReader(new InputStreamReader(input));
+	}
+
+	public Writer openWriter(File file, String encoding) throws IOException {
+		FileOutputStream output = new FileOutputStream(file);
+		if (encoding != null) {
+			return new BufferedWriter(new OutputStreamWriter(output, encoding));
+		}
+		return new BufferedWriter(new OutputStreamWriter(output));
+	}
+
+	/**
+	 * Creates an empty file next to the given output file, so that it can later be moved over it.
+	 */
+	public File createTempFile(String outputFile) throws IOException {
+		ensureFolderStructureExists(outputFile);
+		File parent = new File(outputFile).getAbsoluteFile().getParentFile();
+		return File.createTempFile(".replacer", ".tmp", parent);
+	}
+
+	public void moveFile(File source, String destination) throws IOException {
+		File target = new File(destination);
+		if (target.exists() && !target.delete()) {
+			throw new IllegalStateException("Error replacing file: " + destination);
+		}
+		org.apache.commons.io.FileUtils.moveFile(source, target);
+	}
+
 	public String createFullPath(String... dirsAndFilename) {
 		StringBuilder fullPath = new StringBuilder();
 		for (int i=0; i < dirsAndFilename.length - 1; i++) {
@@ -0,0 +1,252 @@
+package com.google.code.maven_replacer_plugin.include;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.tools.ant.types.selectors.TokenizedPath;
+import org.apache.tools.ant.types.selectors.TokenizedPattern;
+
+/**
+ * Finds the files under a base directory matching Ant style include and exclude patterns
+ * and hands each to a listener as soon as it is found. Ant's default excludes are not applied,
+ * as the DirectoryScanner previously used had them replaced by the configured excludes.
+ *
+ * Patterns are tokenized once. A directory is only listed when an include pattern could match
+ * below it and no exclude pattern ending in ** covers it, so excluded trees are never read.
+ * On one thread files are reported in the sorted order of their paths, so that a directory's
+ * files are reported where its path sorts among its siblings. With more than one thread
+ * directories are listed in parallel and files are reported in no particular order.
+ * Symbolic links are followed unless they lead back to a directory above them.
+ */
+public class DirectoryWalker {
+	private static final String DEEP_TREE_MATCH = "**";
+
+	public interface Listener {
+		/**
+		 * Called with the path of each file relative to the base directory.
+		 * Never called by more than one thread at a time.
+		 */
+		void found(String file);
+	}
+
+	private final List<TokenizedPattern> includes;
+	private final List<TokenizedPattern> excludes;
+	private final List<TokenizedPattern> excludedTrees;
+	private final int threads;
+
+	public DirectoryWalker(List<String> includes, List<String> excludes, int threads) {
+		this.includes = tokenize(includes);
+		this.excludes = tokenize(excludes);
+		this.excludedTrees = new ArrayList<TokenizedPattern>();
+		for (TokenizedPattern exclude : this.excludes) {
+			if (exclude.endsWith(DEEP_TREE_MATCH)) {
+				excludedTrees.add(exclude.withoutLastToken());
+			}
+		}
+		this.threads = threads;
+	}
+
+	private static List<TokenizedPattern> tokenize(List<String> patterns) {
+		List<TokenizedPattern> tokenized = new ArrayList<TokenizedPattern>();
+		if (patterns == null) {
+			return tokenized;
+		}
+
+		for (String pattern : patterns) {
+			String normalized = pattern.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+			if (normalized.endsWith(File.separator)) {
+				normalized += DEEP_TREE_MATCH;
+			}
+			tokenized.add(new TokenizedPattern(normalized));
+		}
+		return tokenized;
+	}
+
+	public void walk(String basedir, Listener listener) {
+		File base = new File(basedir);
+		if (!base.exists()) {
+			throw new IllegalStateException("basedir " + base + " does not exist.");
+		}
+		if (!base.isDirectory()) {
+			throw new IllegalStateException("basedir " + base + " is not a directory.");
+		}
+
+		Directory root = new Directory(base, TokenizedPath.EMPTY_PATH, null);
+		if (threads > 1) {
+			walkInParallel(root, listener);
+		} else {
+			walkSequentially(root, listener);
+		}
+	}
+
+	private void walkSequentially(Directory directory, Listener listener) {
+		list(directory, listener, true);
+	}
+
+	private void walkInParallel(Directory root, final Listener listener) {
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final AtomicInteger pending = new AtomicInteger(1);
+		final CountDownLatch done = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Listener synchronizedListener = new Listener() {
+			public synchronized void found(String file) {
+				listener.found(file);
+			}
+		};
+
+		class ListTask implements Runnable {
+			private final Directory directory;
+
+			ListTask(Directory directory) {
+				this.directory = directory;
+			}
+
+			public void run() {
+				try {
+					if (failure.get() == null) {
+						for (Directory subdirectory : list(directory, synchronizedListener, false)) {
+							pending.incrementAndGet();
+							executor.execute(new ListTask(subdirectory));
+						}
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				} finally {
+					if (pending.decrementAndGet() == 0) {
+						done.countDown();
+					}
+				}
+			}
+		}
+
+		try {
+			executor.execute(new ListTask(root));
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while listing " + root.file, e);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Throwable thrown = failure.get();
+		if (thrown instanceof RuntimeException) {
+			throw (RuntimeException) thrown;
+		}
+		if (thrown instanceof Error) {
+			throw (Error) thrown;
+		}
+	}
+
+	/**
+	 * Reports the included files of the directory and returns the subdirectories to walk, or
+	 * walks each subdirectory in its sorted place when depthFirst is set.
+	 */
+	private List<Directory> list(Directory directory, Listener listener, boolean depthFirst) {
+		List<Directory> subdirectories = new ArrayList<Directory>();
+		for (File file : sortedEntries(directory.file)) {
+			TokenizedPath path = new TokenizedPath(directory.path, file.getName());
+			if (file.isDirectory()) {
+				if (couldHoldIncludes(path)) {
+					Directory subdirectory = new Directory(file, path, directory);
+					if (subdirectory.isLoop()) {
+						continue;
+					}
+					if (depthFirst) {
+						list(subdirectory, listener, true);
+					} else {
+						subdirectories.add(subdirectory);
+					}
+				}
+			} else if (file.isFile() && isIncluded(path)) {
+				listener.found(path.toString());
+			}
+		}
+		return subdirectories;
+	}
+
+	/**
+	 * The entries of the directory sorted as their paths would be, with a separator after each
+	 * directory's name.
+	 */
+	private static Collection<File> sortedEntries(File directory) {
+		Map<String, File> entries = new TreeMap<String, File>();
+		String[] names = directory.list();
+		if (names != null) {
+			for (String name : names) {
+				File file = new File(directory, name);
+				entries.put(file.isDirectory() ? name + File.separator : name, file);
+			}
+		}
+		return entries.values();
+	}
+
+	private boolean isIncluded(TokenizedPath path) {
+		return matchesAny(includes, path) && !matchesAny(excludes, path);
+	}
+
+	private boolean couldHoldIncludes(TokenizedPath path) {
+		if (matchesAny(excludedTrees, path)) {
+			return false;
+		}
+		for (TokenizedPattern include : includes) {
+			if (include.matchStartOf(path, true)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean matchesAny(List<TokenizedPattern> patterns, TokenizedPath path) {
+		for (TokenizedPattern pattern : patterns) {
+			if (pattern.matchPath(path, true)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static class Directory {
+		private final File file;
+		private final TokenizedPath path;
+		private final Directory parent;
+		private String canonicalPath;
+
+		private Directory(File file, TokenizedPath path, Directory parent) {
+			this.file = file;
+			this.path = path;
+			this.parent = parent;
+		}
+
+		private boolean isLoop() {
+			String canonical = getCanonicalPath();
+			for (Directory ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+				if (ancestor.getCanonicalPath().equals(canonical)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private synchronized String getCanonicalPath() {
+			if (canonicalPath == null) {
+				try {
+					canonicalPath = file.getCanonicalPath();
+				} catch (IOException e) {
+					canonicalPath = file.getAbsolutePath();
+				}
+			}
+			return canonicalPath;
+		}
+	}
+}
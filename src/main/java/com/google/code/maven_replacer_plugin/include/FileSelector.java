@@ -1,33 +1,39 @@
 package com.google.code.maven_replacer_plugin.include;
 
-import java.io.File;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import org.apache.tools.ant.DirectoryScanner;
-
 public class FileSelector {
 
 	public List<String> listIncludes(String basedir, List<String> includes, List<String> excludes) {
-		if (includes == null || includes.isEmpty()) {
-			return Collections.emptyList();
-		}
-
-		DirectoryScanner directoryScanner = new DirectoryScanner();
-		directoryScanner.addDefaultExcludes();
-		directoryScanner.setBasedir(new File(basedir));
-		directoryScanner.setIncludes(stringListToArray(includes));
-		directoryScanner.setExcludes(stringListToArray(excludes));
+		return listIncludes(basedir, includes, excludes, 1);
+	}
 
-		directoryScanner.scan();
-		return Arrays.asList(directoryScanner.getIncludedFiles());
+	/**
+	 * Lists the included files, walking the directories on the given number of threads.
+	 * The files are returned sorted.
+	 */
+	public List<String> listIncludes(String basedir, List<String> includes, List<String> excludes, int threads) {
+		final List<String> files = new ArrayList<String>();
+		selectIncludes(basedir, includes, excludes, threads, new DirectoryWalker.Listener() {
+			public void found(String file) {
+				files.add(file);
+			}
+		});
+		Collections.sort(files);
+		return files;
 	}
 
-	private String[] stringListToArray(List<String> stringList) {
-		if (stringList == null) {
-			return null;
+	/**
+	 * Passes each included file to the listener as soon as it is found.
+	 */
+	public void selectIncludes(String basedir, List<String> includes, List<String> excludes, int threads,
+			DirectoryWalker.Listener listener) {
+		if (includes == null || includes.isEmpty()) {
+			return;
 		}
-		return stringList.toArray(new String[] {});
+
+		new DirectoryWalker(includes, excludes, threads).walk(basedir, listener);
 	}
 }
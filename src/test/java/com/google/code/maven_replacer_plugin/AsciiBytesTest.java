@@ -0,0 +1,130 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+public class AsciiBytesTest {
+	private static final int NO_FLAGS = -1;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void shouldAcceptOnlyWellFormedUtf8() {
+		assertTrue(AsciiBytes.isUtf8(text(0x61, 0xC3, 0xA9, 0xE2, 0x82, 0xAC, 0xF0, 0x9F, 0x98, 0x80)));
+		assertFalse(AsciiBytes.isUtf8(text(0xC0, 0xAF)));
+		assertFalse(AsciiBytes.isUtf8(text(0xE0, 0x80, 0xAF)));
+		assertFalse(AsciiBytes.isUtf8(text(0xED, 0xA0, 0x80)));
+		assertFalse(AsciiBytes.isUtf8(text(0xF4, 0x90, 0x80, 0x80)));
+		assertFalse(AsciiBytes.isUtf8(text(0x61, 0xE2, 0x82)));
+		assertFalse(AsciiBytes.isUtf8(text(0x80)));
+	}
+
+	@Test
+	public void shouldLeaveOutUtf8SequencesCutOffByTheEndOfTheBytes() {
+		assertThat(AsciiBytes.roundTripLength(text(0x61, 0xC3, 0xA9, 0xE2, 0x82), "UTF-8"), equalTo(3));
+		assertThat(AsciiBytes.roundTripLength(text(0x61, 0xF0), "UTF-8"), equalTo(1));
+		assertThat(AsciiBytes.roundTripLength(text(0x61, 0xE2, 0x41), "UTF-8"), equalTo(-1));
+		assertThat(AsciiBytes.roundTripLength(text(0x61, 0xE9), "ISO-8859-1"), equalTo(2));
+	}
+
+	@Test
+	public void shouldRoundTripOnlyBytesTheEncodingMaps() {
+		assertTrue(AsciiBytes.roundTrips(text(0x61, 0x81, 0xFF), "ISO-8859-1"));
+		assertTrue(AsciiBytes.roundTrips(text(0x61, 0x80), "windows-1252"));
+		assertFalse(AsciiBytes.roundTrips(text(0x61, 0x81), "windows-1252"));
+		assertFalse(AsciiBytes.roundTrips(text(0x61, 0x00), "UTF-16"));
+		assertFalse(AsciiBytes.roundTrips(text(0x61), "no-such-encoding"));
+	}
+
+	@Test
+	public void shouldOnlyUseBytesForLiteralAsciiReplacements() {
+		assertTrue(AsciiBytes.isAsciiLiteral(steps(compile("@A@", "value", false))));
+		assertFalse(AsciiBytes.isAsciiLiteral(steps(compile("@A@", "valué", false))));
+		assertFalse(AsciiBytes.isAsciiLiteral(steps(compile("a+", "b", true))));
+		assertFalse(AsciiBytes.isAsciiLiteral(new ArrayList<ReplacementStep>()));
+	}
+
+	@Test
+	public void shouldFindTokensInBytes() {
+		ByteText text = new ByteText(bytes(0x78, 0x40, 0x41, 0x40, 0xE9, 0x40, 0x41, 0x40), 1, 7);
+
+		assertThat(text.indexOf("@A@", 0), equalTo(0));
+		assertThat(text.indexOf("@A@", 1), equalTo(4));
+		assertThat(text.indexOf("é", 0), equalTo(3));
+		assertThat(text.indexOf("€", 0), equalTo(-1));
+		assertThat(text.subSequence(4, 7).toString(), equalTo("@A@"));
+	}
+
+	@Test
+	public void shouldReplaceBytesAsTheDecodedContentWouldBe() throws Exception {
+		String content = "café @A@ € @B@ 😀";
+		assertThat(replace(content, "UTF-8"), equalTo("café one € two 😀"));
+		assertThat(replace("café @A@", "windows-1252"), equalTo("café one"));
+		assertThat(replace("café @A@", "UTF-16"), equalTo("café one"));
+	}
+
+	@Test
+	public void shouldDecodeMalformedBytesAsTheCharPathWould() throws Exception {
+		File input = folder.newFile("malformed");
+		org.apache.commons.io.FileUtils.writeByteArrayToFile(input, bytes(0x40, 0x41, 0x40, 0xFF));
+		File output = new File(folder.getRoot(), "malformed-output");
+
+		new ReplacementProcessor(new FileUtils(), new ReplacerFactory())
+				.replace(plan(), input.getPath(), output.getPath(), "UTF-8");
+		assertThat(org.apache.commons.io.FileUtils.readFileToString(output, "UTF-8"), equalTo("one�"));
+	}
+
+	private String replace(String content, String encoding) throws Exception {
+		File input = folder.newFile("input-" + encoding);
+		org.apache.commons.io.FileUtils.writeStringToFile(input, content, encoding);
+		File output = new File(folder.getRoot(), "output-" + encoding);
+
+		new ReplacementProcessor(new FileUtils(), new ReplacerFactory())
+				.replace(plan(), input.getPath(), output.getPath(), encoding);
+		return org.apache.commons.io.FileUtils.readFileToString(output, encoding);
+	}
+
+	private ReplacementPlan plan() {
+		return new ReplacementPlan(asList(compile("@A@", "one", false), compile("@B@", "two", false)),
+				false, NO_FLAGS);
+	}
+
+	private List<ReplacementStep> steps(ReplacementStep step) {
+		List<ReplacementStep> steps = new ArrayList<ReplacementStep>();
+		steps.add(step);
+		return steps;
+	}
+
+	private CompiledReplacement compile(String token, String value, boolean regex) {
+		Replacement replacement = new Replacement();
+		replacement.setToken(token);
+		replacement.setValue(value);
+		return new CompiledReplacement(replacement, new TokenReplacer(), regex, NO_FLAGS);
+	}
+
+	private ByteText text(int... values) {
+		return new ByteText(bytes(values));
+	}
+
+	private byte[] bytes(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i=0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,120 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DelimitedLookupTest {
+	private static final int NO_FLAGS = -1;
+
+	private List<CompiledReplacement> replacements;
+
+	@Before
+	public void setUp() {
+		replacements = new ArrayList<CompiledReplacement>();
+	}
+
+	@Test
+	public void shouldLookUpDelimitedNames() {
+		add("A", "1", "${*}");
+		add("B", "2", "${*}");
+
+		assertThat(replace("x ${A} y ${B} z ${A}"), equalTo("x 1 y 2 z 1"));
+	}
+
+	@Test
+	public void shouldLeaveUnknownNamesAlone() {
+		add("A", "1", "${*}");
+
+		assertThat(replace("${unknown} ${A} ${"), equalTo("${unknown} 1 ${"));
+		assertThat(replace("no tokens"), equalTo("no tokens"));
+	}
+
+	@Test
+	public void shouldFindNameStartingInsideUnknownName() {
+		add("A", "1", "${*}");
+
+		assertThat(replace("${x ${A}"), equalTo("${x 1"));
+	}
+
+	@Test
+	public void shouldLookUpEveryDelimiterInOneScan() {
+		add("A", "1", "${*}");
+		add("A", "2", "@");
+		add("B", "3", "@");
+
+		assertThat(replace("@A@ ${A} @B@ ${B}"), equalTo("2 1 3 ${B}"));
+	}
+
+	@Test
+	public void shouldTryDelimitersSharingStartInOrder() {
+		add("A@B", "2", "@*!");
+		add("A", "1", "@*@");
+
+		assertThat(replace("@A@ @A@B!"), equalTo("1 2"));
+	}
+
+	@Test
+	public void shouldNotRescanReplacedValues() {
+		add("A", "${B}", "${*}");
+		add("B", "2", "${*}");
+
+		assertThat(replace("${A}${B}"), equalTo("${B}2"));
+	}
+
+	@Test
+	public void shouldUseFirstValueForDuplicateNames() {
+		add("A", "first", "${*}");
+		add("A", "second", "${*}");
+
+		assertThat(replace("${A}"), equalTo("first"));
+	}
+
+	@Test
+	public void shouldReplaceTokensWithoutUsableDelimiterAfterLookup() {
+		add("A", "1", "${*}");
+		add("plain", "2", null);
+		add("x}y", "3", "${*}");
+
+		List<ReplacementStep> steps = DelimitedLookup.build(replacements);
+
+		assertThat(steps.size(), equalTo(2));
+		assertThat(steps.get(1), instanceOf(LiteralAutomaton.class));
+		assertThat(replace("${A} plain ${x}y}"), equalTo("1 2 3"));
+	}
+
+	@Test
+	public void shouldMatchSequentialReplacementOfDelimitedTokens() {
+		StringBuilder content = new StringBuilder();
+		for (int i=0; i < 500; i++) {
+			add("token" + i, "value" + i, "${*}");
+			add("token" + i, "at" + i, "@");
+			content.append("${token").append(i).append("} @token").append(i * 7).append("@ ${other}\n");
+		}
+
+		ReplacementPlan sequential = new ReplacementPlan(replacements, false, NO_FLAGS);
+		ReplacementPlan lookup = new ReplacementPlan(replacements, false, NO_FLAGS, ReplacementEngine.DELIMITED_LOOKUP);
+		assertThat(lookup.getSteps().size(), equalTo(1));
+		assertThat(lookup.apply(content.toString()), equalTo(sequential.apply(content.toString())));
+	}
+
+	private String replace(String content) {
+		return new ReplacementPlan(replacements, false, NO_FLAGS, ReplacementEngine.DELIMITED_LOOKUP).apply(content);
+	}
+
+	private void add(String token, String value, String delimiter) {
+		Replacement replacement = new Replacement();
+		replacement.setToken(token);
+		replacement.setValue(value);
+		if (delimiter != null) {
+			replacement = replacement.withDelimiter(new DelimiterBuilder(delimiter));
+		}
+		replacements.add(new CompiledReplacement(replacement, new TokenReplacer(), false, NO_FLAGS));
+	}
+}
@@ -0,0 +1,131 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IncrementalStateTest {
+	private static final int NO_FLAGS = -1;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File input;
+	private File output;
+	private File stateFile;
+
+	@Before
+	public void setUp() throws Exception {
+		input = folder.newFile("input");
+		output = folder.newFile("output");
+		stateFile = new File(folder.getRoot(), "state/plan.properties");
+		FileUtils.writeStringToFile(input, "token");
+		FileUtils.writeStringToFile(output, "value");
+	}
+
+	@Test
+	public void shouldBeUpToDateOnceRecordedAndReloaded() throws Exception {
+		IncrementalState state = new IncrementalState(stateFile);
+		assertFalse(state.isUpToDate(input.getPath(), output.getPath()));
+
+		state.record(input.getPath(), output.getPath());
+		state.save();
+
+		assertTrue(new IncrementalState(stateFile).isUpToDate(input.getPath(), output.getPath()));
+	}
+
+	@Test
+	public void shouldNotBeUpToDateWhenInputOrOutputChanges() throws Exception {
+		IncrementalState state = new IncrementalState(stateFile);
+		state.record(input.getPath(), output.getPath());
+
+		FileUtils.writeStringToFile(input, "tokem");
+		assertFalse(state.isUpToDate(input.getPath(), output.getPath()));
+
+		state.record(input.getPath(), output.getPath());
+		output.delete();
+		assertFalse(state.isUpToDate(input.getPath(), output.getPath()));
+	}
+
+	@Test
+	public void shouldBeUpToDateWhenOnlyTouched() throws Exception {
+		IncrementalState state = new IncrementalState(stateFile);
+		state.record(input.getPath(), output.getPath());
+
+		input.setLastModified(input.lastModified() - 60000);
+		assertTrue(state.isUpToDate(input.getPath(), output.getPath()));
+	}
+
+	@Test
+	public void shouldHashPlansByTheirReplacements() {
+		String hash = IncrementalState.hashPlan(plan("token", "value"), "UTF-8");
+
+		assertThat(IncrementalState.hashPlan(plan("token", "value"), "UTF-8"), equalTo(hash));
+		assertThat(IncrementalState.hashPlan(plan("token", "other"), "UTF-8"), not(equalTo(hash)));
+		assertThat(IncrementalState.hashPlan(plan("token", "value"), null), not(equalTo(hash)));
+	}
+
+	@Test
+	public void shouldHashPlansByTheirMaximumMatches() {
+		String hash = IncrementalState.hashPlan(plan("token", "value"), "UTF-8");
+
+		assertThat(IncrementalState.hashPlan(plan("token", "value").withMaxMatches(1), "UTF-8"), not(equalTo(hash)));
+		assertThat(IncrementalState.hashPlan(plan("token", "value").withMaxMatches(1), "UTF-8"),
+				equalTo(IncrementalState.hashPlan(plan("token", "value").withMaxMatches(1), "UTF-8")));
+	}
+
+	@Test
+	public void shouldHashPlansByTheirScanLimit() {
+		String hash = IncrementalState.hashPlan(plan("token", "value"), "UTF-8");
+		String lines = IncrementalState.hashPlan(plan("token", "value").withScanLimit(ScanLimit.parse("20 lines")), "UTF-8");
+
+		assertThat(lines, not(equalTo(hash)));
+		assertThat(IncrementalState.hashPlan(plan("token", "value").withScanLimit(ScanLimit.parse("20 bytes")), "UTF-8"),
+				not(equalTo(lines)));
+	}
+
+	@Test
+	public void shouldHashPlansByTheirStreamingSettings() {
+		String hash = IncrementalState.hashPlan(plan("token", "value").withStreaming(1024, 4096), "UTF-8");
+
+		assertThat(IncrementalState.hashPlan(plan("token", "value"), "UTF-8"), not(equalTo(hash)));
+		assertThat(IncrementalState.hashPlan(plan("token", "value").withStreaming(2048, 4096), "UTF-8"),
+				not(equalTo(hash)));
+		assertThat(IncrementalState.hashPlan(plan("token", "value").withStreaming(1024, 100), "UTF-8"),
+				not(equalTo(hash)));
+	}
+
+	@Test
+	public void shouldKeepOneStateFilePerExecutionAndForgetOtherPlans() throws Exception {
+		String directory = new File(folder.getRoot(), "state").getPath();
+		IncrementalState state = IncrementalState.load(directory, "default", plan("token", "value"), "UTF-8");
+		state.record(input.getPath(), output.getPath());
+		state.save();
+		assertTrue(IncrementalState.load(directory, "default", plan("token", "value"), "UTF-8")
+				.isUpToDate(input.getPath(), output.getPath()));
+
+		IncrementalState changed = IncrementalState.load(directory, "default", plan("token", "other"), "UTF-8");
+		assertFalse(changed.isUpToDate(input.getPath(), output.getPath()));
+		changed.save();
+		assertThat(new File(directory).list(), equalTo(new String[] {"default.properties"}));
+	}
+
+	private ReplacementPlan plan(String token, String value) {
+		Replacement replacement = new Replacement();
+		replacement.setToken(token);
+		replacement.setValue(value);
+		return new ReplacementPlan(asList(new CompiledReplacement(replacement, new TokenReplacer(), false, NO_FLAGS)),
+				false, NO_FLAGS);
+	}
+}
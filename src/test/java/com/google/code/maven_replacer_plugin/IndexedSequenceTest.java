@@ -0,0 +1,102 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexedSequenceTest {
+	private static final int NO_FLAGS = -1;
+
+	private List<CompiledReplacement> replacements;
+
+	@Before
+	public void setUp() {
+		replacements = new ArrayList<CompiledReplacement>();
+	}
+
+	@Test
+	public void shouldBeUsedForSequentialLiteralReplacements() {
+		add("@A@", "1");
+		add("@B@", "2");
+
+		ReplacementPlan plan = new ReplacementPlan(replacements, false, NO_FLAGS);
+
+		assertThat(plan.getSteps().size(), equalTo(1));
+		assertThat(plan.getSteps().get(0), instanceOf(IndexedSequence.class));
+		assertThat(plan.apply("x @A@ y @B@ z @C@"), equalTo("x 1 y 2 z @C@"));
+	}
+
+	@Test
+	public void shouldNotIndexRegexReplacements() {
+		add("@A@", "1");
+		replacements.add(new CompiledReplacement(new Replacement(null, "a+", "b", false, null, null),
+				new TokenReplacer(), true, NO_FLAGS));
+
+		assertFalse(IndexedSequence.canIndex(replacements));
+	}
+
+	@Test
+	public void shouldReplaceTokensWrittenByEarlierValues() {
+		add("a", "bc");
+		add("bcd", "X");
+		add("X", "Y");
+
+		assertThat(apply("ad a"), equalTo("Y bc"));
+	}
+
+	@Test
+	public void shouldReplaceTokensJoinedByRemovedText() {
+		add("-", "");
+		add("ab", "X");
+
+		assertThat(apply("a-b a--b"), equalTo("X X"));
+	}
+
+	@Test
+	public void shouldMatchSequentialReplacement() {
+		Random random = new Random(42);
+		String alphabet = "ab-";
+		for (int i=0; i < 40; i++) {
+			add(randomText(random, alphabet, 1, 3), randomText(random, alphabet, 0, 3));
+		}
+
+		for (int i=0; i < 200; i++) {
+			String content = randomText(random, alphabet, 0, 40);
+			assertThat(content, apply(content), equalTo(applySequentially(content)));
+		}
+	}
+
+	private String apply(String content) {
+		return new IndexedSequence(replacements).apply(content);
+	}
+
+	private String applySequentially(String content) {
+		String replaced = content;
+		for (CompiledReplacement replacement : replacements) {
+			replaced = replacement.apply(replaced);
+		}
+		return replaced;
+	}
+
+	private String randomText(Random random, String alphabet, int min, int max) {
+		StringBuilder text = new StringBuilder();
+		int length = min + random.nextInt(max - min + 1);
+		for (int i=0; i < length; i++) {
+			text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return text.toString();
+	}
+
+	private void add(String token, String value) {
+		replacements.add(new CompiledReplacement(new Replacement(null, token, value, false, null, null),
+				new TokenReplacer(), false, NO_FLAGS));
+	}
+}
@@ -0,0 +1,86 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LiteralAutomatonTest {
+	private static final int NO_FLAGS = -1;
+
+	private List<CompiledReplacement> replacements;
+
+	@Before
+	public void setUp() {
+		replacements = new ArrayList<CompiledReplacement>();
+	}
+
+	@Test
+	public void shouldReplaceAllTokensInOneScan() {
+		add("@A@", "1");
+		add("@B@", "2");
+		
+		assertThat(replace("x @A@ y @B@ z @A@"), equalTo("x 1 y 2 z 1"));
+	}
+	
+	@Test
+	public void shouldPreferLeftmostThenLongestToken() {
+		add("@A", "short");
+		add("@AB", "long");
+		add("B@", "other");
+		
+		assertThat(replace("@AB@"), equalTo("long@"));
+		assertThat(replace("@AC"), equalTo("shortC"));
+		assertThat(replace("xB@AB"), equalTo("xotherAB"));
+	}
+	
+	@Test
+	public void shouldFindTokenStartingInsideUnmatchedPrefix() {
+		add("abcd", "1");
+		add("bc", "2");
+		
+		assertThat(replace("abce"), equalTo("a2e"));
+		assertThat(replace("aabcd"), equalTo("a1"));
+	}
+	
+	@Test
+	public void shouldNotRescanReplacedValues() {
+		add("a", "b");
+		add("b", "c");
+		
+		assertThat(replace("ab"), equalTo("bc"));
+	}
+	
+	@Test
+	public void shouldUseFirstReplacementForDuplicateTokens() {
+		add("token", "first");
+		add("token", "second");
+		
+		assertThat(replace("token"), equalTo("first"));
+	}
+	
+	@Test
+	public void shouldReturnSameContentWhenNothingMatches() {
+		add("token", "value");
+		
+		String content = "no match here";
+		assertThat(replace(content), sameInstance(content));
+		assertThat(replace(""), equalTo(""));
+	}
+
+	private void add(String token, String value) {
+		Replacement replacement = new Replacement();
+		replacement.setToken(token);
+		replacement.setValue(value);
+		replacements.add(new CompiledReplacement(replacement, new TokenReplacer(), false, NO_FLAGS));
+	}
+
+	private String replace(String content) {
+		return new LiteralAutomaton(replacements).apply(content);
+	}
+}
@@ -0,0 +1,87 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+public class LiteralPresenceTest {
+	private static final int NO_FLAGS = -1;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void shouldFindLiteralsOfTokensAndRegexes() throws Exception {
+		LiteralPresence presence = LiteralPresence.of(asList(compile("@A@", false, NO_FLAGS),
+				compile("version=[0-9]+", true, NO_FLAGS)));
+
+		assertTrue(presence.occursIn(input("x @A@ y")));
+		assertTrue(presence.occursIn(input("x version=abc")));
+		assertFalse(presence.occursIn(input("x @B@ versions")));
+	}
+
+	@Test
+	public void shouldFindLiteralsAcrossChunks() throws Exception {
+		LiteralPresence presence = LiteralPresence.of(asList(compile("@TOKEN@", false, NO_FLAGS)));
+		String padding = StringUtils.repeat(" ", 64 * 1024 - 3);
+
+		assertTrue(presence.occursIn(input(padding + "@TOKEN@")));
+		assertFalse(presence.occursIn(input(padding + "@TOKEN")));
+	}
+
+	@Test
+	public void shouldHaveNoCheckWhenAnyReplacementLacksALiteral() {
+		assertNull(LiteralPresence.of(asList(compile("@A@", false, NO_FLAGS), compile("[0-9]+", true, NO_FLAGS))));
+		assertNull(LiteralPresence.of(asList(compile("abc", true, Pattern.CASE_INSENSITIVE))));
+		assertNull(LiteralPresence.of(asList(compile("é", false, NO_FLAGS))));
+		assertNotNull(LiteralPresence.of(asList(compile("abc", true, Pattern.MULTILINE))));
+	}
+
+	@Test
+	public void shouldOnlyCheckBytesOfAsciiCompatibleEncodings() {
+		assertTrue(AsciiBytes.isAsciiCompatible("UTF-8"));
+		assertTrue(AsciiBytes.isAsciiCompatible("ISO-8859-1"));
+		assertTrue(AsciiBytes.isAsciiCompatible("US-ASCII"));
+		assertFalse(AsciiBytes.isAsciiCompatible("UTF-16"));
+		assertFalse(AsciiBytes.isAsciiCompatible("Shift_JIS"));
+	}
+
+	@Test
+	public void shouldCopyFilesWhichCannotMatch() throws Exception {
+		File input = folder.newFile("input");
+		org.apache.commons.io.FileUtils.writeStringToFile(input, "no tokens é", "UTF-8");
+		File output = new File(folder.getRoot(), "out/output");
+		ReplacementPlan plan = new ReplacementPlan(asList(compile("@A@", false, NO_FLAGS),
+				compile("v[0-9]+", true, NO_FLAGS)), false, NO_FLAGS);
+
+		assertFalse(new ReplacementProcessor(new FileUtils(), new ReplacerFactory())
+				.replace(plan, input.getPath(), output.getPath(), "UTF-8"));
+		assertThat(org.apache.commons.io.FileUtils.readFileToString(output, "UTF-8"), equalTo("no tokens é"));
+	}
+
+	private ByteArrayInputStream input(String content) {
+		return new ByteArrayInputStream(content.getBytes());
+	}
+
+	private CompiledReplacement compile(String token, boolean regex, int flags) {
+		Replacement replacement = new Replacement();
+		replacement.setToken(token);
+		replacement.setValue("value");
+		return new CompiledReplacement(replacement, new TokenReplacer(), regex, flags);
+	}
+}
@@ -0,0 +1,93 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MatchLimitTest {
+	private static final int NO_FLAGS = -1;
+
+	private List<CompiledReplacement> replacements;
+
+	@Before
+	public void setUp() {
+		replacements = new ArrayList<CompiledReplacement>();
+	}
+
+	@Test
+	public void shouldReplaceOnlyFirstMatchesOfOneToken() {
+		add("@A@", "1", false, null);
+
+		assertThat(apply(false, ReplacementEngine.SEQUENTIAL, 2, "@A@ @A@ @A@"), equalTo("1 1 @A@"));
+		assertThat(apply(false, ReplacementEngine.SEQUENTIAL, 0, "@A@ @A@ @A@"), equalTo("@A@ @A@ @A@"));
+		assertNull(MatchLimit.current());
+	}
+
+	@Test
+	public void shouldShareLimitAcrossSequentialReplacements() {
+		add("@A@", "1", false, null);
+		add("@B@", "2", false, null);
+		add("@C@", "3", false, null);
+
+		assertThat(apply(false, ReplacementEngine.SEQUENTIAL, 3, "@C@ @B@ @A@ @A@ @B@"), equalTo("@C@ 2 1 1 @B@"));
+	}
+
+	@Test
+	public void shouldLimitRegexReplacements() {
+		add("v(\\d)", "$1", true, null);
+		add("x", "$0$0", true, null);
+
+		assertThat(apply(true, ReplacementEngine.SEQUENTIAL, 3, "v1 v2 x x"), equalTo("1 2 xx x"));
+	}
+
+	@Test
+	public void shouldLimitSinglePassReplacements() {
+		add("@A@", "1", false, null);
+		add("@B@", "2", false, null);
+
+		assertThat(apply(false, ReplacementEngine.SINGLE_PASS, 2, "@B@ @A@ @B@"), equalTo("2 1 @B@"));
+	}
+
+	@Test
+	public void shouldLimitFusedRegexReplacements() {
+		add("a+", "A", true, null);
+		add("b+", "B", true, null);
+
+		assertThat(apply(true, ReplacementEngine.SINGLE_PASS, 2, "bb aa bb"), equalTo("B A bb"));
+	}
+
+	@Test
+	public void shouldLimitDelimitedLookups() {
+		add("A", "1", false, "${*}");
+		add("B", "2", false, "${*}");
+
+		assertThat(apply(false, ReplacementEngine.DELIMITED_LOOKUP, 1, "${B} ${A}"), equalTo("2 ${A}"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAllowNegativeLimit() {
+		add("@A@", "1", false, null);
+
+		new ReplacementPlan(replacements, false, NO_FLAGS).withMaxMatches(-1);
+	}
+
+	private String apply(boolean regex, ReplacementEngine engine, int maxMatches, String content) {
+		return new ReplacementPlan(replacements, regex, NO_FLAGS, engine).withMaxMatches(maxMatches).apply(content);
+	}
+
+	private void add(String token, String value, boolean regex, String delimiter) {
+		Replacement replacement = new Replacement();
+		replacement.setToken(token);
+		replacement.setValue(value);
+		if (delimiter != null) {
+			replacement = replacement.withDelimiter(new DelimiterBuilder(delimiter));
+		}
+		replacements.add(new CompiledReplacement(replacement, new TokenReplacer(), regex, NO_FLAGS));
+	}
+}
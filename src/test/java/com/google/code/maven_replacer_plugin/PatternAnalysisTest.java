@@ -0,0 +1,58 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class PatternAnalysisTest {
+	private static final int NO_FLAGS = -1;
+
+	@Test
+	public void shouldFindLiteralPatterns() {
+		PatternAnalysis analysis = new PatternAnalysis("\\$\\{db\\.url\\}", NO_FLAGS);
+		assertTrue(analysis.isLiteral());
+		assertThat(analysis.getLiteralPrefix(), equalTo("${db.url}"));
+		
+		assertTrue(new PatternAnalysis("\\Q@a.b@\\E", NO_FLAGS).isLiteral());
+		assertThat(new PatternAnalysis("\\Q@a.b@\\E", NO_FLAGS).getLiteralPrefix(), equalTo("@a.b@"));
+	}
+	
+	@Test
+	public void shouldStopLiteralPrefixAtVariableParts() {
+		assertThat(new PatternAnalysis("version-(\\d+)", NO_FLAGS).getLiteralPrefix(), equalTo("version-"));
+		assertThat(new PatternAnalysis("abc?d", NO_FLAGS).getLiteralPrefix(), equalTo("ab"));
+		assertThat(new PatternAnalysis("x(ab)*c", NO_FLAGS).getLiteralPrefix(), equalTo("x"));
+		assertThat(new PatternAnalysis("a|b", NO_FLAGS).getLiteralPrefix(), equalTo(""));
+		assertFalse(new PatternAnalysis("version-(\\d+)", NO_FLAGS).isLiteral());
+	}
+	
+	@Test
+	public void shouldNotBeContextFreeWithBackReferencesAnchorsOrLookAround() {
+		assertFalse(new PatternAnalysis("(a)\\1", NO_FLAGS).isContextFree());
+		assertFalse(new PatternAnalysis("^replace=.*$", Pattern.MULTILINE).isContextFree());
+		assertFalse(new PatternAnalysis("\\btoken", NO_FLAGS).isContextFree());
+		assertFalse(new PatternAnalysis("token(?=x)", NO_FLAGS).isContextFree());
+		assertFalse(new PatternAnalysis("token", Pattern.COMMENTS).isContextFree());
+		assertTrue(new PatternAnalysis("(?:to)ken", NO_FLAGS).isContextFree());
+	}
+	
+	@Test
+	public void shouldDetectPatternsWhichMayOverlap() {
+		PatternAnalysis version = new PatternAnalysis("@version-\\d+@", NO_FLAGS);
+		PatternAnalysis name = new PatternAnalysis("#name#", NO_FLAGS);
+		PatternAnalysis anything = new PatternAnalysis("<.*>", NO_FLAGS);
+		PatternAnalysis digits = new PatternAnalysis("1\\d", NO_FLAGS);
+		
+		assertFalse(version.mayOverlap(name));
+		assertTrue(anything.mayOverlap(name));
+		assertTrue(version.mayOverlap(digits));
+		assertTrue(digits.mayOverlap(version) || version.mayOverlap(digits));
+		assertTrue(new PatternAnalysis("@a@", NO_FLAGS).mayOverlap(new PatternAnalysis("@b@", NO_FLAGS)));
+		assertTrue(new PatternAnalysis("bc", NO_FLAGS).mayOverlap(new PatternAnalysis("ab", NO_FLAGS)));
+	}
+}
@@ -0,0 +1,152 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PerformanceReportTest {
+	private static final int NO_FLAGS = -1;
+	private static final String ENCODING = "UTF-8";
+
+	@Mock
+	private FileUtils fileUtils;
+
+	private ReplacementProcessor processor;
+	private List<Replacement> replacements;
+
+	@Before
+	public void setUp() {
+		processor = new ReplacementProcessor(fileUtils, new ReplacerFactory());
+		replacements = new ArrayList<Replacement>();
+	}
+
+	@Test
+	public void shouldRecordMatchesOfEachReplacementPerFile() throws Exception {
+		add("@A@", "1");
+		add("@B@", "2");
+		add("@C@", "3");
+		ReplacementPlan plan = processor.prepare(replacements, false, NO_FLAGS).withReport();
+		file("a.txt", "@A@ @A@ @B@", 11);
+		file("b.txt", "nothing", 7);
+
+		assertTrue(processor.replace(plan, "a.txt", "a.out", ENCODING));
+		assertFalse(processor.replace(plan, "b.txt", "b.out", ENCODING));
+
+		List<FileMetrics> files = plan.getReport().getFiles();
+		assertThat(files.size(), equalTo(2));
+		FileMetrics replaced = files.get(0);
+		assertThat(replaced.getInputFile(), equalTo("a.txt"));
+		assertThat(replaced.getEncoding(), equalTo(ENCODING));
+		assertThat(replaced.getBytesIn(), equalTo(11L));
+		assertTrue(replaced.isModified());
+		assertThat(replaced.getMatches().get(plan.getReplacements().get(0)), equalTo(2L));
+		assertThat(replaced.getMatches().get(plan.getReplacements().get(1)), equalTo(1L));
+		assertNull(replaced.getMatches().get(plan.getReplacements().get(2)));
+		assertTrue(files.get(1).getMatches().isEmpty());
+		assertNull(FileMetrics.current());
+
+		String json = plan.getReport().toJson(10);
+		assertThat(json, containsString("\"files\": 2,"));
+		assertThat(json, containsString("\"modified\": 1,"));
+		assertThat(json, containsString("\"matches\": 3\n"));
+		assertThat(json, containsString("\"token\": \"@A@\",\n      \"matches\": 2"));
+		assertThat(json, not(containsString("\"token\": \"@C@\"")));
+	}
+
+	@Test
+	public void shouldRecordMatchesOfSinglePassSteps() throws Exception {
+		add("@A@", "one");
+		add("@B@", "two");
+		add("[0-9]+", "#");
+		add("x+", "y");
+		ReplacementPlan plan = processor.prepare(replacements, true, NO_FLAGS, ReplacementEngine.SINGLE_PASS)
+				.withReport();
+		file("a.txt", "@A@ 12 xx 3", 11);
+
+		processor.replace(plan, "a.txt", "a.txt", ENCODING);
+
+		FileMetrics metrics = plan.getReport().getFiles().get(0);
+		assertThat(metrics.getMatches().get(plan.getReplacements().get(2)), equalTo(2L));
+		assertThat(metrics.getMatches().get(plan.getReplacements().get(3)), equalTo(1L));
+		long stepMatches = 0;
+		for (long matches : metrics.getStepMatches()) {
+			stepMatches += matches;
+		}
+		assertThat(stepMatches, equalTo(4L));
+	}
+
+	@Test
+	public void shouldListSlowestFilesAndPatternsFirst() throws Exception {
+		add("@A@", "1");
+		ReplacementPlan plan = processor.prepare(replacements, false, NO_FLAGS).withReport();
+		PerformanceReport report = plan.getReport();
+		report.add(timed(report, "fast.txt", 1000000));
+		report.add(timed(report, "slow.txt", 5000000));
+
+		String json = report.toJson(1);
+
+		assertThat(json, containsString("\"slowestFiles\": [\n    {\n      \"file\": \"slow.txt\""));
+		assertThat(json, not(containsString("\"slowestFiles\": [\n    {\n      \"file\": \"fast.txt\"")));
+		assertThat(json, containsString("\"replaceMillis\": 5.000"));
+		assertThat(json, containsString("\"pattern\": \"@A@\""));
+	}
+
+	@Test
+	public void shouldEscapeNamesInJson() throws Exception {
+		add("\"quoted\"\t\\", "1");
+		ReplacementPlan plan = processor.prepare(replacements, false, NO_FLAGS).withReport();
+		PerformanceReport report = plan.getReport();
+		report.add(timed(report, "dir\\file\u0001.txt", 0));
+
+		String json = report.toJson(10);
+
+		assertThat(json, containsString("\"pattern\": \"\\\"quoted\\\"\\t\\\\\""));
+		assertThat(json, containsString("\"file\": \"dir\\\\file\\u0001.txt\""));
+	}
+
+	@Test
+	public void shouldDescribeStepsReplacingManyTokens() {
+		for (int i=0; i < 7; i++) {
+			add("@" + i + "@", "v");
+		}
+		ReplacementPlan plan = processor.prepare(replacements, false, NO_FLAGS, ReplacementEngine.SINGLE_PASS);
+
+		assertThat(PerformanceReport.describe(plan.getSteps().get(0)),
+				equalTo("7 literal tokens: @0@, @1@, @2@, @3@, @4@, ..."));
+	}
+
+	private FileMetrics timed(PerformanceReport report, String file, long replaceNanos) {
+		FileMetrics metrics = report.start(file, file, ENCODING);
+		metrics.timed(0, replaceNanos, 0);
+		return metrics;
+	}
+
+	private void file(String file, String content, long size) throws Exception {
+		when(fileUtils.readFile(file, ENCODING)).thenReturn(content);
+		when(fileUtils.readBytes(file)).thenReturn(content.getBytes(ENCODING));
+		when(fileUtils.openInput(file)).thenReturn(new ByteArrayInputStream(content.getBytes(ENCODING)));
+		when(fileUtils.fileSize(file)).thenReturn(size);
+	}
+
+	private void add(String token, String value) {
+		replacements.add(new Replacement(null, token, value, false, null, null));
+	}
+}
@@ -0,0 +1,117 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RegexAlternationTest {
+	private static final int NO_FLAGS = -1;
+
+	private List<CompiledReplacement> replacements;
+
+	@Before
+	public void setUp() {
+		replacements = new ArrayList<CompiledReplacement>();
+	}
+
+	@Test
+	public void shouldReplaceFusedPatternsWithTheirOwnGroups() {
+		add("@(name)@", "[NAME]");
+		add("version-(\\d+)", "v$1");
+		
+		List<ReplacementStep> steps = RegexAlternation.fuse(replacements, NO_FLAGS);
+		assertThat(steps.size(), equalTo(1));
+		assertThat(steps.get(0), instanceOf(RegexAlternation.class));
+		assertThat(steps.get(0).apply("version-12 @name@ version-3"), equalTo("v12 [NAME] v3"));
+	}
+	
+	@Test
+	public void shouldNotFusePatternsWithBackReferences() {
+		add("@a@", "1");
+		add("(b)\\1", "2");
+		add("@c@", "3");
+		
+		List<ReplacementStep> steps = RegexAlternation.fuse(replacements, NO_FLAGS);
+		assertThat(steps.size(), equalTo(3));
+		assertThat(apply(steps, "@a@ bb @c@"), equalTo("1 2 3"));
+	}
+	
+	@Test
+	public void shouldApplyPatternFedByEarlierValueInLaterStep() {
+		add("@a@", "@b@");
+		add("@b@", "done");
+		
+		List<ReplacementStep> steps = RegexAlternation.fuse(replacements, NO_FLAGS);
+		assertThat(steps.size(), equalTo(2));
+		assertThat(apply(steps, "@a@"), equalTo("done"));
+	}
+	
+	@Test
+	public void shouldNotFusePatternsWhichMayContainOtherMatches() {
+		add("<.*>", "tag");
+		add("@a@", "1");
+		
+		List<ReplacementStep> steps = RegexAlternation.fuse(replacements, NO_FLAGS);
+		assertThat(steps.size(), equalTo(2));
+		assertThat(apply(steps, "<@a@> @a@"), equalTo("tag 1"));
+	}
+
+	@Test
+	public void shouldNotFusePatternsWhoseLiteralsOverlap() {
+		add("bc", "Y");
+		add("ab", "X");
+		
+		assertSameAsSequential("abc", "aY");
+	}
+	
+	@Test
+	public void shouldNotFusePatternsAfterValuesCopiedFromGroups() {
+		add("foo(\\d+)", "bar$1");
+		add("bar\\d", "Z");
+		
+		assertSameAsSequential("foo12", "Z2");
+	}
+	
+	@Test
+	public void shouldNotFusePatternsWhichMayMatchAcrossEarlierValue() {
+		add("T", "X");
+		add("aX", "Z");
+		
+		assertSameAsSequential("aT", "Z");
+	}
+	
+	@Test
+	public void shouldNotFusePatternsJoinedByEmptyValue() {
+		add("b", "");
+		add("ac", "Z");
+		
+		assertSameAsSequential("abc", "Z");
+	}
+
+	private void assertSameAsSequential(String content, String expected) {
+		List<ReplacementStep> sequential = new ArrayList<ReplacementStep>(replacements);
+		assertThat(apply(sequential, content), equalTo(expected));
+		assertThat(apply(RegexAlternation.fuse(replacements, NO_FLAGS), content), equalTo(expected));
+	}
+
+	private void add(String token, String value) {
+		Replacement replacement = new Replacement();
+		replacement.setToken(token);
+		replacement.setValue(value);
+		replacements.add(new CompiledReplacement(replacement, new TokenReplacer(), true, NO_FLAGS));
+	}
+
+	private String apply(List<ReplacementStep> steps, String content) {
+		String replaced = content;
+		for (ReplacementStep step : steps) {
+			replaced = step.apply(replaced);
+		}
+		return replaced;
+	}
+}
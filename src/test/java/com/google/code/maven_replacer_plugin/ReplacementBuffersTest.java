@@ -0,0 +1,74 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ReplacementBuffersTest {
+	private static final int NO_FLAGS = -1;
+
+	@Test
+	public void shouldReuseReleasedBuffersEmptied() {
+		StringBuilder buffer = ReplacementBuffers.borrow();
+		buffer.append("content");
+		ReplacementBuffers.release(buffer);
+
+		StringBuilder reused = ReplacementBuffers.borrow();
+		assertThat(reused, sameInstance(buffer));
+		assertThat(reused.length(), equalTo(0));
+		ReplacementBuffers.release(reused);
+	}
+
+	@Test
+	public void shouldNotKeepBuffersGrownByLargeFiles() {
+		StringBuilder buffer = ReplacementBuffers.borrow();
+		buffer.ensureCapacity(ReplacementBuffers.RETAINED_CAPACITY + 1);
+		ReplacementBuffers.release(buffer);
+
+		StringBuilder next = ReplacementBuffers.borrow();
+		assertThat(next, not(sameInstance(buffer)));
+		ReplacementBuffers.release(next);
+	}
+
+	@Test
+	public void shouldFindTokensInStringsAndBuffers() {
+		assertThat(ReplacementBuffers.indexOf("a@b@", "@", 2), equalTo(3));
+		assertThat(ReplacementBuffers.indexOf(new StringBuilder("a@b@"), "@", 2), equalTo(3));
+		assertThat(ReplacementBuffers.indexOf(new StringBuffer("a@b@"), "@b", 0), equalTo(1));
+	}
+
+	@Test
+	public void shouldReturnContentItselfWhenNoStepChangesIt() {
+		List<CompiledReplacement> replacements = new ArrayList<CompiledReplacement>();
+		replacements.add(compile("@A@", "1", false));
+		replacements.add(compile("x+", "y", true));
+		String content = "nothing to replace";
+
+		assertThat(new ReplacementPlan(replacements, false, NO_FLAGS).apply(content), sameInstance(content));
+	}
+
+	@Test
+	public void shouldPassEachStepTheOutputOfThePrevious() {
+		List<CompiledReplacement> replacements = new ArrayList<CompiledReplacement>();
+		replacements.add(compile("a", "bb", false));
+		replacements.add(compile("b+", "c", true));
+		replacements.add(compile("q", "r", false));
+		replacements.add(compile("c", "dd", false));
+		replacements.add(compile("d", "e", false));
+
+		assertThat(new ReplacementPlan(replacements, false, NO_FLAGS).apply("xax"), equalTo("xeex"));
+	}
+
+	private CompiledReplacement compile(String token, String value, boolean regex) {
+		Replacement replacement = new Replacement();
+		replacement.setToken(token);
+		replacement.setValue(value);
+		return new CompiledReplacement(replacement, new TokenReplacer(), regex, NO_FLAGS);
+	}
+}
@@ -0,0 +1,28 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import org.junit.Test;
+
+public class ReplacementEngineTest {
+
+	@Test
+	public void shouldDefaultToSequential() {
+		assertThat(ReplacementEngine.from(null), equalTo(ReplacementEngine.SEQUENTIAL));
+		assertThat(ReplacementEngine.from(" "), equalTo(ReplacementEngine.SEQUENTIAL));
+	}
+	
+	@Test
+	public void shouldParseEngineNames() {
+		assertThat(ReplacementEngine.from("sequential"), equalTo(ReplacementEngine.SEQUENTIAL));
+		assertThat(ReplacementEngine.from("single-pass"), equalTo(ReplacementEngine.SINGLE_PASS));
+		assertThat(ReplacementEngine.from("SINGLE_PASS"), equalTo(ReplacementEngine.SINGLE_PASS));
+		assertThat(ReplacementEngine.from("delimited-lookup"), equalTo(ReplacementEngine.DELIMITED_LOOKUP));
+	}
+	
+	@Test (expected = IllegalArgumentException.class)
+	public void shouldThrowExceptionForUnknownEngine() {
+		ReplacementEngine.from("unknown");
+	}
+}
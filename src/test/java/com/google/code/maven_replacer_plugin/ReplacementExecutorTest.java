@@ -0,0 +1,194 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReplacementExecutorTest {
+	private static final String ENCODING = "encoding";
+	private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+	private List<String> replacedFiles;
+	private List<Integer> reported;
+	private ReplacementExecutor.Callback callback;
+
+	@Before
+	public void setUp() {
+		replacedFiles = Collections.synchronizedList(new ArrayList<String>());
+		reported = new ArrayList<Integer>();
+		callback = new ReplacementExecutor.Callback() {
+			public void replaced(int index, boolean modified) {
+				reported.add(index);
+			}
+		};
+	}
+
+	@Test
+	public void shouldParseThreadCounts() {
+		assertThat(ReplacementExecutor.parseThreads(null), equalTo(1));
+		assertThat(ReplacementExecutor.parseThreads(""), equalTo(1));
+		assertThat(ReplacementExecutor.parseThreads("4"), equalTo(4));
+		assertThat(ReplacementExecutor.parseThreads("1C"), equalTo(CORES));
+		assertThat(ReplacementExecutor.parseThreads("2c"), equalTo(2 * CORES));
+		assertThat(ReplacementExecutor.parseThreads("0.01C"), equalTo(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldThrowExceptionForNonNumericThreads() {
+		ReplacementExecutor.parseThreads("many");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldThrowExceptionForZeroThreads() {
+		ReplacementExecutor.parseThreads("0");
+	}
+
+	@Test
+	public void shouldReplaceSequentiallyWithOneThread() throws Exception {
+		ReplacementExecutor executor = new ReplacementExecutor(new RecordingProcessor(null), 1);
+
+		executor.replace(null, asList("a", "b", "c"), asList("a.out", "b.out", "c.out"), ENCODING, callback);
+
+		assertThat(replacedFiles, equalTo(asList("a", "b", "c")));
+		assertThat(reported, equalTo(asList(0, 1, 2)));
+	}
+
+	@Test
+	public void shouldReportInInputOrderWhenReplacingOnManyThreads() throws Exception {
+		ReplacementExecutor executor = new ReplacementExecutor(new RecordingProcessor(null), 4);
+		List<String> inputs = new ArrayList<String>();
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int i=0; i < 20; i++) {
+			inputs.add("file" + i);
+			expected.add(i);
+		}
+
+		executor.replace(null, inputs, inputs, ENCODING, callback);
+
+		assertThat(replacedFiles.size(), equalTo(20));
+		assertThat(reported, equalTo(expected));
+	}
+
+	@Test
+	public void shouldRethrowFirstFailureAndStopReporting() throws Exception {
+		ReplacementExecutor executor = new ReplacementExecutor(new RecordingProcessor("b"), 2);
+
+		try {
+			executor.replace(null, asList("a", "b", "c"), asList("a", "b", "c"), ENCODING, callback);
+			fail("Expected failure replacing b");
+		} catch (IOException e) {
+			assertThat(e.getMessage(), equalTo("b"));
+		}
+		assertThat(reported, equalTo(asList(0)));
+	}
+
+	@Test
+	public void shouldReplaceFilesWhileSourceIsStillProducing() throws Exception {
+		final CountDownLatch firstReplaced = new CountDownLatch(1);
+		ReplacementExecutor executor = new ReplacementExecutor(new RecordingProcessor(null) {
+			@Override
+			public boolean replace(ReplacementPlan plan, String file, String outputFile, String encoding) throws IOException {
+				super.replace(plan, file, outputFile, encoding);
+				firstReplaced.countDown();
+				return true;
+			}
+		}, 2);
+
+		executor.replace(null, new ReplacementExecutor.Source() {
+			public void produce(ReplacementExecutor.Sink sink) {
+				sink.add("a", "a.out");
+				try {
+					assertTrue(firstReplaced.await(10, TimeUnit.SECONDS));
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				for (int i=0; i < 20; i++) {
+					sink.add("file" + i, "file" + i);
+				}
+			}
+		}, ENCODING, callback);
+
+		assertThat(replacedFiles.size(), equalTo(21));
+		assertThat(reported.size(), equalTo(21));
+		for (int i=0; i < reported.size(); i++) {
+			assertThat(reported.get(i), equalTo(i));
+		}
+	}
+
+	@Test
+	public void shouldRethrowSourceFailureAfterQueuedFiles() throws Exception {
+		ReplacementExecutor executor = new ReplacementExecutor(new RecordingProcessor(null), 2);
+
+		try {
+			executor.replace(null, new ReplacementExecutor.Source() {
+				public void produce(ReplacementExecutor.Sink sink) throws IOException {
+					sink.add("a", "a");
+					throw new IOException("scan failed");
+				}
+			}, ENCODING, callback);
+			fail("Expected failure from source");
+		} catch (IOException e) {
+			assertThat(e.getMessage(), equalTo("scan failed"));
+		}
+		assertThat(reported, equalTo(asList(0)));
+	}
+
+	@Test
+	public void shouldReplaceFilesFromSourceOnCallingThreadWithOneThread() throws Exception {
+		final Thread caller = Thread.currentThread();
+		ReplacementExecutor executor = new ReplacementExecutor(new RecordingProcessor("c") {
+			@Override
+			public boolean replace(ReplacementPlan plan, String file, String outputFile, String encoding) throws IOException {
+				assertTrue(Thread.currentThread() == caller);
+				return super.replace(plan, file, outputFile, encoding);
+			}
+		}, 1);
+
+		try {
+			executor.replace(null, new ReplacementExecutor.Source() {
+				public void produce(ReplacementExecutor.Sink sink) {
+					sink.add("a", "a");
+					assertThat(reported, equalTo(asList(0)));
+					sink.add("b", "b");
+					sink.add("c", "c");
+					sink.add("d", "d");
+				}
+			}, ENCODING, callback);
+			fail("Expected failure replacing c");
+		} catch (IOException e) {
+			assertThat(e.getMessage(), equalTo("c"));
+		}
+		assertThat(replacedFiles, equalTo(asList("a", "b")));
+		assertThat(reported, equalTo(asList(0, 1)));
+	}
+
+	private class RecordingProcessor extends ReplacementProcessor {
+		private final String failingFile;
+
+		public RecordingProcessor(String failingFile) {
+			super(null, null);
+			this.failingFile = failingFile;
+		}
+
+		@Override
+		public boolean replace(ReplacementPlan plan, String file, String outputFile, String encoding) throws IOException {
+			if (file.equals(failingFile)) {
+				throw new IOException(file);
+			}
+			replacedFiles.add(file);
+			return true;
+		}
+	}
+}
@@ -2,10 +2,19 @@ package com.google.code.maven_replacer_plugin;
 
 
 import static java.util.Arrays.asList;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import org.hamcrest.BaseMatcher;
+import org.hamcrest.Description;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -51,7 +60,7 @@ public class ReplacementProcessorTest {
 	
 	@Test
 	public void shouldWriteReplacedRegexTextToFile() throws Exception {
-		when(replacer.replace(CONTENT, replacement, true, REGEX_FLAGS)).thenReturn(NEW_CONTENT);
+		when(replacer.replace(eq(CONTENT), argThat(compiledFrom(replacement, USE_REGEX)))).thenReturn(NEW_CONTENT);
 		
 		processor.replace(asList(replacement), USE_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
 		verify(fileUtils).writeToFile(OUTPUT_FILE, NEW_CONTENT, ENCODING);
@@ -59,12 +68,33 @@ public class ReplacementProcessorTest {
 	
 	@Test
 	public void shouldWriteReplacedNonRegexTextToFile() throws Exception {
-		when(replacer.replace(CONTENT, replacement, false, REGEX_FLAGS)).thenReturn(NEW_CONTENT);
+		when(replacer.replace(eq(CONTENT), argThat(compiledFrom(replacement, NO_REGEX)))).thenReturn(NEW_CONTENT);
 		
 		processor.replace(asList(replacement), NO_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
 		verify(fileUtils).writeToFile(OUTPUT_FILE, NEW_CONTENT, ENCODING);
 	}
 	
+	@Test
+	public void shouldNotRewriteUnmodifiedContent() throws Exception {
+		when(replacer.replace(eq(CONTENT), argThat(compiledFrom(replacement, USE_REGEX)))).thenReturn(CONTENT);
+		when(fileUtils.isSameFile(FILE, FILE)).thenReturn(true);
+		
+		ReplacementPlan plan = processor.prepare(asList(replacement), USE_REGEX, REGEX_FLAGS);
+		assertFalse(processor.replace(plan, FILE, FILE, ENCODING));
+		verify(fileUtils, never()).writeToFile(anyString(), anyString(), anyString());
+		verify(fileUtils, never()).copyFile(anyString(), anyString());
+	}
+	
+	@Test
+	public void shouldCopyUnmodifiedContentToOtherOutputFile() throws Exception {
+		when(replacer.replace(eq(CONTENT), argThat(compiledFrom(replacement, USE_REGEX)))).thenReturn(CONTENT);
+		
+		ReplacementPlan plan = processor.prepare(asList(replacement), USE_REGEX, REGEX_FLAGS);
+		assertFalse(processor.replace(plan, FILE, OUTPUT_FILE, ENCODING));
+		verify(fileUtils, never()).writeToFile(anyString(), anyString(), anyString());
+		verify(fileUtils).copyFile(FILE, OUTPUT_FILE);
+	}
+	
 	@Test (expected = IllegalArgumentException.class)
 	public void shouldThrowExceptionIfNoToken() throws Exception {
 		when(replacement.getToken()).thenReturn(null);
@@ -80,4 +110,30 @@ public class ReplacementProcessorTest {
 		processor.replace(asList(replacement), USE_REGEX, FILE, OUTPUT_FILE, REGEX_FLAGS, ENCODING);
 		verifyZeroInteractions(fileUtils);
 	}
+	
+	@Test
+	public void shouldCreateReplacersOnceWhenReusingPlan() throws Exception {
+		when(fileUtils.readFile(OUTPUT_FILE, ENCODING)).thenReturn(CONTENT);
+		when(replacer.replace(eq(CONTENT), argThat(compiledFrom(replacement, USE_REGEX)))).thenReturn(NEW_CONTENT);
+		
+		ReplacementPlan plan = processor.prepare(asList(replacement), USE_REGEX, REGEX_FLAGS);
+		assertTrue(processor.replace(plan, FILE, OUTPUT_FILE, ENCODING));
+		assertTrue(processor.replace(plan, OUTPUT_FILE, OUTPUT_FILE, ENCODING));
+		verify(replacerFactory, times(1)).create(replacement);
+		verify(fileUtils, times(2)).writeToFile(OUTPUT_FILE, NEW_CONTENT, ENCODING);
+	}
+	
+	private BaseMatcher<CompiledReplacement> compiledFrom(final Replacement replacement, final boolean regex) {
+		return new BaseMatcher<CompiledReplacement>() {
+			public boolean matches(Object arg0) {
+				CompiledReplacement compiled = (CompiledReplacement) arg0;
+				return compiled.getReplacement() == replacement && compiled.isRegex() == regex;
+			}
+
+			public void describeTo(Description desc) {
+				desc.appendText("compiled from").appendValue(replacement);
+				desc.appendText("regex").appendValue(regex);
+			}
+		};
+	}
 }
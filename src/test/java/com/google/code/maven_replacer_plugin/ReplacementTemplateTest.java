@@ -0,0 +1,45 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class ReplacementTemplateTest {
+
+	@Test
+	public void shouldAppendLiteralsAndGroups() {
+		Matcher matcher = Pattern.compile("(a)(b)").matcher("ab");
+		matcher.find();
+		
+		ReplacementTemplate template = new ReplacementTemplate("x$2-$1\\$y", 2);
+		StringBuilder output = new StringBuilder();
+		template.appendTo(output, matcher);
+		assertTrue(template.isParsed());
+		assertThat(output.toString(), equalTo("xb-a$y"));
+	}
+	
+	@Test
+	public void shouldTakeLargestLegalGroupNumber() {
+		Matcher matcher = Pattern.compile("(a)").matcher("a");
+		matcher.find();
+		
+		ReplacementTemplate template = new ReplacementTemplate("$10", 1);
+		StringBuilder output = new StringBuilder();
+		template.appendTo(output, matcher);
+		assertThat(output.toString(), equalTo("a0"));
+	}
+	
+	@Test
+	public void shouldNotParseValuesLeftToTheMatcher() {
+		assertFalse(new ReplacementTemplate("$2", 1).isParsed());
+		assertFalse(new ReplacementTemplate("${name}", 1).isParsed());
+		assertFalse(new ReplacementTemplate("trailing\\", 0).isParsed());
+		assertFalse(new ReplacementTemplate("trailing$", 0).isParsed());
+	}
+}
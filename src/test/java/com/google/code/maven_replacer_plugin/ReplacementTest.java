@@ -2,6 +2,8 @@ package com.google.code.maven_replacer_plugin;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
@@ -47,6 +49,20 @@ public class ReplacementTest {
 		verifyZeroInteractions(fileUtils);
 	}
 	
+	@Test
+	public void shouldBeResolvedOnceWhenCompiled() throws Exception {
+		when(delimiter.apply(TOKEN)).thenReturn("new token");
+		Replacement replacement = new Replacement(fileUtils, TOKEN, UNESCAPED, true, null, ENCODING).withDelimiter(delimiter);
+		CompiledReplacement compiled = new CompiledReplacement(replacement, new TokenReplacer(), false, -1);
+		replacement.setToken("other");
+		
+		assertThat(compiled.getToken(), equalTo("new token"));
+		assertThat(compiled.getToken(), equalTo("new token"));
+		assertThat(compiled.getUndelimitedToken(), equalTo(TOKEN));
+		assertThat(compiled.getValue(), equalTo(ESCAPED));
+		verify(delimiter, times(1)).apply(TOKEN);
+	}
+	
 	@Test
 	public void shouldUseEscapedTokensAndValues() {
 		Replacement replacement = new Replacement(fileUtils, UNESCAPED, UNESCAPED, true, null, ENCODING);
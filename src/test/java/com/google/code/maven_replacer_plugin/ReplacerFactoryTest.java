@@ -1,6 +1,8 @@
 package com.google.code.maven_replacer_plugin;
 
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import org.junit.Test;
@@ -30,4 +32,15 @@ public class ReplacerFactoryTest {
 		Replacer replacer = factory.create(replacement);
 		assertTrue(replacer instanceof XPathReplacer);
 	}
+	
+	@Test
+	public void shouldReuseReplacersForEveryReplacement() {
+		ReplacerFactory factory = new ReplacerFactory();
+		Replacement other = mock(Replacement.class);
+		when(replacement.getXpath()).thenReturn("some xpath");
+		when(other.getXpath()).thenReturn("other xpath");
+
+		assertSame(factory.create(replacement), factory.create(other));
+		assertSame(factory.create(mock(Replacement.class)), factory.create(mock(Replacement.class)));
+	}
 }
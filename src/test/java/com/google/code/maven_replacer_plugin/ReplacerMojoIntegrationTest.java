@@ -249,6 +249,19 @@ public class ReplacerMojoIntegrationTest {
 		}
 	}
 	
+	@Test
+	public void shouldIgnoreInvalidRegexTokenWithoutDelimiters() throws Exception {
+		filenameAndPath = createTempFile("(" + TOKEN);
+		mojo.setFile(filenameAndPath);
+		mojo.setToken("(" + TOKEN);
+		mojo.setValue(VALUE);
+		mojo.execute();
+		
+		String results = FileUtils.readFileToString(new File(filenameAndPath));
+		assertThat(results, equalTo("(" + TOKEN));
+		verify(log, never()).error(anyString());
+	}
+	
 	@Test
 	public void shouldReplaceContentsInFileButNotReportWhenQuiet() throws Exception {
 		mojo.setQuiet(true);
@@ -460,6 +473,32 @@ public class ReplacerMojoIntegrationTest {
 		assertThat(results, equalTo(VALUE));
 	}
 	
+	@Test
+	public void shouldReplaceContentsWithTokenValuesInSinglePass() throws Exception {
+		filenameAndPath = createTempFile("@AB@ and @A@");
+		mojo.setVariableTokenValueMap("@A=b,@AB=@A,@A@=" + VALUE);
+		mojo.setRegex(false);
+		mojo.setEngine("single-pass");
+		mojo.setFile(filenameAndPath);
+		mojo.execute();
+		
+		String results = FileUtils.readFileToString(new File(filenameAndPath));
+		assertThat(results, equalTo("@A@ and " + VALUE));
+	}
+	
+	@Test
+	public void shouldReplaceRegexTokensInSinglePassAndReportFusedPatterns() throws Exception {
+		filenameAndPath = createTempFile("@a@ REV-12 @a@");
+		mojo.setVariableTokenValueMap("@a@=" + VALUE + ",REV-(\\d+)=r$1");
+		mojo.setEngine("single-pass");
+		mojo.setFile(filenameAndPath);
+		mojo.execute();
+		
+		String results = FileUtils.readFileToString(new File(filenameAndPath));
+		assertThat(results, equalTo(VALUE + " r12 " + VALUE));
+		verify(log).info("Fused 2 regex replacements into a single pass: [@a@, REV-(\\d+)]");
+	}
+	
 	@Test
 	public void shouldReplaceContentsWithTokenValuesInDelimiteredMap() throws Exception {
 		filenameAndPath = createTempFile("@" + TOKEN + "@");
@@ -490,6 +529,69 @@ public class ReplacerMojoIntegrationTest {
 		assertThat(include2Results, equalTo(VALUE));
 	}
 
+	@Test
+	public void shouldNotRewriteFileWithoutTokens() throws Exception {
+		File file = new File(filenameAndPath);
+		file.setLastModified(file.lastModified() - 60000);
+		long lastModified = file.lastModified();
+
+		mojo.setFile(filenameAndPath);
+		mojo.setToken("missing");
+		mojo.setValue(VALUE);
+		mojo.execute();
+
+		assertThat(file.lastModified(), equalTo(lastModified));
+		verify(log).info("Replacement run on 1 file.");
+		verify(log).info("Modified 0 files.");
+	}
+
+	@Test
+	public void shouldSkipUnchangedFilesWhenIncremental() throws Exception {
+		String stateDirectory = "target/replacer-state-" + new Random().nextInt();
+		mojo.setIncludes(asList(filenameAndPath));
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setIncremental(true);
+		mojo.setStateDirectory(stateDirectory);
+		mojo.execute();
+		mojo.execute();
+
+		assertThat(FileUtils.readFileToString(new File(filenameAndPath)), equalTo(VALUE));
+		verify(log).info("Skipped 1 unchanged file.");
+		FileUtils.deleteDirectory(new File(stateDirectory));
+	}
+
+	@Test
+	public void shouldStreamFilesOverThreshold() throws Exception {
+		mojo.setFile(filenameAndPath);
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setStreamThreshold(0L);
+		mojo.execute();
+
+		String results = FileUtils.readFileToString(new File(filenameAndPath));
+		assertThat(results, equalTo(VALUE));
+		verify(log).info("Replacement run on 1 file.");
+	}
+
+	@Test
+	public void shouldReplaceContentsInFilesToIncludeOnMultipleThreads() throws Exception {
+		String include1 = createTempFile(TOKEN);
+		String include2 = createTempFile(TOKEN);
+		String include3 = createTempFile(TOKEN);
+
+		mojo.setFilesToInclude(include1 + ", " + include2 + ", " + include3);
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setThreads("2");
+		mojo.execute();
+
+		assertThat(FileUtils.readFileToString(new File(include1)), equalTo(VALUE));
+		assertThat(FileUtils.readFileToString(new File(include2)), equalTo(VALUE));
+		assertThat(FileUtils.readFileToString(new File(include3)), equalTo(VALUE));
+		verify(log).info("Replacement run on 3 files.");
+	}
+
     @Test
     public void shouldOnlyReplaceUpToMaxReplacements() throws Exception {
         String randomBase = String.valueOf(RandomUtils.nextInt(10));
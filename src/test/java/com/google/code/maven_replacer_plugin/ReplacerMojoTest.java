@@ -7,11 +7,14 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -32,10 +35,14 @@ import org.hamcrest.Description;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import com.google.code.maven_replacer_plugin.file.FileUtils;
+import com.google.code.maven_replacer_plugin.include.DirectoryWalker;
 import com.google.code.maven_replacer_plugin.include.FileSelector;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -74,6 +81,8 @@ public class ReplacerMojoTest {
 	private OutputFilenameBuilder outputFilenameBuilder;
 	@Mock
 	private SummaryBuilder summaryBuilder;
+	@Mock
+	private ReplacementPlan plan;
 	
 	private List<String> regexFlags;
 	private ReplacerMojo mojo;
@@ -82,6 +91,9 @@ public class ReplacerMojoTest {
 	public void setUp() throws Exception {
 		regexFlags = asList(REGEX_FLAG);
 		when(patternFlagsFactory.buildFlags(regexFlags)).thenReturn(REGEX_PATTERN_FLAGS);
+		when(processor.prepare(anyListOf(Replacement.class), anyBoolean(), anyInt(), isA(ReplacementEngine.class)))
+			.thenReturn(plan);
+		when(processor.replace(isA(ReplacementPlan.class), anyString(), anyString(), anyString())).thenReturn(true);
 
 		mojo = new ReplacerMojo(fileUtils, processor, replacerFactory, tokenValueMapFactory,
 				fileSelector, patternFlagsFactory, outputFilenameBuilder, summaryBuilder) {
@@ -109,12 +121,53 @@ public class ReplacerMojoTest {
 		mojo.execute();
 		
 		assertSame(FILE, mojo.getFile());
-		verify(processor).replace(replacements, REGEX, BASE_DIR + File.separator + FILE, 
-				OUTPUT_FILE, REGEX_PATTERN_FLAGS, ENCODING);
-		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, ENCODING, log);
+		verify(processor).prepare(replacements, REGEX, REGEX_PATTERN_FLAGS, ReplacementEngine.SEQUENTIAL);
+		verify(processor).replace(plan, BASE_DIR + File.separator + FILE, OUTPUT_FILE, ENCODING);
+		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, ENCODING, true, log);
 		verify(summaryBuilder).print(log);
 	}
 	
+	@Test
+	public void shouldWritePerformanceReportAfterReplacing() throws Exception {
+		PerformanceReport report = new PerformanceReport(plan);
+		when(plan.getReport()).thenReturn(report);
+
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setFile(FILE);
+		mojo.setBasedir(BASE_DIR);
+		mojo.setPerformanceReport(true);
+		mojo.setPerformanceReportFile("report.json");
+		mojo.execute();
+
+		verify(plan).withReport();
+		verify(fileUtils).writeToFile(BASE_DIR + File.separator + "report.json", report.toJson(10), "UTF-8");
+	}
+
+	@Test
+	public void shouldLimitMatchesPerFile() throws Exception {
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setFile(FILE);
+		mojo.setMaxMatches(1);
+		mojo.execute();
+
+		verify(plan).withMaxMatches(1);
+	}
+
+	@Test
+	public void shouldLimitReplacementToStartOfFiles() throws Exception {
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setFile(FILE);
+		mojo.setScanLimit("20 lines");
+		mojo.execute();
+
+		ArgumentCaptor<ScanLimit> limit = ArgumentCaptor.forClass(ScanLimit.class);
+		verify(plan).withScanLimit(limit.capture());
+		assertThat(limit.getValue().toString(), equalTo("20 lines"));
+	}
+
 	@Test
 	public void shouldSkipAndDoNothing() throws Exception {
 		mojo.setToken(TOKEN);
@@ -136,8 +189,9 @@ public class ReplacerMojoTest {
 		mojo.setReplacements(replacements);
 		mojo.setFile(FILE);
 		mojo.execute();
-		verify(processor).replace(replacements, REGEX, FILE, OUTPUT_FILE, 0, null);
-		verify(summaryBuilder).add(FILE, OUTPUT_FILE, null, log);
+		verify(processor).prepare(replacements, REGEX, 0, ReplacementEngine.SEQUENTIAL);
+		verify(processor).replace(plan, FILE, OUTPUT_FILE, null);
+		verify(summaryBuilder).add(FILE, OUTPUT_FILE, null, true, log);
 		verify(summaryBuilder).print(log);
 	}
 
@@ -152,8 +206,9 @@ public class ReplacerMojoTest {
         mojo.setMaxReplacements(1);
         mojo.setFile(FILE);
         mojo.execute();
-        verify(processor).replace(asList(replacement1), REGEX, FILE, OUTPUT_FILE, 0, null);
-        verify(summaryBuilder).add(FILE, OUTPUT_FILE, null, log);
+        verify(processor).prepare(asList(replacement1), REGEX, 0, ReplacementEngine.SEQUENTIAL);
+        verify(processor).replace(plan, FILE, OUTPUT_FILE, null);
+        verify(summaryBuilder).add(FILE, OUTPUT_FILE, null, true, log);
         verify(summaryBuilder).print(log);
     }
 
@@ -171,8 +226,9 @@ public class ReplacerMojoTest {
 		mojo.execute();
 		
 		assertSame(FILE, mojo.getFile());
-		verify(processor).replace(replacements, REGEX, FILE, OUTPUT_FILE, REGEX_PATTERN_FLAGS, NO_ENCODING_SET);
-		verify(summaryBuilder).add(FILE, OUTPUT_FILE, NO_ENCODING_SET, log);
+		verify(processor).prepare(replacements, REGEX, REGEX_PATTERN_FLAGS, ReplacementEngine.SEQUENTIAL);
+		verify(processor).replace(plan, FILE, OUTPUT_FILE, NO_ENCODING_SET);
+		verify(summaryBuilder).add(FILE, OUTPUT_FILE, NO_ENCODING_SET, true, log);
 		verify(summaryBuilder).print(log);
 	}
 	
@@ -190,9 +246,9 @@ public class ReplacerMojoTest {
 		mojo.setBasedir(BASE_DIR);
 		mojo.execute();
 
-		verify(processor).replace(replacements, REGEX, BASE_DIR + File.separator + FILE, 
-				OUTPUT_FILE, REGEX_PATTERN_FLAGS, NO_ENCODING_SET);
-		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET, log);
+		verify(processor).prepare(replacements, REGEX, REGEX_PATTERN_FLAGS, ReplacementEngine.SEQUENTIAL);
+		verify(processor).replace(plan, BASE_DIR + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET);
+		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET, true, log);
 		verify(summaryBuilder, never()).print(log);
 	}
 
@@ -200,7 +256,7 @@ public class ReplacerMojoTest {
 	public void shouldReplaceContentsInIncludeAndExcludes() throws Exception {
 		List<String> includes = asList("include");
 		List<String> excludes = asList("exclude");
-		when(fileSelector.listIncludes(BASE_DIR, includes, excludes)).thenReturn(asList(FILE));
+		selectIncludes(BASE_DIR, includes, excludes, FILE);
 
 		mojo.setIncludes(includes);
 		mojo.setExcludes(excludes);
@@ -211,15 +267,33 @@ public class ReplacerMojoTest {
 
 		assertSame(mojo.getIncludes(), includes);
 		assertSame(mojo.getExcludes(), excludes);
-		verify(processor).replace(argThat(replacementOf(null, VALUE, false, TOKEN)), eq(REGEX), eq(BASE_DIR  + File.separator + FILE),
-			eq(OUTPUT_FILE), anyInt(), eq(NO_ENCODING_SET));
+		verify(processor).prepare(argThat(replacementOf(null, VALUE, false, TOKEN)), eq(REGEX), anyInt(), eq(ReplacementEngine.SEQUENTIAL));
+		verify(processor).replace(eq(plan), eq(BASE_DIR  + File.separator + FILE), eq(OUTPUT_FILE), eq(NO_ENCODING_SET));
+	}
+
+	@Test
+	public void shouldLimitIncludedFilesToMaxReplacements() throws Exception {
+		List<String> includes = asList("include");
+		selectIncludes(BASE_DIR, includes, null, FILE, "other file");
+
+		mojo.setIncludes(includes);
+		mojo.setExcludes(null);
+		mojo.setToken(TOKEN);
+		mojo.setValue(VALUE);
+		mojo.setBasedir(BASE_DIR);
+		mojo.setMaxReplacements(1);
+		mojo.execute();
+
+		verify(processor).replace(eq(plan), eq(BASE_DIR + File.separator + FILE), eq(OUTPUT_FILE), eq(NO_ENCODING_SET));
+		verify(processor, times(1)).replace(isA(ReplacementPlan.class), anyString(), anyString(), anyString());
+		verify(log).info("Max replacements has been exceeded. Limiting to the first: 1");
 	}
 
 	@Test
 	public void shouldReplaceContentsInFilesToIncludeAndExclude() throws Exception {
 		String includes = "include1, include2";
 		String excludes = "exclude1, exclude2";
-		when(fileSelector.listIncludes(BASE_DIR, asList("include1", "include2"), asList("exclude1", "exclude2"))).thenReturn(asList(FILE));
+		selectIncludes(BASE_DIR, asList("include1", "include2"), asList("exclude1", "exclude2"), FILE);
 
 		mojo.setFilesToInclude(includes);
 		mojo.setFilesToExclude(excludes);
@@ -230,8 +304,8 @@ public class ReplacerMojoTest {
 
 		assertSame(mojo.getFilesToInclude(), includes);
 		assertSame(mojo.getFilesToExclude(), excludes);
-		verify(processor).replace(argThat(replacementOf(null, VALUE, false, TOKEN)), eq(REGEX), eq(BASE_DIR + File.separator + FILE),
-			eq(OUTPUT_FILE), anyInt(), eq(NO_ENCODING_SET));
+		verify(processor).prepare(argThat(replacementOf(null, VALUE, false, TOKEN)), eq(REGEX), anyInt(), eq(ReplacementEngine.SEQUENTIAL));
+		verify(processor).replace(eq(plan), eq(BASE_DIR + File.separator + FILE), eq(OUTPUT_FILE), eq(NO_ENCODING_SET));
 	}
 
 	@Test
@@ -250,8 +324,8 @@ public class ReplacerMojoTest {
 		mojo.setBasedir(BASE_DIR);
 		mojo.execute();
 
-		verify(processor).replace(replacements, 
-				REGEX, BASE_DIR  + File.separator + FILE, OUTPUT_FILE, REGEX_PATTERN_FLAGS, NO_ENCODING_SET);
+		verify(processor).prepare(replacements, REGEX, REGEX_PATTERN_FLAGS, ReplacementEngine.SEQUENTIAL);
+		verify(processor).replace(plan, BASE_DIR  + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET);
 	}
 
 	@Test
@@ -272,8 +346,8 @@ public class ReplacerMojoTest {
 		mojo.setEncoding(ENCODING);
 		mojo.execute();
 
-		verify(processor).replace(replacements, 
-				REGEX, BASE_DIR  + File.separator + FILE, OUTPUT_FILE, REGEX_PATTERN_FLAGS, ENCODING);
+		verify(processor).prepare(replacements, REGEX, REGEX_PATTERN_FLAGS, ReplacementEngine.SEQUENTIAL);
+		verify(processor).replace(plan, BASE_DIR  + File.separator + FILE, OUTPUT_FILE, ENCODING);
 	}
 
 	@Test
@@ -290,9 +364,9 @@ public class ReplacerMojoTest {
 		mojo.execute();
 
 		assertThat(mojo.getDelimiters(), equalTo(delimiters));
-		verify(processor).replace(argThat(replacementOf(null, VALUE, false, "@" + TOKEN + "@", "${" + TOKEN + "}")), 
-				eq(REGEX), eq(BASE_DIR  + File.separator + FILE), eq(OUTPUT_FILE), eq(REGEX_PATTERN_FLAGS), eq(NO_ENCODING_SET));
-		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET, log);
+		verify(processor).prepare(argThat(replacementOf(null, VALUE, false, "@" + TOKEN + "@", "${" + TOKEN + "}")), eq(REGEX), eq(REGEX_PATTERN_FLAGS), eq(ReplacementEngine.SEQUENTIAL));
+		verify(processor).replace(eq(plan), eq(BASE_DIR  + File.separator + FILE), eq(OUTPUT_FILE), eq(NO_ENCODING_SET));
+		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET, true, log);
 		verify(summaryBuilder).print(log);
 	}
 	
@@ -308,9 +382,9 @@ public class ReplacerMojoTest {
 		mojo.setXpath(XPATH);
 		mojo.execute();
 
-		verify(processor).replace(argThat(replacementOf(XPATH, VALUE, false, TOKEN)), eq(REGEX), eq(BASE_DIR  + File.separator + FILE),
-			eq(OUTPUT_FILE), eq(REGEX_PATTERN_FLAGS), eq(NO_ENCODING_SET));
-		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET, log);
+		verify(processor).prepare(argThat(replacementOf(XPATH, VALUE, false, TOKEN)), eq(REGEX), eq(REGEX_PATTERN_FLAGS), eq(ReplacementEngine.SEQUENTIAL));
+		verify(processor).replace(eq(plan), eq(BASE_DIR  + File.separator + FILE), eq(OUTPUT_FILE), eq(NO_ENCODING_SET));
+		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET, true, log);
 		verify(summaryBuilder).print(log);
 	}
 	
@@ -327,9 +401,9 @@ public class ReplacerMojoTest {
 		mojo.execute();
 
 		assertTrue(mojo.isUnescape());
-		verify(processor).replace(argThat(replacementOf(null, VALUE, true, TOKEN)), eq(REGEX), eq(BASE_DIR  + File.separator + FILE),
-			eq(OUTPUT_FILE), eq(REGEX_PATTERN_FLAGS), eq(NO_ENCODING_SET));
-		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET, log);
+		verify(processor).prepare(argThat(replacementOf(null, VALUE, true, TOKEN)), eq(REGEX), eq(REGEX_PATTERN_FLAGS), eq(ReplacementEngine.SEQUENTIAL));
+		verify(processor).replace(eq(plan), eq(BASE_DIR  + File.separator + FILE), eq(OUTPUT_FILE), eq(NO_ENCODING_SET));
+		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET, true, log);
 		verify(summaryBuilder).print(log);
 	}
 
@@ -348,11 +422,11 @@ public class ReplacerMojoTest {
 		mojo.setEncoding(ENCODING);
 		mojo.execute();
 
-		verify(processor).replace(argThat(replacementOf(null, VALUE, false, TOKEN)), eq(REGEX), eq(BASE_DIR  + File.separator + FILE),
-				eq(OUTPUT_FILE), eq(REGEX_PATTERN_FLAGS), eq(ENCODING));
+		verify(processor).prepare(argThat(replacementOf(null, VALUE, false, TOKEN)), eq(REGEX), eq(REGEX_PATTERN_FLAGS), eq(ReplacementEngine.SEQUENTIAL));
+		verify(processor).replace(eq(plan), eq(BASE_DIR  + File.separator + FILE), eq(OUTPUT_FILE), eq(ENCODING));
 		verify(fileUtils).readFile(TOKEN_FILE, ENCODING);
 		verify(fileUtils).readFile(VALUE_FILE, ENCODING);
-		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, ENCODING, log);
+		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, ENCODING, true, log);
 		verify(summaryBuilder).print(log);
 	}
 
@@ -368,9 +442,9 @@ public class ReplacerMojoTest {
 		mojo.setBasedir(BASE_DIR);
 		mojo.execute();
 
-		verify(processor).replace(replacements, REGEX, BASE_DIR  + File.separator + FILE, OUTPUT_FILE,
-			REGEX_PATTERN_FLAGS, NO_ENCODING_SET);
-		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET, log);
+		verify(processor).prepare(replacements, REGEX, REGEX_PATTERN_FLAGS, ReplacementEngine.SEQUENTIAL);
+		verify(processor).replace(plan, BASE_DIR  + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET);
+		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, NO_ENCODING_SET, true, log);
 		verify(summaryBuilder).print(log);
 	}
 	
@@ -388,8 +462,9 @@ public class ReplacerMojoTest {
 		mojo.execute();
 
 		assertThat(mojo.getVariableTokenValueMap(), equalTo(TOKEN_VALUE_MAP));
-		verify(processor).replace(replacements, true, BASE_DIR  + File.separator + FILE, OUTPUT_FILE, 0, ENCODING);
-		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, ENCODING, log);
+		verify(processor).prepare(replacements, true, 0, ReplacementEngine.SEQUENTIAL);
+		verify(processor).replace(plan, BASE_DIR  + File.separator + FILE, OUTPUT_FILE, ENCODING);
+		verify(summaryBuilder).add(BASE_DIR + File.separator + FILE, OUTPUT_FILE, ENCODING, true, log);
 		verify(summaryBuilder).print(log);
 	}
 
@@ -452,6 +527,19 @@ public class ReplacerMojoTest {
 		mojo.execute();
 	}
 	
+	private void selectIncludes(String basedir, List<String> includes, List<String> excludes, final String... files) {
+		doAnswer(new Answer<Void>() {
+			public Void answer(InvocationOnMock invocation) {
+				DirectoryWalker.Listener listener = (DirectoryWalker.Listener) invocation.getArguments()[4];
+				for (String file : files) {
+					listener.found(file);
+				}
+				return null;
+			}
+		}).when(fileSelector).selectIncludes(eq(basedir), eq(includes), eq(excludes), anyInt(),
+				isA(DirectoryWalker.Listener.class));
+	}
+
 	private BaseMatcher<List<Replacement>> replacementOf(final String xpath, final String value, 
 			final boolean unescape, final String... tokens) {
 		return new BaseMatcher<List<Replacement>>() {
@@ -0,0 +1,70 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class RequiredLiteralTest {
+	private static final int NO_FLAGS = -1;
+
+	@Test
+	public void shouldFindWholeLiteralToken() {
+		assertThat(RequiredLiteral.find("@VERSION@", NO_FLAGS), equalTo("@VERSION@"));
+		assertThat(RequiredLiteral.find("\\$\\{db\\.url\\}", NO_FLAGS), equalTo("${db.url}"));
+		assertThat(RequiredLiteral.find("\\Q${db.url}\\E", NO_FLAGS), equalTo("${db.url}"));
+		assertThat(RequiredLiteral.find("a\\tb", NO_FLAGS), equalTo("a\tb"));
+	}
+
+	@Test
+	public void shouldFindLongestRunBetweenVariableParts() {
+		assertThat(RequiredLiteral.find("version-(\\d+)\\.snapshot", NO_FLAGS), equalTo(".snapshot"));
+		assertThat(RequiredLiteral.find("^<name>[^<]*</name>$", NO_FLAGS), equalTo("</name>"));
+		assertThat(RequiredLiteral.find("\\bfoo\\b", NO_FLAGS), equalTo("foo"));
+		assertThat(RequiredLiteral.find("(?s)begin.*end", NO_FLAGS), equalTo("begin"));
+	}
+
+	@Test
+	public void shouldDropCharactersMadeOptionalByQuantifiers() {
+		assertThat(RequiredLiteral.find("colou?r", NO_FLAGS), equalTo("colo"));
+		assertThat(RequiredLiteral.find("abcd*", NO_FLAGS), equalTo("abc"));
+		assertThat(RequiredLiteral.find("abcd{0,2}", NO_FLAGS), equalTo("abc"));
+		assertThat(RequiredLiteral.find("ab+cd", NO_FLAGS), equalTo("ab"));
+		assertThat(RequiredLiteral.find("\\Qabcd\\E?", NO_FLAGS), equalTo("abc"));
+		assertThat(RequiredLiteral.find("ab\uD83D\uDE00?", NO_FLAGS), equalTo("ab"));
+		assertThat(RequiredLiteral.find("\uD83D\uDE00*x", NO_FLAGS), equalTo("x"));
+	}
+
+	@Test
+	public void shouldNotFindLiteralWhenAnyPartIsUncertain() {
+		assertThat(RequiredLiteral.find("foo|bar", NO_FLAGS), nullValue());
+		assertThat(RequiredLiteral.find("(?i)foo", NO_FLAGS), nullValue());
+		assertThat(RequiredLiteral.find("foo", Pattern.CASE_INSENSITIVE), nullValue());
+		assertThat(RequiredLiteral.find("foo", Pattern.COMMENTS), nullValue());
+		assertThat(RequiredLiteral.find("foo", Pattern.LITERAL | Pattern.CASE_INSENSITIVE), nullValue());
+		assertThat(RequiredLiteral.find("e\u0301", Pattern.LITERAL | Pattern.CANON_EQ), nullValue());
+		assertThat(RequiredLiteral.find("\\d+[a-z]*", NO_FLAGS), nullValue());
+		assertThat(RequiredLiteral.find("(foo)", NO_FLAGS), nullValue());
+	}
+
+	@Test
+	public void shouldUseWholeTokenForLiteralFlag() {
+		assertThat(RequiredLiteral.find("a|b", Pattern.LITERAL), equalTo("a|b"));
+	}
+
+	@Test
+	public void shouldAlwaysBeContainedInMatches() {
+		String[] patterns = {"version-(\\d+)\\.snapshot", "colou?r", "ab+c", "x[yz]{2,}w", "\\Qa.b\\E+c", "(?m)^key=\\w*$"};
+		String content = "version-12.snapshot color colour abbbc xyzzyw a.bbbc\nkey=value\n";
+		for (String regex : patterns) {
+			Matcher matcher = Pattern.compile(regex).matcher(content);
+			while (matcher.find()) {
+				assertThat(regex, matcher.group().contains(RequiredLiteral.find(regex, NO_FLAGS)), equalTo(true));
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+public class ScanLimitTest {
+	private static final int NO_FLAGS = -1;
+	private static final String ENCODING = "UTF-8";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void shouldParseLinesAndBytes() {
+		assertThat(ScanLimit.parse("20 lines").toString(), equalTo("20 lines"));
+		assertThat(ScanLimit.parse(" 1 LINE ").toString(), equalTo("1 lines"));
+		assertThat(ScanLimit.parse("4096bytes").toString(), equalTo("4096 bytes"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectLimitsWithoutUnit() {
+		ScanLimit.parse("20");
+	}
+
+	@Test
+	public void shouldReadPrefixOfLines() throws Exception {
+		assertThat(prefix("2 lines", "a\r\nb\nc\n"), equalTo("a\r\nb\n"));
+		assertThat(prefix("5 lines", "a\nb"), equalTo("a\nb"));
+		assertThat(prefix("0 lines", "a\nb"), equalTo(""));
+	}
+
+	@Test
+	public void shouldNotSplitUtf8CharactersInPrefixOfBytes() throws Exception {
+		assertThat(prefix("3 bytes", "abcd"), equalTo("abc"));
+		assertThat(prefix("2 bytes", "a€b"), equalTo("a"));
+		assertThat(prefix("4 bytes", "a€b"), equalTo("a€"));
+		assertThat(prefix("10 bytes", "a€b"), equalTo("a€b"));
+	}
+
+	@Test
+	public void shouldReplaceOnlyWithinLimit() throws Exception {
+		File input = file("@A@ é\n@A@\n@A@\n");
+		File output = new File(folder.getRoot(), "out/output");
+
+		assertTrue(replace("2 lines", input, output, ENCODING));
+		assertThat(read(output, ENCODING), equalTo("one é\none\n@A@\n"));
+	}
+
+	@Test
+	public void shouldReplaceOnlyWithinLimitInPlace() throws Exception {
+		File file = file("@A@ €@A@");
+
+		assertTrue(replace("6 bytes", file, file, ENCODING));
+		assertThat(read(file, ENCODING), equalTo("one €@A@"));
+		assertFalse(replace("6 bytes", file, file, ENCODING));
+	}
+
+	@Test
+	public void shouldCountLinesOfDecodedContentInOtherEncodings() throws Exception {
+		File input = folder.newFile();
+		org.apache.commons.io.FileUtils.writeStringToFile(input, "@A@\n@A@\n", "UTF-16");
+		File output = new File(folder.getRoot(), "utf-16");
+
+		assertTrue(replace("1 line", input, output, "UTF-16"));
+		assertThat(read(output, "UTF-16"), equalTo("one\n@A@\n"));
+	}
+
+	@Test
+	public void shouldOnlyReadPrefixOfFilesWithoutTokens() throws Exception {
+		File input = file(StringUtils.repeat("x\n", 1024 * 1024));
+		final AtomicLong read = new AtomicLong();
+		FileUtils fileUtils = new FileUtils() {
+			@Override
+			public InputStream openInput(String file) throws IOException {
+				return new CountingInputStream(super.openInput(file)) {
+					@Override
+					protected void afterRead(int n) {
+						super.afterRead(n);
+						read.addAndGet(Math.max(n, 0));
+					}
+				};
+			}
+		};
+
+		assertFalse(new ReplacementProcessor(fileUtils, new ReplacerFactory()).replace(plan("1 line"), input.getPath(),
+				new File(folder.getRoot(), "output").getPath(), ENCODING));
+		assertTrue(read.get() < 64 * 1024);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotLimitXPathReplacements() {
+		Replacement replacement = new Replacement();
+		replacement.setToken("@A@");
+		replacement.setXpath("/a");
+		new ReplacementPlan(asList(new CompiledReplacement(replacement, new TokenReplacer(), false, NO_FLAGS)),
+				false, NO_FLAGS).withScanLimit(ScanLimit.parse("1 line"));
+	}
+
+	private String prefix(String limit, String content) throws Exception {
+		byte[] prefix = ScanLimit.parse(limit).readPrefix(new ByteArrayInputStream(content.getBytes(ENCODING)), ENCODING);
+		return new String(prefix, ENCODING);
+	}
+
+	private boolean replace(String limit, File input, File output, String encoding) throws Exception {
+		return new ReplacementProcessor(new FileUtils(), new ReplacerFactory())
+				.replace(plan(limit), input.getPath(), output.getPath(), encoding);
+	}
+
+	private ReplacementPlan plan(String limit) {
+		Replacement replacement = new Replacement();
+		replacement.setToken("@A@");
+		replacement.setValue("one");
+		return new ReplacementPlan(asList(new CompiledReplacement(replacement, new TokenReplacer(),
+				false, NO_FLAGS)), false, NO_FLAGS).withScanLimit(ScanLimit.parse(limit));
+	}
+
+	private File file(String content) throws Exception {
+		File file = folder.newFile();
+		org.apache.commons.io.FileUtils.writeStringToFile(file, content, ENCODING);
+		return file;
+	}
+
+	private String read(File file, String encoding) throws Exception {
+		return org.apache.commons.io.FileUtils.readFileToString(file, encoding);
+	}
+}
@@ -0,0 +1,102 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.channels.FileChannel;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+public class SpliceScannerTest {
+	private static final int NO_FLAGS = -1;
+	private static final String ENCODING = "UTF-8";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void shouldFindTokensAcrossChunks() throws Exception {
+		ReplacementPlan plan = plan(ReplacementEngine.SEQUENTIAL, compile("@TOKEN@", "value"));
+		String content = "@TOKEN@ a@TOKEN@@TOKEN@ bc @TOKE @TOKEN@";
+
+		for (int chunkSize=1; chunkSize <= 12; chunkSize++) {
+			assertThat(splice(plan, content, chunkSize), equalTo(plan.apply(content)));
+		}
+	}
+
+	@Test
+	public void shouldFindLeftmostLongestTokensAcrossChunks() throws Exception {
+		ReplacementPlan plan = plan(ReplacementEngine.SINGLE_PASS, compile("@A", "a"), compile("@AB@", "ab"),
+				compile("B@C", "bc"));
+		String content = "x @AB@C @AB@ @A y @AB B@C@A";
+
+		for (int chunkSize=1; chunkSize <= 8; chunkSize++) {
+			assertThat(splice(plan, content, chunkSize), equalTo(plan.apply(content)));
+		}
+	}
+
+	@Test
+	public void shouldAcceptUtf8SequencesSplitAcrossChunks() throws Exception {
+		ReplacementPlan plan = plan(ReplacementEngine.SEQUENTIAL, compile("@A@", "one"));
+
+		for (int chunkSize=1; chunkSize <= 5; chunkSize++) {
+			assertThat(splice(plan, "é@A@€😀@A@ é", chunkSize), equalTo("éone€😀one é"));
+		}
+	}
+
+	@Test
+	public void shouldNotSpliceBytesWhichDoNotRoundTrip() throws Exception {
+		SpliceScanner scanner = new SpliceScanner(plan(ReplacementEngine.SEQUENTIAL, compile("@A@", "one")), 2);
+
+		assertNull(scanner.scan(new ByteArrayInputStream(new byte[] {'@', 'A', '@', (byte) 0xFF, 'x'}), ENCODING));
+		assertNull(scanner.scan(new ByteArrayInputStream(new byte[] {'@', 'A', '@', (byte) 0xE2, (byte) 0x82}), ENCODING));
+	}
+
+	@Test
+	public void shouldStopAtTheMaximumMatchesAcrossChunks() throws Exception {
+		ReplacementPlan plan = plan(ReplacementEngine.SEQUENTIAL, compile("@A@", "1")).withMaxMatches(2);
+
+		assertThat(splice(plan, "@A@ @A@ @A@", 4), equalTo("1 1 @A@"));
+	}
+
+	private String splice(ReplacementPlan plan, String content, int chunkSize) throws Exception {
+		File input = folder.newFile();
+		org.apache.commons.io.FileUtils.writeStringToFile(input, content, ENCODING);
+		File output = new File(folder.getRoot(), input.getName() + ".out");
+		SpliceWriter splices = new SpliceScanner(plan, chunkSize)
+				.scan(new ByteArrayInputStream(content.getBytes(ENCODING)), ENCODING);
+
+		FileUtils fileUtils = new FileUtils();
+		FileChannel in = fileUtils.openInputChannel(input.getPath());
+		try {
+			FileChannel out = fileUtils.openOutputChannel(output.getPath());
+			try {
+				splices.writeTo(in, in.size(), out, ENCODING);
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+		return org.apache.commons.io.FileUtils.readFileToString(output, ENCODING);
+	}
+
+	private ReplacementPlan plan(ReplacementEngine engine, CompiledReplacement... replacements) {
+		return new ReplacementPlan(asList(replacements), false, NO_FLAGS, engine);
+	}
+
+	private CompiledReplacement compile(String token, String value) {
+		Replacement replacement = new Replacement();
+		replacement.setToken(token);
+		replacement.setValue(value);
+		return new CompiledReplacement(replacement, new TokenReplacer(), false, NO_FLAGS);
+	}
+}
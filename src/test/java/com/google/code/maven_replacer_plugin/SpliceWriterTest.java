@@ -0,0 +1,142 @@
+package com.google.code.maven_replacer_plugin;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+public class SpliceWriterTest {
+	private static final int NO_FLAGS = -1;
+	private static final String ENCODING = "UTF-8";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void shouldSpliceSingleTokenIntoUnchangedBytes() throws Exception {
+		ReplacementPlan plan = plan(ReplacementEngine.SEQUENTIAL, compile("@A@", "value"));
+		String padding = StringUtils.repeat("é", 100000);
+
+		assertTrue(plan.isSpliceable());
+		assertThat(replace(plan, "@A@" + padding + "@A@ € @A@"), equalTo("value" + padding + "value € value"));
+	}
+
+	@Test
+	public void shouldSpliceManyTokensFoundInOneScan() throws Exception {
+		ReplacementPlan plan = plan(ReplacementEngine.SINGLE_PASS, compile("@A", "a"), compile("@AB", "ab"));
+
+		assertTrue(plan.isSpliceable());
+		assertThat(replace(plan, "x @AB @A y"), equalTo("x ab a y"));
+	}
+
+	@Test
+	public void shouldOnlySpliceSingleScans() {
+		assertFalse(plan(ReplacementEngine.SEQUENTIAL, compile("@A@", "1"), compile("@B@", "2")).isSpliceable());
+		assertFalse(plan(ReplacementEngine.SEQUENTIAL, compile("@A@", "é")).isSpliceable());
+	}
+
+	@Test
+	public void shouldSpliceNoMoreThanTheMaximumMatches() throws Exception {
+		ReplacementPlan plan = plan(ReplacementEngine.SEQUENTIAL, compile("@A@", "1")).withMaxMatches(2);
+
+		assertThat(replace(plan, "@A@ @A@ @A@"), equalTo("1 1 @A@"));
+	}
+
+	@Test
+	public void shouldRewriteMalformedFilesAsTheDecodedContentWouldBe() throws Exception {
+		File input = folder.newFile("malformed");
+		org.apache.commons.io.FileUtils.writeByteArrayToFile(input, new byte[] {'@', 'A', '@', (byte) 0xFF});
+		File output = new File(folder.getRoot(), "malformed-output");
+
+		new ReplacementProcessor(new FileUtils(), new ReplacerFactory())
+				.replace(plan(ReplacementEngine.SEQUENTIAL, compile("@A@", "one")), input.getPath(), output.getPath(), ENCODING);
+		assertThat(org.apache.commons.io.FileUtils.readFileToString(output, ENCODING), equalTo("one�"));
+	}
+
+	@Test
+	public void shouldPatchSameLengthValuesInPlace() throws Exception {
+		ReplacementPlan plan = plan(ReplacementEngine.SINGLE_PASS, compile("@VERSION@", "1.2.3-abc"),
+				compile("@BUILD@", "0000042"));
+		String padding = StringUtils.repeat("é", 100000);
+
+		assertTrue(plan.isSameLength());
+		assertThat(replaceInPlace(plan, "v@VERSION@ b@BUILD@" + padding + "@BUILD@"),
+				equalTo("v1.2.3-abc b0000042" + padding + "0000042"));
+	}
+
+	@Test
+	public void shouldOnlyPatchValuesOfTheSameLength() throws Exception {
+		ReplacementPlan plan = plan(ReplacementEngine.SEQUENTIAL, compile("@A@", "1"));
+
+		assertFalse(plan.isSameLength());
+		assertThat(replaceInPlace(plan, "x @A@ y"), equalTo("x 1 y"));
+	}
+
+	@Test
+	public void shouldRewriteMalformedFilesInPlace() throws Exception {
+		File file = folder.newFile("malformed-in-place");
+		org.apache.commons.io.FileUtils.writeByteArrayToFile(file, new byte[] {'@', 'A', '@', (byte) 0xFF});
+
+		new ReplacementProcessor(new FileUtils(), new ReplacerFactory())
+				.replace(plan(ReplacementEngine.SEQUENTIAL, compile("@A@", "one")), file.getPath(), file.getPath(), ENCODING);
+		assertThat(org.apache.commons.io.FileUtils.readFileToString(file, ENCODING), equalTo("one�"));
+	}
+
+	@Test
+	public void shouldPatchValuesIntoTheFile() throws Exception {
+		File file = folder.newFile("patched");
+		org.apache.commons.io.FileUtils.writeStringToFile(file, "a @A@ b @B@", ENCODING);
+		SpliceWriter splices = new SpliceWriter();
+		splices.splice(2, 5, "one");
+		splices.splice(8, 11, "two");
+
+		FileChannel channel = new FileUtils().openReadWriteChannel(file.getPath());
+		try {
+			splices.patch(channel, ENCODING);
+		} finally {
+			channel.close();
+		}
+		assertThat(org.apache.commons.io.FileUtils.readFileToString(file, ENCODING), equalTo("a one b two"));
+	}
+
+	private String replaceInPlace(ReplacementPlan plan, String content) throws Exception {
+		File file = folder.newFile();
+		org.apache.commons.io.FileUtils.writeStringToFile(file, content, ENCODING);
+
+		assertTrue(new ReplacementProcessor(new FileUtils(), new ReplacerFactory())
+				.replace(plan, file.getPath(), file.getPath(), ENCODING));
+		return org.apache.commons.io.FileUtils.readFileToString(file, ENCODING);
+	}
+
+	private String replace(ReplacementPlan plan, String content) throws Exception {
+		File input = folder.newFile();
+		org.apache.commons.io.FileUtils.writeStringToFile(input, content, ENCODING);
+		File output = new File(folder.getRoot(), input.getName() + ".out");
+
+		new ReplacementProcessor(new FileUtils(), new ReplacerFactory())
+				.replace(plan, input.getPath(), output.getPath(), ENCODING);
+		return org.apache.commons.io.FileUtils.readFileToString(output, ENCODING);
+	}
+
+	private ReplacementPlan plan(ReplacementEngine engine, CompiledReplacement... replacements) {
+		return new ReplacementPlan(asList(replacements), false, NO_FLAGS, engine);
+	}
+
+	private CompiledReplacement compile(String token, String value) {
+		Replacement replacement = new Replacement();
+		replacement.setToken(token);
+		replacement.setValue(value);
+		return new CompiledReplacement(replacement, new TokenReplacer(), false, NO_FLAGS);
+	}
+}
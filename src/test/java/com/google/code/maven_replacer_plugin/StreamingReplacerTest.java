@@ -0,0 +1,120 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamingReplacerTest {
+	private static final int NO_FLAGS = -1;
+	private static final int MAX_MATCH_LENGTH = 64;
+
+	private List<CompiledReplacement> replacements;
+	private String content;
+
+	@Before
+	public void setUp() {
+		replacements = new ArrayList<CompiledReplacement>();
+
+		StringBuilder built = new StringBuilder();
+		for (int i=0; i < 20000; i++) {
+			built.append("line ").append(i).append(" @name@ version-").append(i % 97).append(" @na\n");
+		}
+		content = built.toString();
+	}
+
+	@Test
+	public void shouldStreamLiteralTokensAcrossWindows() throws Exception {
+		add("@name@", "value", false);
+		add("@na", "short", false);
+		add("value", "twice", false);
+
+		assertStreamedAsWhole(new ReplacementPlan(replacements, false, NO_FLAGS));
+	}
+
+	@Test
+	public void shouldStreamLiteralTokensInSinglePass() throws Exception {
+		add("@na", "short", false);
+		add("@name@", "value", false);
+
+		assertStreamedAsWhole(new ReplacementPlan(replacements, false, NO_FLAGS, ReplacementEngine.SINGLE_PASS));
+	}
+
+	@Test
+	public void shouldStreamRegexTokensAcrossWindows() throws Exception {
+		add("version-(\\d+)", "v$1", true);
+		add("(?<=line )\\d+\\b", "#", true);
+		add("^line", "LINE", true);
+
+		assertStreamedAsWhole(new ReplacementPlan(replacements, true, NO_FLAGS));
+	}
+
+	@Test
+	public void shouldStreamFusedRegexTokens() throws Exception {
+		add("@name@", "VALUE", true);
+		add("version-(\\d+)", "v$1", true);
+
+		assertStreamedAsWhole(new ReplacementPlan(replacements, true, NO_FLAGS, ReplacementEngine.SINGLE_PASS));
+	}
+
+	@Test
+	public void shouldStreamLimitedMatchesOfOneToken() throws Exception {
+		add("@name@", "value", false);
+
+		assertStreamedAsWhole(new ReplacementPlan(replacements, false, NO_FLAGS).withMaxMatches(3));
+		assertStreamedAsWhole(new ReplacementPlan(replacements, false, NO_FLAGS).withMaxMatches(15000));
+	}
+
+	@Test
+	public void shouldStreamLimitedMatchesOfFusedRegexTokens() throws Exception {
+		add("@name@", "VALUE", true);
+		add("version-(\\d+)", "v$1", true);
+
+		assertStreamedAsWhole(new ReplacementPlan(replacements, true, NO_FLAGS, ReplacementEngine.SINGLE_PASS)
+				.withMaxMatches(5001));
+	}
+
+	@Test
+	public void shouldCopyContentAsItIsWhenNoMatchesAreAllowed() throws Exception {
+		add("@name@", "value", false);
+
+		assertStreamedAsWhole(new ReplacementPlan(replacements, false, NO_FLAGS).withMaxMatches(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotStreamLimitedMatchesOfSeveralSteps() {
+		add("@name@", "value", false);
+		add("version-\\d+", "v", true);
+
+		new ReplacementPlan(replacements, true, NO_FLAGS).withMaxMatches(1).withStreaming(1, MAX_MATCH_LENGTH);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotStreamXPathReplacements() {
+		Replacement replacement = new Replacement();
+		replacement.setToken("token");
+		replacement.setXpath("/root");
+		replacements.add(new CompiledReplacement(replacement, new TokenReplacer(), false, NO_FLAGS));
+
+		new StreamingReplacer(new ReplacementPlan(replacements, false, NO_FLAGS), MAX_MATCH_LENGTH);
+	}
+
+	private void assertStreamedAsWhole(ReplacementPlan plan) throws Exception {
+		StringWriter streamed = new StringWriter();
+		new StreamingReplacer(plan, MAX_MATCH_LENGTH).replace(new StringReader(content), streamed);
+		assertThat(streamed.toString(), equalTo(plan.apply(content)));
+	}
+
+	private void add(String token, String value, boolean regex) {
+		Replacement replacement = new Replacement();
+		replacement.setToken(token);
+		replacement.setValue(value);
+		replacements.add(new CompiledReplacement(replacement, new TokenReplacer(), regex, NO_FLAGS));
+	}
+}
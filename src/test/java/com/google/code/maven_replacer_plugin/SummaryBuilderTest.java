@@ -19,5 +19,20 @@ public class SummaryBuilderTest {
 		builder.print(log);
 		verify(log, times(2)).debug("Replacement run on INPUT and writing to OUTPUT with encoding ENCODING");
 		verify(log).info("Replacement run on 2 files.");
+		verify(log).info("Modified 2 files.");
+	}
+
+	@Test
+	public void shouldCountModifiedFilesSeparately() {
+		Log log = mock(Log.class);
+		
+		SummaryBuilder builder = new SummaryBuilder();
+		builder.add("INPUT", "OUTPUT", "ENCODING", true, log);
+		builder.add("UNCHANGED", "OUTPUT", null, false, log);
+		
+		builder.print(log);
+		verify(log).debug("No tokens replaced in UNCHANGED");
+		verify(log).info("Replacement run on 2 files.");
+		verify(log).info("Modified 1 file.");
 	}
 }
@@ -8,6 +8,7 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
+import java.io.StringReader;
 import java.util.List;
 
 import org.hamcrest.BaseMatcher;
@@ -40,7 +41,7 @@ public class TokenValueMapFactoryTest {
 	
 	@Test
 	public void shouldReturnReplacementsFromFile() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("token=value");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("token=value"));
 		
 		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_DISABLED, false, ENCODING);
 		assertThat(replacements, notNullValue());
@@ -51,7 +52,7 @@ public class TokenValueMapFactoryTest {
 
 	@Test
 	public void shouldReturnReplacementsFromFileAndIgnoreBlankLinesAndComments() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("\n  \ntoken1=value1\ntoken2 = value2\n#some comment\n");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("\n  \ntoken1=value1\ntoken2 = value2\n#some comment\n"));
 		
 		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_ENABLED, false, ENCODING);
 		assertThat(replacements, notNullValue());
@@ -64,7 +65,7 @@ public class TokenValueMapFactoryTest {
 	
 	@Test
 	public void shouldReturnReplacementsFromFileAndIgnoreBlankLinesUsingCommentLinesIfCommentsDisabled() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("\n  \ntoken1=value1\ntoken2=value2\n#some=#comment\n");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("\n  \ntoken1=value1\ntoken2=value2\n#some=#comment\n"));
 		
 		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_DISABLED, false, ENCODING);
 		assertThat(replacements, notNullValue());
@@ -79,7 +80,7 @@ public class TokenValueMapFactoryTest {
 	
 	@Test
 	public void shouldIgnoreTokensWithNoSeparatedValue() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("#comment\ntoken2");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("#comment\ntoken2"));
 		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_DISABLED, false, ENCODING);
 		assertThat(replacements, notNullValue());
 		assertTrue(replacements.isEmpty());
@@ -87,7 +88,7 @@ public class TokenValueMapFactoryTest {
 	
 	@Test
 	public void shouldReturnRegexReplacementsFromFile() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("\\=tok\\=en1=val\\=ue1\nto$ke..n2=value2");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("\\=tok\\=en1=val\\=ue1\nto$ke..n2=value2"));
 		
 		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_ENABLED, false, ENCODING);
 		assertThat(replacements, notNullValue());
@@ -100,7 +101,7 @@ public class TokenValueMapFactoryTest {
 	
 	@Test
 	public void shouldReturnRegexReplacementsFromFileUnescaping() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("\\\\=tok\\\\=en1=val\\\\=ue1\nto$ke..n2=value2");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("\\\\=tok\\\\=en1=val\\\\=ue1\nto$ke..n2=value2"));
 		
 		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_ENABLED, true, ENCODING);
 		assertThat(replacements, notNullValue());
@@ -113,13 +114,13 @@ public class TokenValueMapFactoryTest {
 	
 	@Test (expected = IllegalArgumentException.class)
 	public void shouldThrowExceptionIfNoTokenForValue() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("=value");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader("=value"));
 		factory.replacementsForFile(FILENAME, COMMENTS_DISABLED, false, ENCODING);
 	}
 	
 	@Test
 	public void shouldSupportEmptyFileAndReturnNoReplacements() throws Exception {
-		when(fileUtils.readFile(FILENAME, ENCODING)).thenReturn("");
+		when(fileUtils.openReader(FILENAME, ENCODING)).thenReturn(new StringReader(""));
 		List<Replacement> replacements = factory.replacementsForFile(FILENAME, COMMENTS_DISABLED, false, ENCODING);
 		assertThat(replacements, notNullValue());
 		assertTrue(replacements.isEmpty());
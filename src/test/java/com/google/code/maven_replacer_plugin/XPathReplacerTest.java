@@ -1,10 +1,22 @@
 package com.google.code.maven_replacer_plugin;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -27,7 +39,7 @@ public class XPathReplacerTest {
 		when(replacement.getXpath()).thenReturn("/root/@id");
 		when(replacement.getToken()).thenReturn("token");
 		when(replacement.getValue()).thenReturn("value");
-		when(tokenReplacer.replace("token", replacement, false, NO_FLAGS)).thenReturn("value");
+		when(tokenReplacer.replace(eq("token"), any(CompiledReplacement.class))).thenReturn("value");
 
 		String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
 			"<root id=\"token\" class=\"test\"><element id=\"ID\">foo</element></root>";
@@ -43,7 +55,7 @@ public class XPathReplacerTest {
 		when(replacement.getXpath()).thenReturn("foo/bar/@baz");
 		when(replacement.getToken()).thenReturn("token");
 		when(replacement.getValue()).thenReturn("value");
-		when(tokenReplacer.replace("token", replacement, false, NO_FLAGS)).thenReturn("value");
+		when(tokenReplacer.replace(eq("token"), any(CompiledReplacement.class))).thenReturn("value");
 
 		String xml = "<foo><bar baz=\"token\"/></foo>";
 		String result = replacer.replace(xml, replacement, false, NO_FLAGS);
@@ -52,17 +64,54 @@ public class XPathReplacerTest {
 
 	@Test
 	public void shouldReplaceNodeStringLocatedByXpath() throws Exception {
+		when(replacement.getToken()).thenReturn("token");
 		when(replacement.getXpath()).thenReturn("//test");
 		when(replacement.getToken()).thenReturn("token");
 		when(replacement.getValue()).thenReturn("value");
 		
-		when(tokenReplacer.replace("<?xml version=\"1.0\" encoding=\"UTF-8\"?><test>token</test>", 
-				replacement, false, NO_FLAGS)).thenReturn("<test>value</test>");
+		when(tokenReplacer.replace(eq("<?xml version=\"1.0\" encoding=\"UTF-8\"?><test>token</test>"), 
+				any(CompiledReplacement.class))).thenReturn("<test>value</test>");
 		
 		String result = replacer.replace("<parent><test>token</test></parent>", replacement, false, NO_FLAGS);
 		assertThat(result, containsString("<parent><test>value</test></parent>"));
 	}
 	
+	@Test
+	public void shouldApplyEveryXPathReplacementToOneParsedDocument() throws Exception {
+		XPathReplacer realReplacer = new XPathReplacer(new TokenReplacer());
+		CompiledReplacement first = compiled(realReplacer, "/root/@id", "token", "value");
+		CompiledReplacement second = compiled(realReplacer, "//element/text()", "foo", "bar");
+		ReplacementPlan plan = new ReplacementPlan(asList(first, second), false, NO_FLAGS);
+		assertThat(plan.getSteps().size(), equalTo(1));
+		assertThat(plan.getSteps().get(0), instanceOf(XPathBatch.class));
+
+		String result = plan.apply("<root id=\"token\"><element id=\"token\">foo</element></root>");
+		assertThat(result, containsString("<root id=\"value\"><element id=\"token\">bar</element></root>"));
+	}
+	
+	@Test
+	public void shouldReplaceOnManyThreadsWithOneReplacer() throws Exception {
+		final XPathReplacer realReplacer = new XPathReplacer(new TokenReplacer());
+		final CompiledReplacement compiled = compiled(realReplacer, "/root/@id", "token", "value");
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i=0; i < 40; i++) {
+				final int index = i;
+				results.add(executor.submit(new Callable<String>() {
+					public String call() {
+						return compiled.apply("<root id=\"token\" index=\"" + index + "\"/>");
+					}
+				}));
+			}
+			for (int i=0; i < results.size(); i++) {
+				assertThat(results.get(i).get(), containsString("id=\"value\" index=\"" + i + "\""));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
 	@Test(expected = IllegalStateException.class)
 	public void shouldThrowExceptionWhenAttemptingToConstructWithoutTokenReplacer() throws Exception {
 		new XPathReplacer(null);
@@ -70,6 +119,7 @@ public class XPathReplacerTest {
 	
 	@Test(expected = RuntimeException.class)
 	public void shouldThrowExceptionWhenTryingToReplaceParentNodeValue() throws Exception {
+		when(replacement.getToken()).thenReturn("token");
 		when(replacement.getXpath()).thenReturn("//test");
 		
 		try {
@@ -82,6 +132,7 @@ public class XPathReplacerTest {
 	
 	@Test(expected = RuntimeException.class)
 	public void shouldThrowExceptionWhenTryingToReplaceWithInvalidXPath() throws Exception {
+		when(replacement.getToken()).thenReturn("token");
 		when(replacement.getXpath()).thenReturn("invalid xpath");
 		
 		try {
@@ -92,4 +143,12 @@ public class XPathReplacerTest {
 			throw e;
 		}
 	}
+
+	private CompiledReplacement compiled(Replacer replacer, String xpath, String token, String value) {
+		Replacement compiledFrom = new Replacement();
+		compiledFrom.setXpath(xpath);
+		compiledFrom.setToken(token);
+		compiledFrom.setValue(value);
+		return new CompiledReplacement(compiledFrom, replacer, false, NO_FLAGS);
+	}
 }
@@ -0,0 +1,209 @@
+package com.google.code.maven_replacer_plugin;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.code.maven_replacer_plugin.file.FileUtils;
+
+public class XPathStreamerTest {
+	private static final int NO_FLAGS = -1;
+	private static final String XML = "<project version=\"@V@\">"
+			+ "<dependency scope=\"@V@\"><version>@V@</version></dependency>"
+			+ "<plugins><dependency><version>@V@ and @V@</version><!-- @V@ --></dependency></plugins>"
+			+ "<version>@V@</version>"
+			+ "</project>";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private List<CompiledReplacement> replacements;
+
+	@Before
+	public void setUp() {
+		replacements = new ArrayList<CompiledReplacement>();
+	}
+
+	@Test
+	public void shouldStreamSimpleLocationPaths() {
+		assertTrue(canStream("/project/version/text()"));
+		assertTrue(canStream("//dependency/version/text()"));
+		assertTrue(canStream("/project//@scope"));
+		assertTrue(canStream(" //*/@* "));
+		assertTrue(canStream("//text()"));
+	}
+
+	@Test
+	public void shouldLeaveOtherExpressionsToTheDom() {
+		assertFalse(canStream("/project/version"));
+		assertFalse(canStream("//dependency[artifactId='a']/version/text()"));
+		assertFalse(canStream("/project/child::version/text()"));
+		assertFalse(canStream("/pom:project/pom:version/text()"));
+		assertFalse(canStream("//dependency/@xml:lang"));
+		assertFalse(canStream("count(//version)"));
+		assertFalse(canStream("/project/@version/text()"));
+		assertFalse(canStream("/text()"));
+		assertFalse(canStream("version/text()"));
+	}
+
+	@Test
+	public void shouldReplaceSelectedTextOnly() throws Exception {
+		add("//dependency/version/text()", "@V@", "1.0");
+
+		String replaced = replace(XML);
+		assertThat(replaced, containsString("<dependency scope=\"@V@\"><version>1.0</version></dependency>"));
+		assertThat(replaced, containsString("<version>1.0 and 1.0</version><!-- @V@ -->"));
+		assertThat(replaced, containsString("</plugins><version>@V@</version>"));
+		assertThat(replaced, containsString("<project version=\"@V@\">"));
+	}
+
+	@Test
+	public void shouldReplaceSelectedAttributes() throws Exception {
+		add("/project/@version", "@V@", "2.0");
+		add("//@scope", "@V@", "test");
+
+		String replaced = replace(XML);
+		assertThat(replaced, containsString("<project version=\"2.0\">"));
+		assertThat(replaced, containsString("<dependency scope=\"test\">"));
+		assertThat(replaced, containsString("</plugins><version>@V@</version>"));
+	}
+
+	@Test
+	public void shouldReplaceTextOfDescendantsAfterDoubleSlash() throws Exception {
+		add("/project/plugins//text()", "@V@", "3");
+
+		assertThat(replace(XML), containsString("<plugins><dependency><version>3 and 3</version>"));
+	}
+
+	@Test
+	public void shouldReplaceAsTheDomDoes() throws Exception {
+		add("//dependency/version/text()", "@V@", "1.0");
+		add("/project/@version", "@V@", "2.0");
+		StringWriter streamed = new StringWriter();
+
+		new XPathStreamer(replacements).replace(new StringReader(XML), streamed);
+		String fromDom = new XPathReplacer(new TokenReplacer()).replace(XML, replacements);
+		assertThat(normalise(streamed.toString()), equalTo(normalise(fromDom)));
+	}
+
+	@Test
+	public void shouldKeepCDataAsTheDomDoes() throws Exception {
+		add("//version/text()", "@V@", "1.0");
+		add("//text()", "@N@", "name");
+		String xml = "<project><version>@V&amp;@V@ <![CDATA[@V@ <b>]]> @V@</version>"
+				+ "<version>@V@<!-- @V@ -->@V@</version><name>@N@ <![CDATA[@N@]]></name></project>";
+		StringWriter streamed = new StringWriter();
+
+		new XPathStreamer(replacements).replace(new StringReader(xml), streamed);
+		String fromDom = new XPathReplacer(new TokenReplacer()).replace(xml, replacements);
+		assertThat(streamed.toString(), equalTo(fromDom));
+		assertThat(streamed.toString(), containsString("<version>@V&amp;1.0 <![CDATA[@V@ <b>]]> @V@</version>"));
+	}
+
+	@Test
+	public void shouldWriteTheDeclaredEncodingAsTheDomDoes() throws Exception {
+		add("/project/version/text()", "@V@", "1.0");
+		String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n"
+				+ "<project><name>café</name><version>@V@</version></project>";
+
+		String streamed = replaceFile(xml, "ISO-8859-1", true);
+		assertThat(streamed, equalTo(replaceFile(xml, "ISO-8859-1", false)));
+		assertThat(streamed, equalTo("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n"
+				+ "<project><name>café</name><version>1.0</version></project>"));
+	}
+
+	@Test
+	public void shouldDeclareTheEncodingWrittenWhenTheDocumentHasNone() throws Exception {
+		add("/project/version/text()", "@V@", "1.0");
+		String xml = "<?xml version=\"1.0\" standalone=\"yes\"?><project><name>café</name><version>@V@</version></project>";
+
+		String streamed = replaceFile(xml, "ISO-8859-1", true);
+		assertThat(streamed, equalTo("<?xml version=\"1.0\" encoding=\"ISO-8859-1\" standalone=\"yes\"?>\n"
+				+ "<project><name>café</name><version>1.0</version></project>"));
+		File written = new File(folder.getRoot(), "output");
+		assertThat(DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(written)
+				.getDocumentElement().getTextContent(), equalTo("café1.0"));
+	}
+
+	@Test
+	public void shouldReportUnchangedDocuments() throws Exception {
+		add("//missing/text()", "@V@", "1.0");
+
+		assertFalse(new XPathStreamer(replacements).replace(new StringReader(XML), new StringWriter()));
+	}
+
+	@Test
+	public void shouldStreamXPathPlans() throws Exception {
+		add("//dependency/version/text()", "@V@", "1.0");
+		ReplacementPlan plan = new ReplacementPlan(replacements, false, NO_FLAGS).withStreaming(0, 10);
+		StringWriter streamed = new StringWriter();
+
+		assertTrue(plan.isStreaming());
+		assertTrue(plan.getStreamingReplacer().replace(new StringReader(XML), streamed));
+		assertThat(streamed.toString(), containsString("<version>1.0 and 1.0</version>"));
+	}
+
+	@Test
+	public void shouldReadPlansWhole() {
+		add("/project/version", "@V@", "1.0");
+
+		assertFalse(new ReplacementPlan(replacements, false, NO_FLAGS).withStreaming(0, 10).isStreaming());
+	}
+
+	private String replaceFile(String xml, String encoding, boolean streamed) throws Exception {
+		File input = new File(folder.getRoot(), "input");
+		File output = new File(folder.getRoot(), "output");
+		org.apache.commons.io.FileUtils.writeStringToFile(input, xml, encoding);
+		ReplacementPlan plan = new ReplacementPlan(replacements, false, NO_FLAGS);
+		if (streamed) {
+			plan.withStreaming(0, 10);
+		}
+
+		assertTrue(new ReplacementProcessor(new FileUtils(), new ReplacerFactory())
+				.replace(plan, input.getPath(), output.getPath(), encoding));
+		return org.apache.commons.io.FileUtils.readFileToString(output, encoding);
+	}
+
+	private String normalise(String xml) {
+		return xml.replaceAll("<\\?xml[^>]*\\?>", "").replaceAll("<(\\w+)([^>]*)/>", "<$1$2></$1>").trim();
+	}
+
+	private boolean canStream(String xpath) {
+		List<CompiledReplacement> single = new ArrayList<CompiledReplacement>();
+		single.add(compile(xpath, "@V@", "1"));
+		return XPathStreamer.canStream(single);
+	}
+
+	private String replace(String xml) throws Exception {
+		StringWriter output = new StringWriter();
+		assertTrue(new XPathStreamer(replacements).replace(new StringReader(xml), output));
+		return output.toString();
+	}
+
+	private void add(String xpath, String token, String value) {
+		replacements.add(compile(xpath, token, value));
+	}
+
+	private CompiledReplacement compile(String xpath, String token, String value) {
+		Replacement replacement = new Replacement();
+		replacement.setXpath(xpath);
+		replacement.setToken(token);
+		replacement.setValue(value);
+		return new CompiledReplacement(replacement, new XPathReplacer(new TokenReplacer()), false, NO_FLAGS);
+	}
+}
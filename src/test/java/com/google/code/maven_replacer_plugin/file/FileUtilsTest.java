@@ -12,6 +12,7 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.FileWriter;
+import java.io.Writer;
 import java.util.UUID;
 
 import org.junit.Before;
@@ -95,6 +96,22 @@ public class FileUtilsTest {
 		assertThat(data, equalTo("test\n123\\t456"));
 	}
 	
+	@Test
+	public void shouldMoveTempFileOverExistingFile() throws Exception {
+		File existing = folder.newFile("existing");
+		fileUtils.writeToFile(existing.getAbsolutePath(), "old", null);
+		File temp = fileUtils.createTempFile(existing.getAbsolutePath());
+		assertThat(temp.getParentFile(), equalTo(existing.getParentFile()));
+
+		Writer writer = fileUtils.openWriter(temp, "UTF-8");
+		writer.write(NON_ASCII_CONTENT);
+		writer.close();
+		fileUtils.moveFile(temp, existing.getAbsolutePath());
+
+		assertFalse(temp.exists());
+		assertThat(fileUtils.readFile(existing.getAbsolutePath(), "UTF-8"), equalTo(NON_ASCII_CONTENT));
+	}
+
 	@Test
 	public void shouldReturnFilenameWhenJustFilenameParam() {
 		String result = fileUtils.createFullPath("tempFile");
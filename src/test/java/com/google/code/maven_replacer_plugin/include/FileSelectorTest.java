@@ -8,12 +8,17 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.tools.ant.DirectoryScanner;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class FileSelectorTest {
 	private static final String BASE_DIR = "src/test/resources/files";
@@ -22,6 +27,9 @@ public class FileSelectorTest {
 	
 	private FileSelector selector;
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Before
 	public void setUp() {
 		selector = new FileSelector();
@@ -55,4 +63,57 @@ public class FileSelectorTest {
 		List<String> files = selector.listIncludes(BACK_DIR_SYMBOL, asList(TEST_FILE), null);
 		assertThat(files, equalTo(asList(TEST_FILE)));
 	}
+
+	@Test
+	public void shouldSelectSameFilesAsDirectoryScanner() throws IOException {
+		String basedir = createTree();
+		List<List<String>> patterns = asList(
+				asList("**/*.txt"), asList("a/"), asList("**/b/**"), asList("*"), asList("a/*/c*.xml", "**/.svn/*"));
+
+		for (List<String> includes : patterns) {
+			for (List<String> excludes : asList(null, asList("**/b/**"), asList("a/d*"))) {
+				List<String> expected = scan(basedir, includes, excludes);
+				assertThat(includes + " - " + excludes, selector.listIncludes(basedir, includes, excludes), equalTo(expected));
+				assertThat(includes + " - " + excludes, selector.listIncludes(basedir, includes, excludes, 4), equalTo(expected));
+			}
+		}
+	}
+
+	@Test
+	public void shouldReportFilesAsTheyAreFoundInSortedOrderOnOneThread() throws IOException {
+		String basedir = createTree();
+		final List<String> found = new ArrayList<String>();
+
+		selector.selectIncludes(basedir, asList("**/*.txt"), null, 1, new DirectoryWalker.Listener() {
+			public void found(String file) {
+				found.add(file);
+			}
+		});
+
+		assertThat(found, equalTo(scan(basedir, asList("**/*.txt"), null)));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void shouldThrowExceptionWhenBasedirDoesNotExist() {
+		selector.listIncludes(BASE_DIR + "/missing", asList("**"), null);
+	}
+
+	private String createTree() throws IOException {
+		for (String file : asList("top.txt", "a/one.txt", "a/b/two.txt", "a/b/c1.xml", "a/d/c2.xml", "a/d/e/three.txt",
+				"x/b/four.txt", ".svn/entries", "a/.svn/five.txt", "a/CVS/six.txt")) {
+			FileUtils.writeStringToFile(new File(folder.getRoot(), file), file);
+		}
+		return folder.getRoot().getPath();
+	}
+
+	private List<String> scan(String basedir, List<String> includes, List<String> excludes) {
+		DirectoryScanner scanner = new DirectoryScanner();
+		scanner.setBasedir(basedir);
+		scanner.setIncludes(includes.toArray(new String[] {}));
+		scanner.setExcludes(excludes == null ? null : excludes.toArray(new String[] {}));
+		scanner.scan();
+		List<String> files = new ArrayList<String>(Arrays.asList(scanner.getIncludedFiles()));
+		Collections.sort(files);
+		return files;
+	}
 }
\ No newline at end of file